@@ -0,0 +1,150 @@
+package com.meeshohelper.activities;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.meeshohelper.R;
+import com.meeshohelper.utils.FileManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Launches each activity that takes a bill with StrictMode watching the main thread,
+ * taps "Select file" and answers the document picker with a file:// URI. The copy must
+ * run on the scheduler, so no disk or network violation may be reported while the
+ * activity starts, receives the pick and shows the ingested file.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.P)
+public class FilePickerStrictModeTest {
+
+    private static final int SOURCE_BYTES = 3 * 1024 * 1024;
+    private static final long INGEST_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private Context context;
+    private File source;
+    private PickerMonitor picker;
+    private StrictMode.ThreadPolicy previousPolicy;
+
+    @Before
+    public void setUp() throws IOException {
+        context = instrumentation.getTargetContext();
+        source = new File(context.getCacheDir(), "strict_mode_picked.pdf");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            byte[] block = new byte[64 * 1024];
+            for (int written = 0; written < SOURCE_BYTES; written += block.length) {
+                out.write(block);
+            }
+        }
+
+        // Warm up the app directories so the policy only sees the activity and the pick
+        new FileManager(context).getTempDirectory();
+
+        picker = new PickerMonitor(Uri.fromFile(source));
+        instrumentation.addMonitor(picker);
+
+        instrumentation.runOnMainSync(() -> {
+            previousPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(previousPolicy));
+        instrumentation.removeMonitor(picker);
+        source.delete();
+        File[] picked = new FileManager(context).getTempDirectory().listFiles(
+                (dir, name) -> name.startsWith("selected_"));
+        if (picked != null) {
+            for (File file : picked) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void billCombinerPicksFileWithoutMainThreadIo() throws Exception {
+        assertPickWithoutMainThreadIo(BillCombinerActivity.class);
+    }
+
+    @Test
+    public void leafletGeneratorPicksFileWithoutMainThreadIo() throws Exception {
+        assertPickWithoutMainThreadIo(LeafletGeneratorActivity.class);
+    }
+
+    @Test
+    public void hybridBillPicksFileWithoutMainThreadIo() throws Exception {
+        assertPickWithoutMainThreadIo(HybridBillActivity.class);
+    }
+
+    private void assertPickWithoutMainThreadIo(Class<? extends Activity> activityClass) throws Exception {
+        try (ActivityScenario<? extends Activity> scenario = ActivityScenario.launch(activityClass)) {
+            scenario.onActivity(activity -> activity.findViewById(R.id.btnSelectFile).performClick());
+            instrumentation.waitForIdleSync();
+            assertEquals("Document picker was not launched", 1, picker.getHits());
+
+            // The process button is enabled once the picked file has been copied
+            AtomicBoolean ingested = new AtomicBoolean();
+            long deadline = System.currentTimeMillis() + INGEST_TIMEOUT_MILLIS;
+            while (!ingested.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+                scenario.onActivity(activity -> ingested.set(
+                        activity.findViewById(R.id.btnProcess).isEnabled()));
+            }
+            instrumentation.waitForIdleSync();
+
+            assertTrue(activityClass.getSimpleName() + " did not finish ingesting the file", ingested.get());
+            assertTrue("Main thread I/O in " + activityClass.getSimpleName() + ": " + violations,
+                    violations.isEmpty());
+        }
+    }
+
+    /**
+     * Answers the OpenDocument contract with a fixed document instead of starting the picker
+     */
+    private static class PickerMonitor extends Instrumentation.ActivityMonitor {
+        private final Instrumentation.ActivityResult result;
+
+        PickerMonitor(Uri document) {
+            result = new Instrumentation.ActivityResult(Activity.RESULT_OK, new Intent().setData(document));
+        }
+
+        @Override
+        public Instrumentation.ActivityResult onStartActivity(Intent intent) {
+            return Intent.ACTION_OPEN_DOCUMENT.equals(intent.getAction()) ? result : null;
+        }
+    }
+}
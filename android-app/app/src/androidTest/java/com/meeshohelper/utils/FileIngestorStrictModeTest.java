@@ -0,0 +1,127 @@
+package com.meeshohelper.utils;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Picks a file the way the activities do, with StrictMode watching the main thread
+ * for disk reads and writes. The copy runs on the scheduler, so only progress and
+ * the result reach the main thread and no violation may be reported.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.P)
+public class FileIngestorStrictModeTest {
+
+    private static final String FILE_NAME = "strict_mode_bill.pdf";
+    private static final int SOURCE_BYTES = 3 * 1024 * 1024;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private Context context;
+    private File source;
+    private StrictMode.ThreadPolicy previousPolicy;
+
+    @Before
+    public void setUp() throws IOException {
+        context = instrumentation.getTargetContext();
+        source = new File(context.getCacheDir(), "strict_mode_source.pdf");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            byte[] block = new byte[64 * 1024];
+            for (int written = 0; written < SOURCE_BYTES; written += block.length) {
+                out.write(block);
+            }
+        }
+
+        // Warm up the app directories so the policy only sees the ingestion itself
+        new FileManager(context).getTempDirectory();
+
+        instrumentation.runOnMainSync(() -> {
+            previousPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(previousPolicy));
+        source.delete();
+        new File(new FileManager(context).getTempDirectory(), FILE_NAME).delete();
+    }
+
+    @Test
+    public void ingestingFromTheMainThreadDoesNoMainThreadIo() throws Exception {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        FileManager fileManager = new FileManager(context);
+        CompletableFuture<FileIngestor.Result> ingested = new CompletableFuture<>();
+
+        // Same hand-off as handleSelectedFile: submit from the main thread, report back to it
+        instrumentation.runOnMainSync(() -> ProcessingScheduler.getInstance().submit(
+                ProcessingScheduler.Priority.INTERACTIVE, () -> {
+                    try {
+                        File destination = new File(fileManager.getTempDirectory(), FILE_NAME);
+                        FileIngestor.Result result = new FileIngestor(context).ingest(Uri.fromFile(source),
+                                destination, (copied, total) -> mainHandler.post(
+                                        () -> FileIngestor.formatProgress(FILE_NAME, copied, total)));
+                        mainHandler.post(() -> ingested.complete(result));
+                    } catch (Exception e) {
+                        mainHandler.post(() -> ingested.completeExceptionally(e));
+                    }
+                }));
+
+        FileIngestor.Result result = ingested.get(30, TimeUnit.SECONDS);
+        instrumentation.waitForIdleSync();
+
+        assertEquals(SOURCE_BYTES, result.getSize());
+        assertEquals(FileHashes.computeFileHash(source), result.getHash());
+        assertTrue("Main thread I/O during ingestion: " + violations, violations.isEmpty());
+    }
+
+    @Test
+    public void policyReportsIngestionOnTheMainThread() {
+        // Guards the test above: the same copy done on the main thread must be reported
+        instrumentation.runOnMainSync(() -> {
+            try {
+                new FileIngestor(context).ingest(Uri.fromFile(source),
+                        new File(context.getCacheDir(), FILE_NAME), null);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        instrumentation.waitForIdleSync();
+        new File(context.getCacheDir(), FILE_NAME).delete();
+
+        assertFalse("StrictMode did not report main thread I/O", violations.isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.meeshohelper.debug;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.ProcessingScheduler;
+
+import java.io.File;
+
+/**
+ * Debug-only screen that runs the benchmarks on a label PDF and shows the
+ * report. The input defaults to the last file picked in the app.
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+
+    private static final String TAG = "Benchmark";
+    private static final int REPETITIONS = 5;
+
+    private TextView tvReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        tvReport = new TextView(this);
+        tvReport.setTypeface(android.graphics.Typeface.MONOSPACE);
+        tvReport.setPadding(24, 24, 24, 24);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(tvReport);
+        setContentView(scrollView);
+
+        FileManager fileManager = new FileManager(this);
+        String inputPath = getIntent().getStringExtra("input");
+        File input = inputPath != null ? new File(inputPath) : new File(fileManager.getTempDirectory(), "selected_bill.pdf");
+        File workDir = fileManager.getJobDirectory("benchmark");
+
+        tvReport.setText("Running on " + input + "...");
+        ProcessingScheduler.getInstance().submit(ProcessingScheduler.Priority.BACKGROUND, () -> {
+            String report;
+            try {
+                report = CompressionBenchmark.run(input, workDir, REPETITIONS);
+            } catch (Exception e) {
+                report = "Benchmark failed: " + e;
+            }
+            Log.i(TAG, report);
+            String text = report;
+            runOnUiThread(() -> tvReport.setText(text));
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.meeshohelper.debug;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PDFProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures output size and time of every compression profile for the 4-up,
+ * thermal and hybrid outputs of one input file
+ */
+public class CompressionBenchmark {
+
+    private interface Operation {
+        void run(File input, File output, OutputOptions options) throws IOException;
+    }
+
+    /**
+     * Run each profile and operation the given number of times and report the median time
+     */
+    public static String run(File input, File workDir, int repetitions) throws IOException {
+        List<CustomerData> customers = PDFProcessor.extractCustomerNames(input);
+        File checkpointDir = new File(workDir, "hybrid_checkpoints");
+        checkpointDir.mkdirs();
+        String[] names = {"4-up", "thermal", "hybrid"};
+        Operation[] operations = {
+                PDFProcessor::createFourUpLayout,
+                (in, out, options) -> PDFProcessor.createThermalLayout(in, out, PDFProcessor.THERMAL_4X6, true, options),
+                (in, out, options) -> PDFProcessor.generateHybridBill(in, out, customers, checkpointDir, options,
+                        LeafletTemplate.defaults(), null)
+        };
+
+        StringBuilder report = new StringBuilder(String.format(Locale.US,
+                "Input %s, %d bytes, %d repetitions\n%-8s %-9s %10s %9s\n",
+                input.getName(), input.length(), repetitions, "output", "profile", "bytes", "median"));
+
+        for (int op = 0; op < operations.length; op++) {
+            for (OutputOptions.Profile profile : OutputOptions.Profile.values()) {
+                File output = new File(workDir, "benchmark_" + names[op] + "_" + profile + ".pdf");
+                long[] millis = new long[repetitions];
+                for (int i = 0; i < repetitions; i++) {
+                    long start = System.nanoTime();
+                    operations[op].run(input, output, OutputOptions.defaults().withProfile(profile));
+                    millis[i] = (System.nanoTime() - start) / 1_000_000;
+                }
+                Arrays.sort(millis);
+                report.append(String.format(Locale.US, "%-8s %-9s %10d %7d ms\n",
+                        names[op], profile, output.length(), millis[repetitions / 2]));
+                output.delete();
+            }
+        }
+        return report.toString();
+    }
+}
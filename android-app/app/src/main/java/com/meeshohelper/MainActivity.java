@@ -5,21 +5,39 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.InputType;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
 
+import com.meeshohelper.activities.AllOutputsActivity;
+import com.meeshohelper.activities.AnalyticsActivity;
 import com.meeshohelper.activities.BillCombinerActivity;
 import com.meeshohelper.activities.HybridBillActivity;
 import com.meeshohelper.activities.LeafletGeneratorActivity;
+import com.meeshohelper.models.ShopDetails;
+import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.ProcessingScheduler;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final int MENU_OUTPUT_PROFILE = 1;
+    private static final int MENU_LEAFLET_TEXT = 2;
+    private static final int MENU_ANALYTICS = 3;
+
     private ActivityResultLauncher<String[]> permissionLauncher;
 
     @Override
@@ -101,6 +119,7 @@ public class MainActivity extends AppCompatActivity {
         CardView cardLeaflet = findViewById(R.id.cardLeaflet);
         CardView cardBillCombiner = findViewById(R.id.cardBillCombiner);
         CardView cardHybrid = findViewById(R.id.cardHybrid);
+        CardView cardAllOutputs = findViewById(R.id.cardAllOutputs);
 
         cardLeaflet.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, LeafletGeneratorActivity.class);
@@ -116,5 +135,136 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(MainActivity.this, HybridBillActivity.class);
             startActivity(intent);
         });
+
+        cardAllOutputs.setOnClickListener(v -> {
+            Intent intent = new Intent(MainActivity.this, AllOutputsActivity.class);
+            startActivity(intent);
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_OUTPUT_PROFILE, Menu.NONE, "Output file size");
+        menu.add(Menu.NONE, MENU_LEAFLET_TEXT, Menu.NONE, "Leaflet text");
+        menu.add(Menu.NONE, MENU_ANALYTICS, Menu.NONE, "Analytics");
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == MENU_OUTPUT_PROFILE) {
+            showOutputProfileDialog();
+            return true;
+        }
+        if (item.getItemId() == MENU_LEAFLET_TEXT) {
+            showLeafletTextDialog();
+            return true;
+        }
+        if (item.getItemId() == MENU_ANALYTICS) {
+            startActivity(new Intent(this, AnalyticsActivity.class));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showOutputProfileDialog() {
+        FileManager fileManager = new FileManager(this);
+        OutputOptions.Profile[] profiles = OutputOptions.Profile.values();
+        String[] labels = {
+                "Standard",
+                "Share over WhatsApp (smallest)",
+                "Archive (compact, full quality)",
+                "Fast (least processing)"
+        };
+
+        // The first preferences read loads the file from disk, so it stays off the UI thread
+        ProcessingScheduler.getInstance().submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            int selected = fileManager.getOutputProfile().ordinal();
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("Output file size")
+                        .setSingleChoiceItems(labels, selected, (dialog, which) -> {
+                            fileManager.setOutputProfile(profiles[which]);
+                            dialog.dismiss();
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+        });
+    }
+
+    private void showLeafletTextDialog() {
+        FileManager fileManager = new FileManager(this);
+        ProcessingScheduler scheduler = ProcessingScheduler.getInstance();
+
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            ShopDetails shop = fileManager.getShopDetails();
+            String source = fileManager.getLeafletTemplateSource();
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                EditText shopName = new EditText(this);
+                shopName.setHint("Shop name");
+                shopName.setText(shop.getName());
+                EditText whatsapp = new EditText(this);
+                whatsapp.setHint("WhatsApp number");
+                whatsapp.setInputType(InputType.TYPE_CLASS_PHONE);
+                whatsapp.setText(shop.getWhatsappNumber());
+                EditText reviewLink = new EditText(this);
+                reviewLink.setHint("Review link, {order} for the order id (optional)");
+                reviewLink.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+                reviewLink.setText(shop.getReviewLink());
+                EditText template = new EditText(this);
+                template.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_MULTI_LINE);
+                template.setTextSize(12);
+                template.setText(source);
+
+                LinearLayout form = new LinearLayout(this);
+                form.setOrientation(LinearLayout.VERTICAL);
+                int padding = (int) (16 * getResources().getDisplayMetrics().density);
+                form.setPadding(padding, padding / 2, padding, 0);
+                form.addView(shopName);
+                form.addView(whatsapp);
+                form.addView(reviewLink);
+                form.addView(template);
+                ScrollView scroll = new ScrollView(this);
+                scroll.addView(form);
+
+                AlertDialog dialog = new AlertDialog.Builder(this)
+                        .setTitle("Leaflet text")
+                        .setView(scroll)
+                        .setPositiveButton("Save", null)
+                        .setNeutralButton("Reset", null)
+                        .setNegativeButton("Cancel", null)
+                        .create();
+                dialog.setOnShowListener(shown -> {
+                    dialog.getButton(AlertDialog.BUTTON_NEUTRAL).setOnClickListener(v -> {
+                        shopName.setText(ShopDetails.DEFAULT_NAME);
+                        whatsapp.setText(ShopDetails.DEFAULT_WHATSAPP);
+                        reviewLink.setText("");
+                        template.setText(LeafletTemplate.DEFAULT_SOURCE);
+                    });
+                    // The template is checked before saving; the dialog stays open to fix a bad line
+                    dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+                        ShopDetails edited = new ShopDetails(shopName.getText().toString().trim(),
+                                whatsapp.getText().toString().trim(), reviewLink.getText().toString().trim());
+                        String edits = template.getText().toString();
+                        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+                            try {
+                                fileManager.setLeafletTemplate(edits, edited);
+                                runOnUiThread(dialog::dismiss);
+                            } catch (IllegalArgumentException e) {
+                                runOnUiThread(() -> Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show());
+                            }
+                        });
+                    });
+                });
+                dialog.show();
+            });
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.meeshohelper;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.StrictMode;
+
+import com.meeshohelper.utils.BitmapJpegResampler;
+import com.meeshohelper.utils.ProcessingScheduler;
+import com.meeshohelper.utils.ResourceGovernor;
+import com.meeshohelper.utils.StreamOptimizer;
+
+public class MeeshoHelperApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Debug builds flag any disk or network access on the UI thread
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            enableStrictMode();
+        }
+
+        // Size the shared PDF scheduler from the device state
+        configureScheduler();
+
+        // Shared outputs re-encode their photos with the platform decoder
+        StreamOptimizer.setJpegResampler(new BitmapJpegResampler());
+    }
+
+    private void enableStrictMode() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .penaltyLog()
+                .penaltyFlashScreen()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build());
+    }
+
+    private void configureScheduler() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager != null && activityManager.isLowRamDevice();
+
+        boolean throttled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            throttled = powerManager != null
+                    && powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_MODERATE;
+        }
+
+        ProcessingScheduler.configure(ResourceGovernor.recommendedWorkers(
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory(), lowRam, throttled));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // Running jobs shrink their page windows instead of running out of memory,
+        // but not merely because the UI was hidden
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            ResourceGovernor.getInstance().onMemoryPressure();
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.meeshohelper.activities;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.FileProvider;
+
+import com.meeshohelper.R;
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.RunStats;
+import com.meeshohelper.models.RunSummary;
+import com.meeshohelper.utils.CombinedJob;
+import com.meeshohelper.utils.CustomerHistoryStore;
+import com.meeshohelper.utils.FileHashes;
+import com.meeshohelper.utils.FileIngestor;
+import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OrderAnalytics;
+import com.meeshohelper.utils.OutputMemoStore;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PageCache;
+import com.meeshohelper.utils.PreflightScanner;
+import com.meeshohelper.utils.ProcessingScheduler;
+import com.meeshohelper.utils.ThroughputModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 4-up bills, leaflets and hybrid bills of one label PDF, made in a single pass over the file
+ */
+public class AllOutputsActivity extends AppCompatActivity {
+
+    private Button btnSelectFile, btnProcess, btnOpenBills, btnOpenLeaflets, btnOpenHybrid, btnShareAll;
+    private TextView tvSelectedFile, tvProcessingStatus, tvCustomerCount;
+    private CardView cardProcessing;
+    private LinearLayout layoutResults;
+    private ProgressBar progressBar;
+
+    private static final String OPERATION = "all_outputs";
+    // Same operations and keys as the separate screens, so their outputs are shared both ways
+    private static final String FOUR_UP_OPERATION = "cropped_bills_4up";
+    private static final String LEAFLET_OPERATION = "leaflets";
+    private static final String HYBRID_OPERATION = "hybrid_bills";
+
+    private FileManager fileManager;
+    private ProcessingScheduler scheduler;
+    private ActivityResultLauncher<String[]> filePickerLauncher;
+
+    private File selectedFile;
+    private File fourUpFile, leafletFile, hybridFile;
+    private PreflightScanner.Report preflightReport;
+    private List<CustomerData> extractedCustomers;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_all_outputs);
+
+        // Initialize components
+        initializeViews();
+        setupToolbar();
+        initializeServices();
+        setupFilePickerLauncher();
+        setupClickListeners();
+    }
+
+    private void initializeViews() {
+        btnSelectFile = findViewById(R.id.btnSelectFile);
+        btnProcess = findViewById(R.id.btnProcess);
+        btnOpenBills = findViewById(R.id.btnOpenBills);
+        btnOpenLeaflets = findViewById(R.id.btnOpenLeaflets);
+        btnOpenHybrid = findViewById(R.id.btnOpenHybrid);
+        btnShareAll = findViewById(R.id.btnShareAll);
+
+        tvSelectedFile = findViewById(R.id.tvSelectedFile);
+        tvProcessingStatus = findViewById(R.id.tvProcessingStatus);
+        tvCustomerCount = findViewById(R.id.tvCustomerCount);
+
+        cardProcessing = findViewById(R.id.cardProcessing);
+        layoutResults = findViewById(R.id.layoutResults);
+        progressBar = findViewById(R.id.progressBar);
+    }
+
+    private void setupToolbar() {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle(R.string.all_outputs);
+        }
+    }
+
+    private void initializeServices() {
+        fileManager = new FileManager(this);
+        scheduler = ProcessingScheduler.getInstance();
+    }
+
+    private void setupFilePickerLauncher() {
+        filePickerLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    if (uri != null) {
+                        handleSelectedFile(uri);
+                    }
+                }
+        );
+    }
+
+    private void setupClickListeners() {
+        btnSelectFile.setOnClickListener(v -> filePickerLauncher.launch(new String[]{"application/pdf"}));
+        btnProcess.setOnClickListener(v -> processSelectedFile());
+        btnOpenBills.setOnClickListener(v -> openFile(fourUpFile));
+        btnOpenLeaflets.setOnClickListener(v -> openFile(leafletFile));
+        btnOpenHybrid.setOnClickListener(v -> openFile(hybridFile));
+        btnShareAll.setOnClickListener(v -> shareAll());
+    }
+
+    private void handleSelectedFile(Uri uri) {
+        btnProcess.setEnabled(false);
+        tvSelectedFile.setText("Loading file...");
+
+        // Copy the picked document off the UI thread; the hash is taken from the same read
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                String fileName = "selected_file.pdf";
+                File destination = new File(fileManager.getTempDirectory(), fileName);
+                FileIngestor.Result result = new FileIngestor(this).ingest(uri, destination,
+                        (copied, total) -> runOnUiThread(() -> tvSelectedFile.setText(
+                                FileIngestor.formatProgress(fileName, copied, total))));
+
+                runOnUiThread(() -> {
+                    selectedFile = result.getFile();
+                    tvSelectedFile.setText(getString(R.string.file_selected, fileName));
+                    btnProcess.setEnabled(true);
+                    runPreflight();
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    tvSelectedFile.setText(R.string.no_file_selected);
+                    Toast.makeText(this, getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void runPreflight() {
+        File file = selectedFile;
+        preflightReport = null;
+        scheduler.submit(ProcessingScheduler.Priority.USER_VISIBLE, () -> {
+            try {
+                PreflightScanner.Report report = PreflightScanner.scan(file);
+                long estimate = fileManager.getThroughputModel().estimateMillis(OPERATION, report.getPageCount());
+                preflightReport = report;
+                runOnUiThread(() -> tvSelectedFile.setText(getString(R.string.file_selected, file.getName())
+                        + "\n" + report.getSummary()
+                        + "\nEstimated time: " + ThroughputModel.formatEstimate(estimate)));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Add this run's orders to the analytics; call before the customer history records the
+     * run so repeat customers are counted against earlier runs only
+     */
+    private void recordAnalytics(String inputHash, RunSummary.Builder orders, CustomerHistoryStore history) {
+        try {
+            fileManager.getOrderAnalytics().record(
+                    OrderAnalytics.summarize(inputHash, extractedCustomers, orders, history));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void recordRunStats(long startNanos, long outputBytes, OutputOptions options, PageCache pageCache) {
+        try {
+            pageCache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (preflightReport == null) {
+            return;
+        }
+        RunStats stats = new RunStats(OPERATION, preflightReport.getPageCount(),
+                (System.nanoTime() - startNanos) / 1_000_000, outputBytes, options.getBudget().describe(),
+                pageCache.getHits(), pageCache.getMisses());
+        try {
+            fileManager.getThroughputModel().record(stats);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void processSelectedFile() {
+        if (selectedFile == null) {
+            Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        // Show processing UI
+        showProcessingState(true);
+        btnProcess.setEnabled(false);
+
+        // Process file in background
+        long startNanos = System.nanoTime();
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try (CustomerHistoryStore history = fileManager.openCustomerHistory()) {
+                // Outputs of identical earlier runs, from this screen or the separate ones, are reused
+                String inputHash = FileHashes.computeFileHash(selectedFile);
+                LeafletTemplate template = fileManager.getLeafletTemplate();
+                OutputMemoStore memoStore = fileManager.getOutputMemoStore();
+                String fourUpKey = OutputMemoStore.key(inputHash, FOUR_UP_OPERATION, outputOptions("").describe());
+                String leafletKey = OutputMemoStore.key(inputHash, LEAFLET_OPERATION,
+                        outputOptions("").describe() + ";history=" + history.getOrderCount()
+                                + ";template=" + template.fingerprint());
+                // One-pass hybrid sheets pair leaflets with their own labels, unlike the separate screen
+                String hybridKey = OutputMemoStore.key(inputHash, HYBRID_OPERATION,
+                        outputOptions("").describe() + ";history=" + history.getOrderCount()
+                                + ";template=" + template.fingerprint() + ";pass=single");
+                fourUpFile = memoStore.lookup(fourUpKey);
+                leafletFile = memoStore.lookup(leafletKey);
+                hybridFile = memoStore.lookup(hybridKey);
+                if (fourUpFile != null && leafletFile != null && hybridFile != null) {
+                    extractedCustomers = null;
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        showResults();
+                        btnProcess.setEnabled(true);
+                    });
+                    return;
+                }
+
+                runOnUiThread(() -> tvProcessingStatus.setText("Reading labels and writing all outputs..."));
+
+                // Only the outputs not already available are written
+                RunSummary.Builder orders = new RunSummary.Builder();
+                PageCache pageCache = fileManager.getPageCache();
+                CombinedJob job = new CombinedJob(selectedFile).template(template).orders(orders)
+                        .pageCache(pageCache);
+                List<File> written = new ArrayList<>();
+                if (fourUpFile == null) {
+                    fourUpFile = outputFile(FOUR_UP_OPERATION, fourUpKey);
+                    job.fourUp(fourUpFile, outputOptions(fourUpKey));
+                    written.add(fourUpFile);
+                }
+                boolean writeLeaflets = leafletFile == null;
+                if (writeLeaflets) {
+                    leafletFile = outputFile(LEAFLET_OPERATION, leafletKey);
+                    job.leaflets(leafletFile, outputOptions(leafletKey), history);
+                    written.add(leafletFile);
+                }
+                if (hybridFile == null) {
+                    hybridFile = outputFile(HYBRID_OPERATION, hybridKey);
+                    job.hybrid(hybridFile, outputOptions(hybridKey), history);
+                    written.add(hybridFile);
+                }
+                extractedCustomers = job.run();
+
+                if (extractedCustomers.isEmpty()) {
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        btnProcess.setEnabled(true);
+                        Toast.makeText(AllOutputsActivity.this,
+                                R.string.error_no_customers, Toast.LENGTH_LONG).show();
+                    });
+                    return;
+                }
+
+                long outputBytes = 0;
+                for (File file : written) {
+                    outputBytes += file.length();
+                }
+                memoStore.record(fourUpKey, fourUpFile);
+                memoStore.record(leafletKey, leafletFile);
+                memoStore.record(hybridKey, hybridFile);
+                recordAnalytics(inputHash, orders, history);
+                if (writeLeaflets) {
+                    history.recordRun(extractedCustomers);
+                }
+                recordRunStats(startNanos, outputBytes, outputOptions(""), pageCache);
+
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    showResults();
+                    btnProcess.setEnabled(true);
+                });
+
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    Toast.makeText(AllOutputsActivity.this,
+                            getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private File outputFile(String operation, String memoKey) {
+        return new File(fileManager.getOutputDirectory(),
+                fileManager.generateOutputFilename(selectedFile.getName(), operation, memoKey));
+    }
+
+    /**
+     * Deterministic output options with the compression profile chosen on the main screen
+     */
+    private OutputOptions outputOptions(String seed) {
+        return OutputOptions.deterministic(seed).withProfile(fileManager.getOutputProfile());
+    }
+
+    private void showProcessingState(boolean isProcessing) {
+        cardProcessing.setVisibility(isProcessing ? View.VISIBLE : View.GONE);
+        layoutResults.setVisibility(View.GONE);
+    }
+
+    private void showResults() {
+        layoutResults.setVisibility(View.VISIBLE);
+        String customerCountText = extractedCustomers != null
+                ? "Found " + extractedCustomers.size() + " customers"
+                : "Reused the outputs of an earlier identical run";
+        tvCustomerCount.setText(customerCountText);
+
+        Toast.makeText(this, R.string.processing_complete, Toast.LENGTH_SHORT).show();
+    }
+
+    private void openFile(File file) {
+        if (file == null || !file.exists()) {
+            Toast.makeText(this, "No file to open", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        try {
+            Uri fileUri = FileProvider.getUriForFile(this,
+                    getString(R.string.file_provider_authority), file);
+
+            Intent intent = new Intent(Intent.ACTION_VIEW);
+            intent.setDataAndType(fileUri, "application/pdf");
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            if (intent.resolveActivity(getPackageManager()) != null) {
+                startActivity(intent);
+            } else {
+                Toast.makeText(this, "No PDF viewer app found", Toast.LENGTH_SHORT).show();
+            }
+
+        } catch (Exception e) {
+            Toast.makeText(this, "Error opening file: " + e.getMessage(),
+                    Toast.LENGTH_LONG).show();
+            e.printStackTrace();
+        }
+    }
+
+    private void shareAll() {
+        ArrayList<Uri> fileUris = new ArrayList<>();
+        try {
+            for (File file : new File[]{fourUpFile, leafletFile, hybridFile}) {
+                if (file != null && file.exists()) {
+                    fileUris.add(FileProvider.getUriForFile(this,
+                            getString(R.string.file_provider_authority), file));
+                }
+            }
+            if (fileUris.isEmpty()) {
+                Toast.makeText(this, "No files to share", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            Intent intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            intent.setType("application/pdf");
+            intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, fileUris);
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            Intent chooser = Intent.createChooser(intent, "Share All PDFs");
+            if (chooser.resolveActivity(getPackageManager()) != null) {
+                startActivity(chooser);
+            } else {
+                Toast.makeText(this, "No apps available to share", Toast.LENGTH_SHORT).show();
+            }
+
+        } catch (Exception e) {
+            Toast.makeText(this, "Error sharing files: " + e.getMessage(),
+                    Toast.LENGTH_LONG).show();
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Clean up temporary files off the UI thread
+        if (fileManager != null) {
+            FileManager manager = fileManager;
+            scheduler.submit(ProcessingScheduler.Priority.BACKGROUND, manager::cleanupTempFiles);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.meeshohelper.activities;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.meeshohelper.R;
+import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.OrderAnalytics;
+import com.meeshohelper.utils.ProcessingScheduler;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Orders, repeat customers, top pincodes and top SKUs across all processed runs
+ */
+public class AnalyticsActivity extends AppCompatActivity {
+
+    private static final int DAYS_SHOWN = 14;
+    private static final int TOP_SHOWN = 10;
+
+    private TextView tvTotals, tvOrdersPerDay, tvTopPincodes, tvTopSkus;
+    private LinearLayout layoutResults;
+    private ProgressBar progressBar;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_analytics);
+
+        initializeViews();
+        setupToolbar();
+        loadAnalytics();
+    }
+
+    private void initializeViews() {
+        tvTotals = findViewById(R.id.tvTotals);
+        tvOrdersPerDay = findViewById(R.id.tvOrdersPerDay);
+        tvTopPincodes = findViewById(R.id.tvTopPincodes);
+        tvTopSkus = findViewById(R.id.tvTopSkus);
+
+        layoutResults = findViewById(R.id.layoutResults);
+        progressBar = findViewById(R.id.progressBar);
+    }
+
+    private void setupToolbar() {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle(R.string.analytics);
+        }
+    }
+
+    private void loadAnalytics() {
+        FileManager fileManager = new FileManager(this);
+        // Opening may replay runs logged since the last save, so it stays off the main thread
+        ProcessingScheduler.getInstance().submit(ProcessingScheduler.Priority.USER_VISIBLE, () -> {
+            try {
+                OrderAnalytics analytics = fileManager.getOrderAnalytics();
+                String totals = "Orders: " + analytics.getOrders()
+                        + "\nDistinct customers: about " + analytics.getDistinctCustomers()
+                        + String.format(Locale.US, "\nRepeat customers: %.1f%%",
+                                analytics.getRepeatCustomerRate() * 100);
+                String ordersPerDay = formatCounts(analytics.getOrdersPerDay(DAYS_SHOWN), "No orders yet");
+                String topPincodes = formatCounts(analytics.getTopPincodes(TOP_SHOWN), "No pincodes read yet");
+                String topSkus = formatCounts(analytics.getTopSkus(TOP_SHOWN), "No SKUs read yet");
+
+                runOnUiThread(() -> {
+                    tvTotals.setText(totals);
+                    tvOrdersPerDay.setText(ordersPerDay);
+                    tvTopPincodes.setText(topPincodes);
+                    tvTopSkus.setText(topSkus);
+                    progressBar.setVisibility(View.GONE);
+                    layoutResults.setVisibility(View.VISIBLE);
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    progressBar.setVisibility(View.GONE);
+                    Toast.makeText(AnalyticsActivity.this, "Cannot read analytics: " + e.getMessage(),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static String formatCounts(List<Map.Entry<String, Integer>> counts, String empty) {
+        if (counts.isEmpty()) {
+            return empty;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> count : counts) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(count.getKey()).append(": ").append(count.getValue());
+        }
+        return text.toString();
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
@@ -3,6 +3,7 @@ package com.meeshohelper.activities;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
@@ -17,28 +18,52 @@ import androidx.cardview.widget.CardView;
 import androidx.core.content.FileProvider;
 
 import com.meeshohelper.R;
+import com.meeshohelper.models.RunStats;
+import com.meeshohelper.utils.DigestingOutputStream;
+import com.meeshohelper.utils.FileHashes;
+import com.meeshohelper.utils.FileIngestor;
 import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.OutputMemoStore;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PageCache;
 import com.meeshohelper.utils.PDFProcessor;
+import com.meeshohelper.utils.PreflightScanner;
+import com.meeshohelper.utils.ProcessingScheduler;
+import com.meeshohelper.utils.ThroughputModel;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Future;
 
 public class BillCombinerActivity extends AppCompatActivity {
 
-    private Button btnSelectFile, btnProcess, btnDownload, btnShare;
+    private Button btnSelectFile, btnProcess, btnSorted, btnThermal, btnSaveTo, btnAppend, btnDownload, btnShare,
+                   btnOpenPreview, btnRejectPreview;
     private TextView tvSelectedFile, tvFileSize, tvProcessingStatus, tvProcessingDetails, tvResultInfo;
     private CardView cardProcessing;
-    private LinearLayout layoutResults;
+    private LinearLayout layoutResults, layoutPreview;
     private ProgressBar progressBar;
 
+    private static final String OPERATION = "cropped_bills_4up";
+    private static final String SORTED_OPERATION = "sorted_bills_4up";
+    private static final String THERMAL_OPERATION = "thermal_4x6";
+
     private FileManager fileManager;
-    private ExecutorService executorService;
+    private ProcessingScheduler scheduler;
     private ActivityResultLauncher<String[]> filePickerLauncher;
+    private ActivityResultLauncher<String> saveDocumentLauncher;
 
     private File selectedFile;
     private File outputFile;
+    // Set instead of outputFile when the output was written straight to a user-picked document
+    private Uri outputUri;
+    private String outputOperation = OPERATION;
+    private PreflightScanner.Report preflightReport;
     private int totalPages = 0;
+    // Running job, cancelled when its preview is rejected
+    private Future<?> processingJob;
+    private File previewFile;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,8 +81,14 @@ public class BillCombinerActivity extends AppCompatActivity {
     private void initializeViews() {
         btnSelectFile = findViewById(R.id.btnSelectFile);
         btnProcess = findViewById(R.id.btnProcess);
+        btnSorted = findViewById(R.id.btnSorted);
+        btnThermal = findViewById(R.id.btnThermal);
+        btnSaveTo = findViewById(R.id.btnSaveTo);
+        btnAppend = findViewById(R.id.btnAppend);
         btnDownload = findViewById(R.id.btnDownload);
         btnShare = findViewById(R.id.btnShare);
+        btnOpenPreview = findViewById(R.id.btnOpenPreview);
+        btnRejectPreview = findViewById(R.id.btnRejectPreview);
         
         tvSelectedFile = findViewById(R.id.tvSelectedFile);
         tvFileSize = findViewById(R.id.tvFileSize);
@@ -67,6 +98,7 @@ public class BillCombinerActivity extends AppCompatActivity {
         
         cardProcessing = findViewById(R.id.cardProcessing);
         layoutResults = findViewById(R.id.layoutResults);
+        layoutPreview = findViewById(R.id.layoutPreview);
         progressBar = findViewById(R.id.progressBar);
     }
 
@@ -79,7 +111,7 @@ public class BillCombinerActivity extends AppCompatActivity {
 
     private void initializeServices() {
         fileManager = new FileManager(this);
-        executorService = Executors.newSingleThreadExecutor();
+        scheduler = ProcessingScheduler.getInstance();
     }
 
     private void setupFilePickerLauncher() {
@@ -91,13 +123,29 @@ public class BillCombinerActivity extends AppCompatActivity {
                     }
                 }
         );
+
+        saveDocumentLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("application/pdf"),
+                uri -> {
+                    if (uri != null) {
+                        processToDocument(uri);
+                    }
+                }
+        );
     }
 
     private void setupClickListeners() {
         btnSelectFile.setOnClickListener(v -> openFilePicker());
-        btnProcess.setOnClickListener(v -> processSelectedFile());
+        btnProcess.setOnClickListener(v -> processSelectedFile(OPERATION));
+        btnSorted.setOnClickListener(v -> processSelectedFile(SORTED_OPERATION));
+        btnThermal.setOnClickListener(v -> processSelectedFile(THERMAL_OPERATION));
+        btnSaveTo.setOnClickListener(v -> saveDocumentLauncher.launch(
+                fileManager.generateOutputFilename(selectedFile.getName(), OPERATION)));
+        btnAppend.setOnClickListener(v -> appendSelectedFile());
         btnDownload.setOnClickListener(v -> downloadFile());
         btnShare.setOnClickListener(v -> shareFile());
+        btnOpenPreview.setOnClickListener(v -> openPreview());
+        btnRejectPreview.setOnClickListener(v -> rejectPreview());
     }
 
     private void openFilePicker() {
@@ -106,30 +154,88 @@ public class BillCombinerActivity extends AppCompatActivity {
     }
 
     private void handleSelectedFile(Uri uri) {
+        String fileName = "selected_bill.pdf";
+
+        setInputButtonsEnabled(false);
+        tvFileSize.setVisibility(View.GONE);
+        tvSelectedFile.setText("Loading " + fileName + "...");
+
+        // Copy the picked document off the UI thread; the hash is taken from the same read
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                File destination = new File(fileManager.getTempDirectory(), fileName);
+                FileIngestor.Result result = new FileIngestor(this).ingest(uri, destination,
+                        (copied, total) -> runOnUiThread(() -> tvSelectedFile.setText(
+                                FileIngestor.formatProgress(fileName, copied, total))));
+
+                runOnUiThread(() -> {
+                    selectedFile = result.getFile();
+                    tvSelectedFile.setText(getString(R.string.file_selected, fileName));
+                    tvFileSize.setText("File size: " + FileManager.getReadableFileSize(result.getSize()));
+                    tvFileSize.setVisibility(View.VISIBLE);
+                    setInputButtonsEnabled(true);
+                    runPreflight();
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    tvSelectedFile.setText(R.string.no_file_selected);
+                    Toast.makeText(this, getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void setInputButtonsEnabled(boolean enabled) {
+        btnProcess.setEnabled(enabled);
+        btnSorted.setEnabled(enabled);
+        btnThermal.setEnabled(enabled);
+        btnSaveTo.setEnabled(enabled);
+        btnAppend.setEnabled(enabled);
+    }
+
+    private void runPreflight() {
+        File file = selectedFile;
+        preflightReport = null;
+        scheduler.submit(ProcessingScheduler.Priority.USER_VISIBLE, () -> {
+            try {
+                PreflightScanner.Report report = PreflightScanner.scan(file);
+                long estimate = fileManager.getThroughputModel().estimateMillis(OPERATION, report.getPageCount());
+                preflightReport = report;
+                runOnUiThread(() -> tvFileSize.setText("File size: " + FileManager.getReadableFileSize(report.getFileSize())
+                        + "\n" + report.getSummary()
+                        + "\nEstimated time: " + ThroughputModel.formatEstimate(estimate)));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void recordRunStats(String operation, long startNanos, long outputBytes, OutputOptions options) {
+        PageCache pageCache = options.getPageCache();
         try {
-            // Get file name from URI
-            String fileName = "selected_bill.pdf";
-            
-            // Copy file to app's internal storage
-            selectedFile = fileManager.copyFileFromUri(uri, fileName);
-            
-            // Get file size
-            String fileSize = FileManager.getReadableFileSize(selectedFile.length());
-            
-            // Update UI
-            tvSelectedFile.setText(getString(R.string.file_selected, fileName));
-            tvFileSize.setText("File size: " + fileSize);
-            tvFileSize.setVisibility(View.VISIBLE);
-            btnProcess.setEnabled(true);
-            
-        } catch (Exception e) {
-            Toast.makeText(this, getString(R.string.error_processing, e.getMessage()), 
-                          Toast.LENGTH_LONG).show();
+            pageCache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (preflightReport == null) {
+            return;
+        }
+        RunStats stats = new RunStats(operation, preflightReport.getPageCount(),
+                (System.nanoTime() - startNanos) / 1_000_000, outputBytes, options.getBudget().describe(),
+                pageCache.getHits(), pageCache.getMisses());
+        try {
+            fileManager.getThroughputModel().record(stats);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void processSelectedFile() {
+    /**
+     * Crop the selected bills into the 4-up A4 layout or onto 4x6 thermal labels
+     */
+    private void processSelectedFile(String operation) {
         if (selectedFile == null) {
             Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
             return;
@@ -138,40 +244,288 @@ public class BillCombinerActivity extends AppCompatActivity {
         // Show processing UI
         showProcessingState(true);
         btnProcess.setEnabled(false);
+        btnSorted.setEnabled(false);
+        btnThermal.setEnabled(false);
 
         // Process file in background
-        executorService.execute(() -> {
+        long startNanos = System.nanoTime();
+        processingJob = scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            File target = null;
             try {
                 runOnUiThread(() -> {
                     tvProcessingStatus.setText("Analyzing PDF structure...");
                     tvProcessingDetails.setText("Reading pages and preparing for cropping");
                 });
 
+                // Reuse the output of an identical earlier run if it is still there
+                OutputMemoStore memoStore = fileManager.getOutputMemoStore();
+                String memoKey = OutputMemoStore.key(FileHashes.computeFileHash(selectedFile),
+                        operation, outputOptions("").describe());
+                File memoized = memoStore.lookup(memoKey);
+                if (memoized != null) {
+                    outputFile = memoized;
+                    outputUri = null;
+                    outputOperation = operation;
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        showResults();
+                        tvResultInfo.append("\nReused the output of an earlier identical run");
+                        btnProcess.setEnabled(true);
+                        btnSorted.setEnabled(true);
+                        btnThermal.setEnabled(true);
+                    });
+                    return;
+                }
+
                 // Generate output filename
                 String outputFileName = fileManager.generateOutputFilename(
-                        selectedFile.getName(), "cropped_bills_4up");
-                outputFile = new File(fileManager.getOutputDirectory(), outputFileName);
+                        selectedFile.getName(), operation, memoKey);
+                target = new File(fileManager.getOutputDirectory(), outputFileName);
+                outputFile = target;
+                outputUri = null;
+                outputOperation = operation;
+
+                OutputOptions options = outputOptions(memoKey).withPageCache(fileManager.getPageCache());
+                if (!THERMAL_OPERATION.equals(operation)) {
+                    // The crop is the same in either order, so the first input sheet serves both layouts
+                    publishPreview(options);
+                }
+                if (THERMAL_OPERATION.equals(operation)) {
+                    runOnUiThread(() -> {
+                        tvProcessingStatus.setText("Cropping bills for thermal printing...");
+                        tvProcessingDetails.setText("Creating one 4x6 label per page");
+                    });
+
+                    PDFProcessor.createThermalLayout(selectedFile, outputFile, PDFProcessor.THERMAL_4X6,
+                            true, options);
+                } else if (SORTED_OPERATION.equals(operation)) {
+                    runOnUiThread(() -> {
+                        tvProcessingStatus.setText("Sorting bills by courier...");
+                        tvProcessingDetails.setText("Creating 4-up layout ordered by courier, then pincode");
+                    });
+
+                    PDFProcessor.createSortedFourUpLayout(selectedFile, outputFile, options);
+                } else {
+                    runOnUiThread(() -> {
+                        tvProcessingStatus.setText("Cropping and combining bills...");
+                        tvProcessingDetails.setText("Creating 4-up layout");
+                    });
+
+                    // Create 4-up layout
+                    PDFProcessor.createFourUpLayout(selectedFile, outputFile, options);
+                }
+                // A run stopped from the preview just as it finished is discarded too
+                ProcessingScheduler.yieldPoint();
+                memoStore.record(memoKey, outputFile);
+                recordRunStats(operation, startNanos, outputFile.length(), options);
+
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    showResults();
+                    btnProcess.setEnabled(true);
+                    btnSorted.setEnabled(true);
+                    btnThermal.setEnabled(true);
+                });
 
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Stopped from the preview, which already reset the screen
+                    if (target != null) {
+                        target.delete();
+                    }
+                    return;
+                }
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    btnSorted.setEnabled(true);
+                    btnThermal.setEnabled(true);
+                    Toast.makeText(BillCombinerActivity.this, 
+                                 getString(R.string.error_processing, e.getMessage()), 
+                                 Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Write the first sheet on its own and offer it while the full layout is made, so a wrong
+     * crop is caught in about a second rather than after the whole file
+     */
+    private void publishPreview(OutputOptions options) throws IOException {
+        File preview = fileManager.getPreviewFile(OPERATION);
+        PDFProcessor.createFourUpPreview(selectedFile, preview, options);
+        runOnUiThread(() -> {
+            previewFile = preview;
+            layoutPreview.setVisibility(View.VISIBLE);
+        });
+    }
+
+    private void openPreview() {
+        if (previewFile == null || !previewFile.exists()) {
+            return;
+        }
+        Uri previewUri = FileProvider.getUriForFile(this, getString(R.string.file_provider_authority), previewFile);
+        Intent intent = new Intent(Intent.ACTION_VIEW);
+        intent.setDataAndType(previewUri, "application/pdf");
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        if (intent.resolveActivity(getPackageManager()) != null) {
+            startActivity(intent);
+        } else {
+            Toast.makeText(this, "No PDF viewer app found", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Cancel the run whose first sheet looks wrong; the job discards its partial output
+     */
+    private void rejectPreview() {
+        if (processingJob != null) {
+            processingJob.cancel(true);
+        }
+        showProcessingState(false);
+        btnProcess.setEnabled(true);
+        btnSorted.setEnabled(true);
+        btnThermal.setEnabled(true);
+        Toast.makeText(this, "Stopped. Check the label PDF and try again.", Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Write the 4-up layout straight into a document the user picked, e.g. in Downloads
+     * or on a USB drive, without a copy in app storage. Size and hash are taken while writing.
+     */
+    private void processToDocument(Uri destination) {
+        showProcessingState(true);
+        btnProcess.setEnabled(false);
+        btnSaveTo.setEnabled(false);
+
+        long startNanos = System.nanoTime();
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            boolean written = false;
+            try {
                 runOnUiThread(() -> {
                     tvProcessingStatus.setText("Cropping and combining bills...");
-                    tvProcessingDetails.setText("Creating 4-up layout");
+                    tvProcessingDetails.setText("Writing straight to the chosen location");
                 });
 
-                // Create 4-up layout
-                PDFProcessor.createFourUpLayout(selectedFile, outputFile);
+                String seed = OutputMemoStore.key(FileHashes.computeFileHash(selectedFile),
+                        OPERATION, outputOptions("").describe());
+                OutputOptions options = outputOptions(seed).withPageCache(fileManager.getPageCache());
+                DigestingOutputStream output;
+                try (OutputStream documentStream = getContentResolver().openOutputStream(destination, "wt")) {
+                    if (documentStream == null) {
+                        throw new IOException("Cannot open " + destination);
+                    }
+                    output = new DigestingOutputStream(documentStream);
+                    PDFProcessor.createFourUpLayout(selectedFile, output, options);
+                    output.flush();
+                }
+                written = true;
+
+                outputFile = null;
+                outputUri = destination;
+                outputOperation = OPERATION;
+                String outputHash = output.getHash();
+                long outputBytes = output.getByteCount();
+                recordRunStats(OPERATION, startNanos, outputBytes, options);
 
                 runOnUiThread(() -> {
                     showProcessingState(false);
                     showResults();
+                    tvResultInfo.append("\nOutput file size: " + FileManager.getReadableFileSize(outputBytes)
+                            + "\nSHA-256: " + outputHash.substring(0, 16));
                     btnProcess.setEnabled(true);
+                    btnSaveTo.setEnabled(true);
                 });
 
             } catch (Exception e) {
+                // The picker created the document for this output, so a cut-off PDF is removed
+                boolean leftPartial = !written && !deleteDocument(destination);
                 runOnUiThread(() -> {
                     showProcessingState(false);
                     btnProcess.setEnabled(true);
-                    Toast.makeText(BillCombinerActivity.this, 
-                                 getString(R.string.error_processing, e.getMessage()), 
+                    btnSaveTo.setEnabled(true);
+                    String message = getString(R.string.error_processing, e.getMessage());
+                    if (leftPartial) {
+                        message += "\nThe incomplete PDF could not be removed from the chosen location; delete it before printing.";
+                    }
+                    Toast.makeText(BillCombinerActivity.this, message, Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Delete a document through its provider; false if the provider does not allow it
+     */
+    private boolean deleteDocument(Uri document) {
+        try {
+            return DocumentsContract.deleteDocument(getContentResolver(), document);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void appendSelectedFile() {
+        if (selectedFile == null) {
+            Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        showProcessingState(true);
+        btnProcess.setEnabled(false);
+        btnAppend.setEnabled(false);
+
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                // Prefer this session's 4-up output, otherwise the latest one on disk; thermal
+                // and sorted outputs cannot take more bills
+                File target = outputFile != null && outputFile.exists() && OPERATION.equals(outputOperation)
+                        ? outputFile
+                        : fileManager.findLatestOutput(OPERATION);
+
+                if (target == null) {
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        btnProcess.setEnabled(true);
+                        btnAppend.setEnabled(true);
+                        Toast.makeText(BillCombinerActivity.this,
+                                     "No previous 4-up output to add to", Toast.LENGTH_LONG).show();
+                    });
+                    return;
+                }
+
+                runOnUiThread(() -> {
+                    tvProcessingStatus.setText("Adding new orders...");
+                    tvProcessingDetails.setText("Filling empty slots on " + target.getName());
+                });
+
+                // Written next to the target, which may be a memoized output that re-processing
+                // its input would render over
+                File appendedFile = new File(fileManager.getOutputDirectory(),
+                        fileManager.generateAppendedFilename(target));
+                int appended = PDFProcessor.appendToFourUpLayout(target, selectedFile, appendedFile);
+                outputFile = appended > 0 ? appendedFile : target;
+                outputUri = null;
+                outputOperation = OPERATION;
+
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    showResults();
+                    tvResultInfo.append("\n" + appended + " new orders added");
+                    btnProcess.setEnabled(true);
+                    btnAppend.setEnabled(true);
+                });
+
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    btnAppend.setEnabled(true);
+                    Toast.makeText(BillCombinerActivity.this,
+                                 getString(R.string.error_processing, e.getMessage()),
                                  Toast.LENGTH_LONG).show();
                 });
                 e.printStackTrace();
@@ -179,15 +533,27 @@ public class BillCombinerActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Deterministic output options with the compression profile chosen on the main screen
+     */
+    private OutputOptions outputOptions(String seed) {
+        return OutputOptions.deterministic(seed).withProfile(fileManager.getOutputProfile());
+    }
+
     private void showProcessingState(boolean isProcessing) {
         cardProcessing.setVisibility(isProcessing ? View.VISIBLE : View.GONE);
+        layoutPreview.setVisibility(View.GONE);
         layoutResults.setVisibility(View.GONE);
     }
 
     private void showResults() {
         layoutResults.setVisibility(View.VISIBLE);
         
-        String resultText = "Bills successfully cropped and combined into 4-up layout";
+        String resultText = THERMAL_OPERATION.equals(outputOperation)
+                ? "Bills successfully cropped onto 4x6 thermal labels"
+                : SORTED_OPERATION.equals(outputOperation)
+                ? "Bills combined into 4-up layout, sorted by courier and pincode"
+                : "Bills successfully cropped and combined into 4-up layout";
         if (outputFile != null && outputFile.exists()) {
             String outputSize = FileManager.getReadableFileSize(outputFile.length());
             resultText += "\nOutput file size: " + outputSize;
@@ -198,16 +564,28 @@ public class BillCombinerActivity extends AppCompatActivity {
         Toast.makeText(this, R.string.processing_complete, Toast.LENGTH_SHORT).show();
     }
 
-    private void downloadFile() {
+    /**
+     * Uri of the current output: the picked document, or the app file through FileProvider
+     */
+    private Uri getOutputUri() {
+        if (outputUri != null) {
+            return outputUri;
+        }
         if (outputFile == null || !outputFile.exists()) {
+            return null;
+        }
+        return FileProvider.getUriForFile(this, getString(R.string.file_provider_authority), outputFile);
+    }
+
+    private void downloadFile() {
+        if (outputUri == null && (outputFile == null || !outputFile.exists())) {
             Toast.makeText(this, "No file to download", Toast.LENGTH_SHORT).show();
             return;
         }
 
         try {
             // Create intent to open the file
-            Uri fileUri = FileProvider.getUriForFile(this, 
-                    getString(R.string.file_provider_authority), outputFile);
+            Uri fileUri = getOutputUri();
             
             Intent intent = new Intent(Intent.ACTION_VIEW);
             intent.setDataAndType(fileUri, "application/pdf");
@@ -227,14 +605,13 @@ public class BillCombinerActivity extends AppCompatActivity {
     }
 
     private void shareFile() {
-        if (outputFile == null || !outputFile.exists()) {
+        if (outputUri == null && (outputFile == null || !outputFile.exists())) {
             Toast.makeText(this, "No file to share", Toast.LENGTH_SHORT).show();
             return;
         }
 
         try {
-            Uri fileUri = FileProvider.getUriForFile(this, 
-                    getString(R.string.file_provider_authority), outputFile);
+            Uri fileUri = getOutputUri();
             
             Intent intent = new Intent(Intent.ACTION_SEND);
             intent.setType("application/pdf");
@@ -266,13 +643,11 @@ public class BillCombinerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
-        
-        // Clean up temporary files
+
+        // Clean up temporary files off the UI thread
         if (fileManager != null) {
-            fileManager.cleanupTempFiles();
+            FileManager manager = fileManager;
+            scheduler.submit(ProcessingScheduler.Priority.BACKGROUND, manager::cleanupTempFiles);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.meeshohelper.activities;
+
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.meeshohelper.R;
+import com.meeshohelper.utils.CustomerReview;
+import com.meeshohelper.utils.ProcessingScheduler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Review the extracted customers before generating: search, correct mis-read names and
+ * addresses, and delete rows that are not customers. Returns RESULT_OK when the seller
+ * accepts the list; the edits stay in {@link CustomerReview} for the generating screen.
+ */
+public class CustomerReviewActivity extends AppCompatActivity {
+
+    private EditText etSearch;
+    private TextView tvReviewCount;
+    private RecyclerView rvCustomers;
+    private Button btnUseNames;
+
+    private CustomerReview review;
+    private CustomerReviewAdapter adapter;
+    // Searches finishing out of order must not replace a newer result
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        review = CustomerReview.getInstance();
+        if (!review.isOpen()) {
+            // The process was restarted and the extracted list is gone
+            finish();
+            return;
+        }
+        setContentView(R.layout.activity_customer_review);
+
+        initializeViews();
+        setupToolbar();
+        setupList();
+        setupClickListeners();
+        showMatches("", false);
+    }
+
+    private void initializeViews() {
+        etSearch = findViewById(R.id.etSearch);
+        tvReviewCount = findViewById(R.id.tvReviewCount);
+        rvCustomers = findViewById(R.id.rvCustomers);
+        btnUseNames = findViewById(R.id.btnUseNames);
+    }
+
+    private void setupToolbar() {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle(R.string.customer_review);
+        }
+    }
+
+    private void setupList() {
+        adapter = new CustomerReviewAdapter(new CustomerReviewAdapter.Listener() {
+            @Override
+            public void onEdit(CustomerReview.Row row) {
+                showEditDialog(row);
+            }
+
+            @Override
+            public void onDelete(CustomerReview.Row row) {
+                review.delete(row.id);
+                showMatches(etSearch.getText().toString(), true);
+            }
+        });
+        rvCustomers.setLayoutManager(new LinearLayoutManager(this));
+        rvCustomers.setHasFixedSize(true);
+        rvCustomers.setAdapter(adapter);
+    }
+
+    private void setupClickListeners() {
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showMatches(s.toString(), false);
+            }
+        });
+        btnUseNames.setOnClickListener(v -> {
+            if (review.size() == 0) {
+                Toast.makeText(this, R.string.error_no_customers, Toast.LENGTH_LONG).show();
+                return;
+            }
+            setResult(RESULT_OK);
+            finish();
+        });
+    }
+
+    /**
+     * Filter off the main thread and show the matches. After an edit or delete the list is
+     * diffed, so only the changed row is rebound and the scroll position is kept. A new
+     * query replaces the list outright instead: diffing two unrelated lists of tens of
+     * thousands of rows costs far more than rebinding the few rows on screen.
+     */
+    private void showMatches(String query, boolean diff) {
+        int generation = searchGeneration.incrementAndGet();
+        ProcessingScheduler.getInstance().submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            List<CustomerReview.Row> matches = review.search(query);
+            int total = review.size();
+            runOnUiThread(() -> {
+                if (generation != searchGeneration.get() || isFinishing()) {
+                    return;
+                }
+                if (!diff) {
+                    adapter.submitList(null);
+                }
+                adapter.submitList(matches);
+                tvReviewCount.setText(query.trim().isEmpty()
+                        ? total + " customers. Tap a name to correct it."
+                        : matches.size() + " of " + total + " customers match");
+            });
+        });
+    }
+
+    private void showEditDialog(CustomerReview.Row row) {
+        EditText name = new EditText(this);
+        name.setHint("Name");
+        name.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PERSON_NAME
+                | InputType.TYPE_TEXT_FLAG_CAP_WORDS);
+        name.setText(row.customer.getName());
+        EditText address = new EditText(this);
+        address.setHint("Address");
+        address.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_POSTAL_ADDRESS
+                | InputType.TYPE_TEXT_FLAG_MULTI_LINE);
+        address.setText(row.customer.getAddress());
+
+        LinearLayout form = new LinearLayout(this);
+        form.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (16 * getResources().getDisplayMetrics().density);
+        form.setPadding(padding, padding / 2, padding, 0);
+        form.addView(name);
+        form.addView(address);
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Edit customer")
+                .setView(form)
+                .setPositiveButton("Save", null)
+                .setNeutralButton("Delete", (d, which) -> {
+                    review.delete(row.id);
+                    showMatches(etSearch.getText().toString(), true);
+                })
+                .setNegativeButton("Cancel", null)
+                .create();
+        dialog.setOnShowListener(shown -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String newName = name.getText().toString().trim();
+            if (newName.isEmpty()) {
+                name.setError("Enter a name");
+                return;
+            }
+            review.update(row.id, newName, address.getText().toString().trim());
+            showMatches(etSearch.getText().toString(), true);
+            dialog.dismiss();
+        }));
+        dialog.show();
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+package com.meeshohelper.activities;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.meeshohelper.R;
+import com.meeshohelper.utils.CustomerReview;
+
+/**
+ * Rows of the customer review list. Rows are matched by id, so an edit or delete is diffed
+ * as a change to that one row and only its view is rebound.
+ */
+class CustomerReviewAdapter extends ListAdapter<CustomerReview.Row, CustomerReviewAdapter.ViewHolder> {
+
+    interface Listener {
+        void onEdit(CustomerReview.Row row);
+
+        void onDelete(CustomerReview.Row row);
+    }
+
+    private static final DiffUtil.ItemCallback<CustomerReview.Row> DIFF = new DiffUtil.ItemCallback<CustomerReview.Row>() {
+        @Override
+        public boolean areItemsTheSame(CustomerReview.Row oldRow, CustomerReview.Row newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(CustomerReview.Row oldRow, CustomerReview.Row newRow) {
+            // Edits replace the customer object, so identity is enough
+            return oldRow.customer == newRow.customer;
+        }
+    };
+
+    private final Listener listener;
+
+    CustomerReviewAdapter(Listener listener) {
+        super(DIFF);
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_customer_review, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        CustomerReview.Row row = getItem(position);
+        holder.tvName.setText(row.customer.getName());
+        String address = row.customer.getAddress();
+        holder.tvAddress.setText(address);
+        holder.tvAddress.setVisibility(address == null || address.isEmpty() ? View.GONE : View.VISIBLE);
+        holder.itemView.setOnClickListener(v -> listener.onEdit(row));
+        holder.btnDelete.setOnClickListener(v -> listener.onDelete(row));
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView tvName, tvAddress;
+        final Button btnDelete;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            tvName = itemView.findViewById(R.id.tvCustomerName);
+            tvAddress = itemView.findViewById(R.id.tvCustomerAddress);
+            btnDelete = itemView.findViewById(R.id.btnDeleteCustomer);
+        }
+    }
+}
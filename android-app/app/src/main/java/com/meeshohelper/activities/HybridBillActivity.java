@@ -12,36 +12,75 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.FileProvider;
 
 import com.meeshohelper.R;
 import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.RunStats;
+import com.meeshohelper.models.RunSummary;
+import com.meeshohelper.utils.CustomerHistoryStore;
+import com.meeshohelper.utils.CustomerReview;
+import com.meeshohelper.utils.FileHashes;
+import com.meeshohelper.utils.FileIngestor;
 import com.meeshohelper.utils.FileManager;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OrderAnalytics;
+import com.meeshohelper.utils.OrderExportImporter;
+import com.meeshohelper.utils.OutputMemoStore;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PageCache;
 import com.meeshohelper.utils.PDFProcessor;
+import com.meeshohelper.utils.PreflightScanner;
+import com.meeshohelper.utils.ProcessingScheduler;
+import com.meeshohelper.utils.ResourceGovernor;
+import com.meeshohelper.utils.ThroughputModel;
+import com.meeshohelper.utils.RenderJournal;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class HybridBillActivity extends AppCompatActivity {
 
-    private Button btnSelectFile, btnProcess, btnDownload, btnShare;
-    private TextView tvSelectedFile, tvFileSize, tvProcessingStatus, tvProcessingDetails, 
+    private Button btnSelectFile, btnSelectExport, btnProcess, btnReview, btnDownload, btnShare,
+                   btnOpenPreview, btnRejectPreview;
+    private TextView tvSelectedFile, tvSelectedExport, tvFileSize, tvProcessingStatus, tvProcessingDetails, 
                     tvCustomerProgress, tvResultInfo, tvCustomerInfo;
     private CardView cardProcessing;
-    private LinearLayout layoutResults;
+    private LinearLayout layoutResults, layoutPreview;
     private ProgressBar progressBar;
 
+    private static final String OPERATION = "hybrid_bills";
+
     private FileManager fileManager;
-    private ExecutorService executorService;
+    private ProcessingScheduler scheduler;
     private ActivityResultLauncher<String[]> filePickerLauncher;
+    private ActivityResultLauncher<String[]> exportPickerLauncher;
+    private ActivityResultLauncher<Intent> reviewLauncher;
 
     private File selectedFile;
+    private File selectedExport;
     private File outputFile;
+    private PreflightScanner.Report preflightReport;
+    private long processStartNanos;
     private List<CustomerData> extractedCustomers;
+    private OutputMemoStore memoStore;
+    private String memoKey;
+    private LeafletTemplate leafletTemplate;
+    // Pages of the run's labels read from or added to the page cache, for the run stats
+    private PageCache pageCache = PageCache.none();
+    // Orders read while extracting the customers under review
+    private RunSummary.Builder reviewedOrders;
+    // Input and orders of the run being rendered, recorded once its bills are written
+    private String runInputHash;
+    private RunSummary.Builder runOrders;
+    // Running job, cancelled when its preview is rejected
+    private Future<?> processingJob;
+    private File previewFile;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,11 +97,16 @@ public class HybridBillActivity extends AppCompatActivity {
 
     private void initializeViews() {
         btnSelectFile = findViewById(R.id.btnSelectFile);
+        btnSelectExport = findViewById(R.id.btnSelectExport);
         btnProcess = findViewById(R.id.btnProcess);
+        btnReview = findViewById(R.id.btnReview);
         btnDownload = findViewById(R.id.btnDownload);
         btnShare = findViewById(R.id.btnShare);
+        btnOpenPreview = findViewById(R.id.btnOpenPreview);
+        btnRejectPreview = findViewById(R.id.btnRejectPreview);
         
         tvSelectedFile = findViewById(R.id.tvSelectedFile);
+        tvSelectedExport = findViewById(R.id.tvSelectedExport);
         tvFileSize = findViewById(R.id.tvFileSize);
         tvProcessingStatus = findViewById(R.id.tvProcessingStatus);
         tvProcessingDetails = findViewById(R.id.tvProcessingDetails);
@@ -72,6 +116,7 @@ public class HybridBillActivity extends AppCompatActivity {
         
         cardProcessing = findViewById(R.id.cardProcessing);
         layoutResults = findViewById(R.id.layoutResults);
+        layoutPreview = findViewById(R.id.layoutPreview);
         progressBar = findViewById(R.id.progressBar);
     }
 
@@ -84,7 +129,7 @@ public class HybridBillActivity extends AppCompatActivity {
 
     private void initializeServices() {
         fileManager = new FileManager(this);
-        executorService = Executors.newSingleThreadExecutor();
+        scheduler = ProcessingScheduler.getInstance();
     }
 
     private void setupFilePickerLauncher() {
@@ -96,13 +141,35 @@ public class HybridBillActivity extends AppCompatActivity {
                     }
                 }
         );
+        exportPickerLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    if (uri != null) {
+                        handleSelectedExport(uri);
+                    }
+                }
+        );
+        reviewLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK) {
+                        processSelectedFile();
+                    }
+                }
+        );
     }
 
     private void setupClickListeners() {
         btnSelectFile.setOnClickListener(v -> openFilePicker());
+        btnSelectExport.setOnClickListener(v -> exportPickerLauncher.launch(new String[]{
+                "text/csv", "text/comma-separated-values",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"}));
         btnProcess.setOnClickListener(v -> processSelectedFile());
+        btnReview.setOnClickListener(v -> reviewSelectedFile());
         btnDownload.setOnClickListener(v -> downloadFile());
         btnShare.setOnClickListener(v -> shareFile());
+        btnOpenPreview.setOnClickListener(v -> openPreview());
+        btnRejectPreview.setOnClickListener(v -> rejectPreview());
     }
 
     private void openFilePicker() {
@@ -111,29 +178,184 @@ public class HybridBillActivity extends AppCompatActivity {
     }
 
     private void handleSelectedFile(Uri uri) {
+        String fileName = "selected_hybrid_bill.pdf";
+
+        btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
+        tvFileSize.setVisibility(View.GONE);
+        tvSelectedFile.setText("Loading " + fileName + "...");
+
+        // Copy the picked document off the UI thread; the hash is taken from the same read
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                File destination = new File(fileManager.getTempDirectory(), fileName);
+                FileIngestor.Result result = new FileIngestor(this).ingest(uri, destination,
+                        (copied, total) -> runOnUiThread(() -> tvSelectedFile.setText(
+                                FileIngestor.formatProgress(fileName, copied, total))));
+
+                runOnUiThread(() -> {
+                    selectedFile = result.getFile();
+                    tvSelectedFile.setText(getString(R.string.file_selected, fileName));
+                    tvFileSize.setText("File size: " + FileManager.getReadableFileSize(result.getSize()));
+                    tvFileSize.setVisibility(View.VISIBLE);
+                    btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
+                    runPreflight();
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    tvSelectedFile.setText(R.string.no_file_selected);
+                    Toast.makeText(this, getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void handleSelectedExport(Uri uri) {
+        selectedExport = null;
+        tvSelectedExport.setText("Loading order export...");
+        tvSelectedExport.setVisibility(View.VISIBLE);
+
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                // Names come from the export instead of being scraped from the labels
+                String fileName = "selected_orders" + fileManager.getExtensionForUri(uri);
+                File destination = new File(fileManager.getTempDirectory(), fileName);
+                FileIngestor.Result result = new FileIngestor(this).ingest(uri, destination,
+                        (copied, total) -> runOnUiThread(() -> tvSelectedExport.setText(
+                                FileIngestor.formatProgress(fileName, copied, total))));
+
+                runOnUiThread(() -> {
+                    selectedExport = result.getFile();
+                    tvSelectedExport.setText("Customer names from: " + fileName);
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    tvSelectedExport.setVisibility(View.GONE);
+                    Toast.makeText(this, getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void runPreflight() {
+        File file = selectedFile;
+        preflightReport = null;
+        scheduler.submit(ProcessingScheduler.Priority.USER_VISIBLE, () -> {
+            try {
+                PreflightScanner.Report report = PreflightScanner.scan(file);
+                long estimate = fileManager.getThroughputModel().estimateMillis(OPERATION, report.getPageCount());
+                preflightReport = report;
+                runOnUiThread(() -> tvFileSize.setText("File size: " + FileManager.getReadableFileSize(report.getFileSize())
+                        + "\n" + report.getSummary()
+                        + "\nEstimated time: " + ThroughputModel.formatEstimate(estimate)));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Add this run's orders to the analytics; call before the customer history records the
+     * run so repeat customers are counted against earlier runs only
+     */
+    private void recordAnalytics(String inputHash, RunSummary.Builder orders, CustomerHistoryStore history) {
         try {
-            // Get file name from URI
-            String fileName = "selected_hybrid_bill.pdf";
-            
-            // Copy file to app's internal storage
-            selectedFile = fileManager.copyFileFromUri(uri, fileName);
-            
-            // Get file size
-            String fileSize = FileManager.getReadableFileSize(selectedFile.length());
-            
-            // Update UI
-            tvSelectedFile.setText(getString(R.string.file_selected, fileName));
-            tvFileSize.setText("File size: " + fileSize);
-            tvFileSize.setVisibility(View.VISIBLE);
-            btnProcess.setEnabled(true);
-            
-        } catch (Exception e) {
-            Toast.makeText(this, getString(R.string.error_processing, e.getMessage()), 
-                          Toast.LENGTH_LONG).show();
+            fileManager.getOrderAnalytics().record(
+                    OrderAnalytics.summarize(inputHash, extractedCustomers, orders, history));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void recordRunStats(long startNanos, ResourceGovernor.Budget budget) {
+        if (preflightReport == null || outputFile == null) {
+            return;
+        }
+        RunStats stats = new RunStats(OPERATION, preflightReport.getPageCount(),
+                (System.nanoTime() - startNanos) / 1_000_000, outputFile.length(), budget.describe(),
+                pageCache.getHits(), pageCache.getMisses());
+        try {
+            fileManager.getThroughputModel().record(stats);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Keep the pages analyzed in this run for the next overlapping file; a cache that
+     * cannot be written only costs analyzing them again
+     */
+    private void savePageCache(PageCache pageCache) {
+        try {
+            pageCache.save();
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Extract the customers and open them for review. Generating afterwards uses the
+     * reviewed list instead of extracting again.
+     */
+    private void reviewSelectedFile() {
+        if (selectedFile == null) {
+            Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        showProcessingState(true);
+        btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
+        tvProcessingStatus.setText("Extracting customer names...");
+        tvProcessingDetails.setText("Finding customer information from order labels");
+        tvCustomerProgress.setText("");
+
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                String reviewKey = reviewKey();
+                RunSummary.Builder orders = new RunSummary.Builder();
+                PageCache reviewPageCache = fileManager.getPageCache();
+                List<CustomerData> customers = extractCustomers(orders, reviewPageCache);
+                savePageCache(reviewPageCache);
+                reviewedOrders = orders;
+                CustomerReview.getInstance().start(reviewKey, customers);
+
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
+                    reviewLauncher.launch(new Intent(this, CustomerReviewActivity.class));
+                });
+            } catch (Exception e) {
+                showProcessingError(e);
+            }
+        });
+    }
+
+    /**
+     * Identifies the reviewed names: the labels, and the order export they were taken from
+     */
+    private String reviewKey() throws IOException {
+        String key = FileHashes.computeFileHash(selectedFile);
+        return selectedExport != null ? key + ":" + FileHashes.computeFileHash(selectedExport) : key;
+    }
+
+    /**
+     * Customers from the selected export, or extracted from the labels together with their
+     * orders for analytics
+     */
+    private List<CustomerData> extractCustomers(RunSummary.Builder orders, PageCache pageCache) throws IOException {
+        if (selectedExport != null) {
+            return OrderExportImporter.importCustomers(selectedExport, fileManager.getAppDirectory());
+        }
+        return PDFProcessor.extractCustomerNames(selectedFile, orders, pageCache);
+    }
+
     private void processSelectedFile() {
         if (selectedFile == null) {
             Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
@@ -143,9 +365,11 @@ public class HybridBillActivity extends AppCompatActivity {
         // Show processing UI
         showProcessingState(true);
         btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
 
         // Process file in background
-        executorService.execute(() -> {
+        processStartNanos = System.nanoTime();
+        processingJob = scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
             try {
                 runOnUiThread(() -> {
                     tvProcessingStatus.setText("Analyzing PDF content...");
@@ -153,18 +377,63 @@ public class HybridBillActivity extends AppCompatActivity {
                     tvCustomerProgress.setText("");
                 });
 
-                // Extract customer names first
-                runOnUiThread(() -> {
-                    tvProcessingStatus.setText("Extracting customer names...");
-                    tvProcessingDetails.setText("Finding customer information from order labels");
-                });
+                // Reuse the output of an identical earlier run if it is still there
+                memoStore = fileManager.getOutputMemoStore();
+                leafletTemplate = fileManager.getLeafletTemplate();
+                String memoOptions = outputOptions("").describe() + ";template=" + leafletTemplate.fingerprint();
+                // Review codes depend on which customers are repeats, so a grown history is a new input
+                try (CustomerHistoryStore history = fileManager.openCustomerHistory()) {
+                    memoOptions += ";history=" + history.getOrderCount();
+                }
+                if (selectedExport != null) {
+                    memoOptions += ";export=" + FileHashes.computeFileHash(selectedExport);
+                }
+                // A reviewed list is used as edited; edits make it a different input
+                CustomerReview review = CustomerReview.getInstance();
+                List<CustomerData> reviewed = review.getCustomers(reviewKey());
+                if (reviewed != null && review.isEdited()) {
+                    memoOptions += ";reviewed=" + reviewed.hashCode();
+                }
+                String inputHash = FileHashes.computeFileHash(selectedFile);
+                memoKey = OutputMemoStore.key(inputHash, "hybrid_bills", memoOptions);
+                File memoized = memoStore.lookup(memoKey);
+                if (memoized != null) {
+                    outputFile = memoized;
+                    extractedCustomers = null;
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        showResults();
+                        btnProcess.setEnabled(true);
+                        btnReview.setEnabled(true);
+                    });
+                    return;
+                }
+
+                // The first sheet reads only its own pages, so it is ready before the full extraction
+                publishPreview();
 
-                extractedCustomers = PDFProcessor.extractCustomerNames(selectedFile);
+                // Extract customer names first, unless they were extracted for review
+                RunSummary.Builder orders;
+                pageCache = PageCache.none();
+                if (reviewed != null) {
+                    extractedCustomers = reviewed;
+                    orders = reviewedOrders;
+                } else {
+                    runOnUiThread(() -> {
+                        tvProcessingStatus.setText("Extracting customer names...");
+                        tvProcessingDetails.setText("Finding customer information from order labels");
+                    });
+                    orders = new RunSummary.Builder();
+                    pageCache = fileManager.getPageCache();
+                    extractedCustomers = extractCustomers(orders, pageCache);
+                    savePageCache(pageCache);
+                }
                 
                 if (extractedCustomers.isEmpty()) {
                     runOnUiThread(() -> {
                         showProcessingState(false);
                         btnProcess.setEnabled(true);
+                        btnReview.setEnabled(true);
                         Toast.makeText(HybridBillActivity.this, 
                                      R.string.error_no_customers, Toast.LENGTH_LONG).show();
                     });
@@ -175,40 +444,159 @@ public class HybridBillActivity extends AppCompatActivity {
                     tvCustomerProgress.setText("Found " + extractedCustomers.size() + " customers");
                 });
 
-                // Generate output filename
-                String outputFileName = fileManager.generateOutputFilename(
-                        selectedFile.getName(), "hybrid_bills");
-                outputFile = new File(fileManager.getOutputDirectory(), outputFileName);
+                runInputHash = inputHash;
+                runOrders = orders;
+
+                // Offer to continue an interrupted run of the same file
+                File checkpointDir = fileManager.getJobDirectory("hybrid_bills");
+                int resumePage = PDFProcessor.getHybridResumePage(selectedFile, extractedCustomers,
+                        checkpointDir, outputOptions(memoKey), leafletTemplate);
+                if (resumePage > 0) {
+                    runOnUiThread(() -> showResumeDialog(resumePage));
+                } else {
+                    renderHybridBills(checkpointDir);
+                }
 
-                runOnUiThread(() -> {
-                    tvProcessingStatus.setText("Creating hybrid bills...");
-                    tvProcessingDetails.setText("Combining cropped bills with personalized leaflets");
-                });
+            } catch (Exception e) {
+                showProcessingError(e);
+            }
+        });
+    }
 
-                // Generate hybrid bill PDF
-                PDFProcessor.generateHybridBill(selectedFile, outputFile, extractedCustomers);
+    private void showResumeDialog(int resumePage) {
+        new AlertDialog.Builder(this)
+                .setTitle("Resume previous run?")
+                .setMessage("An earlier run of this file was interrupted. Continue from page "
+                        + resumePage + " instead of starting again from page 1?")
+                .setCancelable(false)
+                .setPositiveButton("Resume", (dialog, which) -> processingJob = scheduler.submit(
+                        ProcessingScheduler.Priority.INTERACTIVE,
+                        () -> renderHybridBills(fileManager.getJobDirectory("hybrid_bills"))))
+                .setNegativeButton("Start Over", (dialog, which) -> processingJob = scheduler.submit(
+                        ProcessingScheduler.Priority.INTERACTIVE, () -> {
+                    File checkpointDir = fileManager.getJobDirectory("hybrid_bills");
+                    RenderJournal.clear(checkpointDir);
+                    renderHybridBills(checkpointDir);
+                }))
+                .show();
+    }
 
-                runOnUiThread(() -> {
-                    showProcessingState(false);
-                    showResults();
-                    btnProcess.setEnabled(true);
-                });
+    private void renderHybridBills(File checkpointDir) {
+        try {
+            // Generate output filename
+            String outputFileName = fileManager.generateOutputFilename(
+                    selectedFile.getName(), "hybrid_bills", memoKey);
+            outputFile = new File(fileManager.getOutputDirectory(), outputFileName);
+
+            runOnUiThread(() -> {
+                tvProcessingStatus.setText("Creating hybrid bills...");
+                tvProcessingDetails.setText("Combining cropped bills with personalized leaflets");
+            });
+
+            // Generate hybrid bill PDF, committing progress so an interrupted run can resume
+            OutputOptions options = outputOptions(memoKey);
+            try (CustomerHistoryStore history = fileManager.openCustomerHistory()) {
+                // Repeat customers, as of the runs before this one, get their review codes
+                PDFProcessor.generateHybridBill(selectedFile, outputFile, extractedCustomers, checkpointDir, options,
+                        leafletTemplate, history);
+                // A run stopped from the preview just as it finished is discarded too
+                ProcessingScheduler.yieldPoint();
+                memoStore.record(memoKey, outputFile);
+                // Remember these customers so later leaflets can recognise repeat buyers; only a
+                // rendered run counts, so a failed one can be retried without becoming a repeat
+                recordAnalytics(runInputHash, runOrders, history);
+                history.recordRun(extractedCustomers);
+            }
+            recordRunStats(processStartNanos, options.getBudget());
 
-            } catch (Exception e) {
-                runOnUiThread(() -> {
-                    showProcessingState(false);
-                    btnProcess.setEnabled(true);
-                    Toast.makeText(HybridBillActivity.this, 
-                                 getString(R.string.error_processing, e.getMessage()), 
-                                 Toast.LENGTH_LONG).show();
-                });
-                e.printStackTrace();
+            runOnUiThread(() -> {
+                showProcessingState(false);
+                showResults();
+                btnProcess.setEnabled(true);
+                btnReview.setEnabled(true);
+            });
+
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // A rejected run is not worth resuming
+                RenderJournal.clear(checkpointDir);
+                if (outputFile != null) {
+                    outputFile.delete();
+                }
             }
+            showProcessingError(e);
+        }
+    }
+
+    /**
+     * Write the first sheet with its leaflets on its own and offer it while the full run
+     * goes on, so a wrong crop or leaflet is caught in about a second
+     */
+    private void publishPreview() throws IOException {
+        File preview = fileManager.getPreviewFile(OPERATION);
+        try (CustomerHistoryStore history = fileManager.openCustomerHistory()) {
+            PDFProcessor.createHybridPreview(selectedFile, preview, leafletTemplate, history);
+        }
+        runOnUiThread(() -> {
+            previewFile = preview;
+            layoutPreview.setVisibility(View.VISIBLE);
+        });
+    }
+
+    private void openPreview() {
+        if (previewFile == null || !previewFile.exists()) {
+            return;
+        }
+        Uri previewUri = FileProvider.getUriForFile(this, getString(R.string.file_provider_authority), previewFile);
+        Intent intent = new Intent(Intent.ACTION_VIEW);
+        intent.setDataAndType(previewUri, "application/pdf");
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        if (intent.resolveActivity(getPackageManager()) != null) {
+            startActivity(intent);
+        } else {
+            Toast.makeText(this, "No PDF viewer app found", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Cancel the run whose first sheet looks wrong; the job discards its checkpoints
+     */
+    private void rejectPreview() {
+        if (processingJob != null) {
+            processingJob.cancel(true);
+        }
+        showProcessingState(false);
+        btnProcess.setEnabled(true);
+        btnReview.setEnabled(true);
+        Toast.makeText(this, "Stopped. Check the label PDF and try again.", Toast.LENGTH_LONG).show();
+    }
+
+    private void showProcessingError(Exception e) {
+        if (Thread.currentThread().isInterrupted()) {
+            // Stopped from the preview, which already reset the screen
+            return;
+        }
+        runOnUiThread(() -> {
+            showProcessingState(false);
+            btnProcess.setEnabled(true);
+            btnReview.setEnabled(true);
+            Toast.makeText(HybridBillActivity.this, 
+                         getString(R.string.error_processing, e.getMessage()), 
+                         Toast.LENGTH_LONG).show();
         });
+        e.printStackTrace();
+    }
+
+    /**
+     * Deterministic output options with the compression profile chosen on the main screen
+     */
+    private OutputOptions outputOptions(String seed) {
+        return OutputOptions.deterministic(seed).withProfile(fileManager.getOutputProfile());
     }
 
     private void showProcessingState(boolean isProcessing) {
         cardProcessing.setVisibility(isProcessing ? View.VISIBLE : View.GONE);
+        layoutPreview.setVisibility(View.GONE);
         layoutResults.setVisibility(View.GONE);
     }
 
@@ -223,6 +611,12 @@ public class HybridBillActivity extends AppCompatActivity {
         
         tvResultInfo.setText(resultText);
         
+        if (extractedCustomers == null) {
+            tvCustomerInfo.setText("Reused the output of an earlier identical run");
+            Toast.makeText(this, R.string.processing_complete, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         // Show customer information
         String customerInfoText = "Customer leaflets generated for:\n";
         int maxShow = Math.min(extractedCustomers.size(), 5); // Show max 5 names
@@ -281,8 +675,10 @@ public class HybridBillActivity extends AppCompatActivity {
             intent.putExtra(Intent.EXTRA_STREAM, fileUri);
             intent.putExtra(Intent.EXTRA_SUBJECT, "Hybrid Bills - Orders with Thank You Leaflets");
             intent.putExtra(Intent.EXTRA_TEXT, 
-                "Hybrid bills containing both cropped order labels and personalized thank-you leaflets for " + 
-                extractedCustomers.size() + " customers.");
+                extractedCustomers != null
+                    ? "Hybrid bills containing both cropped order labels and personalized thank-you leaflets for " +
+                      extractedCustomers.size() + " customers."
+                    : "Hybrid bills containing both cropped order labels and personalized thank-you leaflets.");
             intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
             
             Intent chooser = Intent.createChooser(intent, "Share Hybrid Bills PDF");
@@ -308,13 +704,16 @@ public class HybridBillActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
+
+        // The reviewed list belongs to this screen's files
+        if (isFinishing()) {
+            CustomerReview.getInstance().clear();
         }
-        
-        // Clean up temporary files
+
+        // Clean up temporary files off the UI thread
         if (fileManager != null) {
-            fileManager.cleanupTempFiles();
+            FileManager manager = fileManager;
+            scheduler.submit(ProcessingScheduler.Priority.BACKGROUND, manager::cleanupTempFiles);
         }
     }
 }
\ No newline at end of file
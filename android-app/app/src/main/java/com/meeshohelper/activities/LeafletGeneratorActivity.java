@@ -18,30 +18,51 @@ import androidx.core.content.FileProvider;
 
 import com.meeshohelper.R;
 import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.RunStats;
+import com.meeshohelper.models.RunSummary;
+import com.meeshohelper.utils.CustomerHistoryStore;
+import com.meeshohelper.utils.CustomerReview;
+import com.meeshohelper.utils.FileHashes;
+import com.meeshohelper.utils.FileIngestor;
 import com.meeshohelper.utils.FileManager;
 import com.meeshohelper.utils.LeafletGenerator;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OrderAnalytics;
+import com.meeshohelper.utils.OrderExportImporter;
+import com.meeshohelper.utils.OutputMemoStore;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PageCache;
 import com.meeshohelper.utils.PDFProcessor;
+import com.meeshohelper.utils.PreflightScanner;
+import com.meeshohelper.utils.ProcessingScheduler;
+import com.meeshohelper.utils.ResourceGovernor;
+import com.meeshohelper.utils.ThroughputModel;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class LeafletGeneratorActivity extends AppCompatActivity {
 
-    private Button btnSelectFile, btnProcess, btnDownload, btnShare;
+    private Button btnSelectFile, btnProcess, btnReview, btnDownload, btnShare;
     private TextView tvSelectedFile, tvProcessingStatus, tvCustomerCount;
     private CardView cardProcessing;
     private LinearLayout layoutResults;
     private ProgressBar progressBar;
 
+    private static final String OPERATION = "leaflets";
+
     private FileManager fileManager;
-    private ExecutorService executorService;
+    private ProcessingScheduler scheduler;
     private ActivityResultLauncher<String[]> filePickerLauncher;
+    private ActivityResultLauncher<Intent> reviewLauncher;
 
     private File selectedFile;
     private File outputFile;
+    private PreflightScanner.Report preflightReport;
     private List<CustomerData> extractedCustomers;
+    // Orders read while extracting the customers under review
+    private RunSummary.Builder reviewedOrders;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -59,6 +80,7 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
     private void initializeViews() {
         btnSelectFile = findViewById(R.id.btnSelectFile);
         btnProcess = findViewById(R.id.btnProcess);
+        btnReview = findViewById(R.id.btnReview);
         btnDownload = findViewById(R.id.btnDownload);
         btnShare = findViewById(R.id.btnShare);
         
@@ -80,7 +102,7 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
 
     private void initializeServices() {
         fileManager = new FileManager(this);
-        executorService = Executors.newSingleThreadExecutor();
+        scheduler = ProcessingScheduler.getInstance();
     }
 
     private void setupFilePickerLauncher() {
@@ -92,39 +114,180 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
                     }
                 }
         );
+
+        reviewLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK) {
+                        processSelectedFile();
+                    }
+                }
+        );
     }
 
     private void setupClickListeners() {
         btnSelectFile.setOnClickListener(v -> openFilePicker());
         btnProcess.setOnClickListener(v -> processSelectedFile());
+        btnReview.setOnClickListener(v -> reviewSelectedFile());
         btnDownload.setOnClickListener(v -> downloadFile());
         btnShare.setOnClickListener(v -> shareFile());
     }
 
     private void openFilePicker() {
-        String[] mimeTypes = {"application/pdf"};
+        String[] mimeTypes = {"application/pdf", "text/csv", "text/comma-separated-values",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"};
         filePickerLauncher.launch(mimeTypes);
     }
 
     private void handleSelectedFile(Uri uri) {
+        btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
+        tvSelectedFile.setText("Loading file...");
+
+        // Copy the picked document off the UI thread; the hash is taken from the same read
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                String fileName = "selected_file" + fileManager.getExtensionForUri(uri);
+                File destination = new File(fileManager.getTempDirectory(), fileName);
+                FileIngestor.Result result = new FileIngestor(this).ingest(uri, destination,
+                        (copied, total) -> runOnUiThread(() -> tvSelectedFile.setText(
+                                FileIngestor.formatProgress(fileName, copied, total))));
+                // Order exports have no pages to scan
+                boolean orderExport = OrderExportImporter.isOrderExport(result.getFile());
+
+                runOnUiThread(() -> {
+                    selectedFile = result.getFile();
+                    tvSelectedFile.setText(getString(R.string.file_selected, fileName));
+                    btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
+                    if (!orderExport) {
+                        runPreflight();
+                    }
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    tvSelectedFile.setText(R.string.no_file_selected);
+                    Toast.makeText(this, getString(R.string.error_processing, e.getMessage()),
+                            Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void runPreflight() {
+        File file = selectedFile;
+        preflightReport = null;
+        scheduler.submit(ProcessingScheduler.Priority.USER_VISIBLE, () -> {
+            try {
+                PreflightScanner.Report report = PreflightScanner.scan(file);
+                long estimate = fileManager.getThroughputModel().estimateMillis(OPERATION, report.getPageCount());
+                preflightReport = report;
+                runOnUiThread(() -> tvSelectedFile.setText(getString(R.string.file_selected, file.getName())
+                        + "\n" + report.getSummary()
+                        + "\nEstimated time: " + ThroughputModel.formatEstimate(estimate)));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void recordRunStats(long startNanos, ResourceGovernor.Budget budget, PageCache pageCache) {
+        savePageCache(pageCache);
+        if (preflightReport == null || outputFile == null) {
+            return;
+        }
+        RunStats stats = new RunStats(OPERATION, preflightReport.getPageCount(),
+                (System.nanoTime() - startNanos) / 1_000_000, outputFile.length(), budget.describe(),
+                pageCache.getHits(), pageCache.getMisses());
         try {
-            // Get file name from URI
-            String fileName = "selected_file.pdf";
-            
-            // Copy file to app's internal storage
-            selectedFile = fileManager.copyFileFromUri(uri, fileName);
-            
-            // Update UI
-            tvSelectedFile.setText(getString(R.string.file_selected, fileName));
-            btnProcess.setEnabled(true);
-            
-        } catch (Exception e) {
-            Toast.makeText(this, getString(R.string.error_processing, e.getMessage()), 
-                          Toast.LENGTH_LONG).show();
+            fileManager.getThroughputModel().record(stats);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Keep the pages analyzed in this run for the next overlapping file; a cache that
+     * cannot be written only costs analyzing them again
+     */
+    private void savePageCache(PageCache pageCache) {
+        try {
+            pageCache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Add this run's orders to the analytics; call before the customer history records the
+     * run so repeat customers are counted against earlier runs only
+     */
+    private void recordAnalytics(String inputHash, RunSummary.Builder orders, CustomerHistoryStore history) {
+        try {
+            fileManager.getOrderAnalytics().record(
+                    OrderAnalytics.summarize(inputHash, extractedCustomers, orders, history));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Extract the customers and open them for review. Generating afterwards uses the
+     * reviewed list instead of extracting again.
+     */
+    private void reviewSelectedFile() {
+        if (selectedFile == null) {
+            Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        showProcessingState(true);
+        btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
+        tvProcessingStatus.setText("Extracting customer names...");
+
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try {
+                String inputHash = FileHashes.computeFileHash(selectedFile);
+                RunSummary.Builder orders = new RunSummary.Builder();
+                PageCache pageCache = fileManager.getPageCache();
+                List<CustomerData> customers = extractCustomers(orders, pageCache);
+                savePageCache(pageCache);
+                reviewedOrders = orders;
+                CustomerReview.getInstance().start(inputHash, customers);
+
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
+                    reviewLauncher.launch(new Intent(this, CustomerReviewActivity.class));
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    showProcessingState(false);
+                    btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
+                    Toast.makeText(LeafletGeneratorActivity.this,
+                                 getString(R.string.error_processing, e.getMessage()),
+                                 Toast.LENGTH_LONG).show();
+                });
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Customers of the selected file. Order exports carry the customer columns directly;
+     * labels need text extraction, which also collects their orders for analytics.
+     */
+    private List<CustomerData> extractCustomers(RunSummary.Builder orders, PageCache pageCache) throws IOException {
+        if (OrderExportImporter.isOrderExport(selectedFile)) {
+            return OrderExportImporter.importCustomers(selectedFile, fileManager.getAppDirectory());
+        }
+        return PDFProcessor.extractCustomerNames(selectedFile, orders, pageCache);
+    }
+
     private void processSelectedFile() {
         if (selectedFile == null) {
             Toast.makeText(this, R.string.no_file_selected, Toast.LENGTH_SHORT).show();
@@ -134,19 +297,57 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
         // Show processing UI
         showProcessingState(true);
         btnProcess.setEnabled(false);
+        btnReview.setEnabled(false);
 
         // Process file in background
-        executorService.execute(() -> {
-            try {
-                runOnUiThread(() -> tvProcessingStatus.setText("Extracting customer names..."));
-                
-                // Extract customer names
-                extractedCustomers = PDFProcessor.extractCustomerNames(selectedFile);
+        long startNanos = System.nanoTime();
+        scheduler.submit(ProcessingScheduler.Priority.INTERACTIVE, () -> {
+            try (CustomerHistoryStore history = fileManager.openCustomerHistory()) {
+                // Reuse the output of an identical earlier run if it is still there. Repeat-customer
+                // wording depends on the history, so its size is part of the key, as is the template.
+                LeafletTemplate template = fileManager.getLeafletTemplate();
+                OutputMemoStore memoStore = fileManager.getOutputMemoStore();
+                String inputHash = FileHashes.computeFileHash(selectedFile);
+                // A reviewed list is used as edited; edits make it a different input
+                CustomerReview review = CustomerReview.getInstance();
+                List<CustomerData> reviewed = review.getCustomers(inputHash);
+                String memoOptions = outputOptions("").describe() + ";history=" + history.getOrderCount()
+                        + ";template=" + template.fingerprint();
+                if (reviewed != null && review.isEdited()) {
+                    memoOptions += ";reviewed=" + reviewed.hashCode();
+                }
+                String memoKey = OutputMemoStore.key(inputHash, "leaflets", memoOptions);
+                File memoized = memoStore.lookup(memoKey);
+                if (memoized != null) {
+                    outputFile = memoized;
+                    extractedCustomers = null;
+                    runOnUiThread(() -> {
+                        showProcessingState(false);
+                        showResults();
+                        btnProcess.setEnabled(true);
+                        btnReview.setEnabled(true);
+                    });
+                    return;
+                }
+
+                // Extract customer names, unless they were extracted for review
+                RunSummary.Builder orders;
+                PageCache pageCache = PageCache.none();
+                if (reviewed != null) {
+                    extractedCustomers = reviewed;
+                    orders = reviewedOrders;
+                } else {
+                    runOnUiThread(() -> tvProcessingStatus.setText("Extracting customer names..."));
+                    orders = new RunSummary.Builder();
+                    pageCache = fileManager.getPageCache();
+                    extractedCustomers = extractCustomers(orders, pageCache);
+                }
                 
                 if (extractedCustomers.isEmpty()) {
                     runOnUiThread(() -> {
                         showProcessingState(false);
                         btnProcess.setEnabled(true);
+                        btnReview.setEnabled(true);
                         Toast.makeText(LeafletGeneratorActivity.this, 
                                      R.string.error_no_customers, Toast.LENGTH_LONG).show();
                     });
@@ -157,22 +358,29 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
 
                 // Generate output filename
                 String outputFileName = fileManager.generateOutputFilename(
-                        selectedFile.getName(), "leaflets");
+                        selectedFile.getName(), "leaflets", memoKey);
                 outputFile = new File(fileManager.getOutputDirectory(), outputFileName);
 
                 // Generate leaflet PDF
-                LeafletGenerator.generateLeafletPDF(extractedCustomers, outputFile);
+                OutputOptions options = outputOptions(memoKey);
+                LeafletGenerator.generateLeafletPDF(extractedCustomers, outputFile, options, history, template);
+                memoStore.record(memoKey, outputFile);
+                recordAnalytics(inputHash, orders, history);
+                history.recordRun(extractedCustomers);
+                recordRunStats(startNanos, options.getBudget(), pageCache);
 
                 runOnUiThread(() -> {
                     showProcessingState(false);
                     showResults();
                     btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
                 });
 
             } catch (Exception e) {
                 runOnUiThread(() -> {
                     showProcessingState(false);
                     btnProcess.setEnabled(true);
+                    btnReview.setEnabled(true);
                     Toast.makeText(LeafletGeneratorActivity.this, 
                                  getString(R.string.error_processing, e.getMessage()), 
                                  Toast.LENGTH_LONG).show();
@@ -182,6 +390,13 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Deterministic output options with the compression profile chosen on the main screen
+     */
+    private OutputOptions outputOptions(String seed) {
+        return OutputOptions.deterministic(seed).withProfile(fileManager.getOutputProfile());
+    }
+
     private void showProcessingState(boolean isProcessing) {
         cardProcessing.setVisibility(isProcessing ? View.VISIBLE : View.GONE);
         layoutResults.setVisibility(View.GONE);
@@ -189,7 +404,9 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
 
     private void showResults() {
         layoutResults.setVisibility(View.VISIBLE);
-        String customerCountText = "Found " + extractedCustomers.size() + " customers";
+        String customerCountText = extractedCustomers != null
+                ? "Found " + extractedCustomers.size() + " customers"
+                : "Reused the leaflets of an earlier identical run";
         tvCustomerCount.setText(customerCountText);
         
         Toast.makeText(this, R.string.processing_complete, Toast.LENGTH_SHORT).show();
@@ -261,13 +478,16 @@ public class LeafletGeneratorActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
+
+        // The reviewed list belongs to this screen's file
+        if (isFinishing()) {
+            CustomerReview.getInstance().clear();
         }
-        
-        // Clean up temporary files
+
+        // Clean up temporary files off the UI thread
         if (fileManager != null) {
-            fileManager.cleanupTempFiles();
+            FileManager manager = fileManager;
+            scheduler.submit(ProcessingScheduler.Priority.BACKGROUND, manager::cleanupTempFiles);
         }
     }
 }
\ No newline at end of file
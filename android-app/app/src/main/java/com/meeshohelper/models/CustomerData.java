@@ -1,5 +1,7 @@
 package com.meeshohelper.models;
 
+import java.util.Objects;
+
 public class CustomerData {
     private String name;
     private String address;
@@ -46,22 +48,25 @@ public class CustomerData {
     @Override
     public String toString() {
         return "CustomerData{" +
-                "name='" + name + '\'' +
-                ", address='" + address + '\'' +
-                ", orderInfo='" + orderInfo + '\'' +
+                "name='" + getName() + '\'' +
+                ", address='" + getAddress() + '\'' +
+                ", orderInfo='" + getOrderInfo() + '\'' +
                 '}';
     }
 
+    // Getters are used so views such as CustomerTable rows compare by content.
+    // Name and address together identify a customer; fuzzy matching is left to CustomerDeduplicator.
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
+        if (!(obj instanceof CustomerData)) return false;
         CustomerData that = (CustomerData) obj;
-        return name != null ? name.equals(that.name) : that.name == null;
+        return Objects.equals(getName(), that.getName())
+                && Objects.equals(getAddress(), that.getAddress());
     }
 
     @Override
     public int hashCode() {
-        return name != null ? name.hashCode() : 0;
+        return Objects.hash(getName(), getAddress());
     }
-}
\ No newline at end of file
+}
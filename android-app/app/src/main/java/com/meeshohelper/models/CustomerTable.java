@@ -0,0 +1,206 @@
+package com.meeshohelper.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compact columnar list of customers for very large customer lists.
+ * Names, addresses and order info live in UTF-8 byte arenas addressed by
+ * offset arrays, and city, state and pincode are dictionary encoded.
+ * {@link #get(int)} returns a lightweight {@link CustomerData} view, so
+ * existing generators keep working unchanged.
+ */
+public class CustomerTable extends AbstractList<CustomerData> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Pattern PINCODE_PATTERN = Pattern.compile("\\b(\\d{6})\\b");
+
+    private final TextColumn names = new TextColumn();
+    private final TextColumn addresses = new TextColumn();
+    private final TextColumn orderInfos = new TextColumn();
+    private final DictionaryColumn cities = new DictionaryColumn();
+    private final DictionaryColumn states = new DictionaryColumn();
+    private final DictionaryColumn pincodes = new DictionaryColumn();
+
+    private int size;
+
+    /**
+     * Append a customer; the pincode is taken from the address when present
+     */
+    public int add(String name, String address, String orderInfo) {
+        return add(name, address, orderInfo, null, null, findPincode(address));
+    }
+
+    /**
+     * Append a customer with explicit city, state and pincode
+     */
+    public int add(String name, String address, String orderInfo, String city, String state, String pincode) {
+        int row = size;
+        names.set(row, name);
+        addresses.set(row, address);
+        orderInfos.set(row, orderInfo);
+        cities.set(row, city);
+        states.set(row, state);
+        pincodes.set(row, pincode);
+        size++;
+        modCount++;
+        return row;
+    }
+
+    @Override
+    public boolean add(CustomerData customer) {
+        add(customer.getName(), customer.getAddress(), customer.getOrderInfo());
+        return true;
+    }
+
+    @Override
+    public CustomerData get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Row(this, index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public String getCity(int row) {
+        return cities.get(row);
+    }
+
+    public String getState(int row) {
+        return states.get(row);
+    }
+
+    public String getPincode(int row) {
+        return pincodes.get(row);
+    }
+
+    private static String findPincode(String address) {
+        if (address == null) {
+            return null;
+        }
+        Matcher matcher = PINCODE_PATTERN.matcher(address);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Strings stored back to back as UTF-8 in one growing byte array
+     */
+    private static class TextColumn {
+        private byte[] arena = new byte[INITIAL_CAPACITY * 16];
+        private int arenaSize;
+        private int[] offsets = new int[INITIAL_CAPACITY];
+        private int[] lengths = new int[INITIAL_CAPACITY];
+
+        void set(int row, String value) {
+            if (row >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            if (value == null) {
+                offsets[row] = -1;
+                lengths[row] = 0;
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (arenaSize + bytes.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+            }
+            System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+            offsets[row] = arenaSize;
+            lengths[row] = bytes.length;
+            arenaSize += bytes.length;
+        }
+
+        String get(int row) {
+            return offsets[row] < 0 ? null : new String(arena, offsets[row], lengths[row], StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Low-cardinality strings stored once and referenced by code
+     */
+    private static class DictionaryColumn {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] rows = new int[INITIAL_CAPACITY];
+
+        void set(int row, String value) {
+            if (row >= rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            if (value == null || value.isEmpty()) {
+                rows[row] = -1;
+                return;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            rows[row] = code;
+        }
+
+        String get(int row) {
+            return rows[row] < 0 ? null : values.get(rows[row]);
+        }
+    }
+
+    /**
+     * CustomerData view of one row; reads and writes go to the table's columns
+     */
+    private static class Row extends CustomerData {
+        private final CustomerTable table;
+        private final int row;
+
+        Row(CustomerTable table, int row) {
+            super(null, null, null);
+            this.table = table;
+            this.row = row;
+        }
+
+        @Override
+        public String getName() {
+            return table.names.get(row);
+        }
+
+        @Override
+        public String getAddress() {
+            String address = table.addresses.get(row);
+            return address != null ? address : "";
+        }
+
+        @Override
+        public String getOrderInfo() {
+            String orderInfo = table.orderInfos.get(row);
+            return orderInfo != null ? orderInfo : "";
+        }
+
+        @Override
+        public void setName(String name) {
+            table.names.set(row, name);
+        }
+
+        @Override
+        public void setAddress(String address) {
+            table.addresses.set(row, address);
+            table.pincodes.set(row, findPincode(address));
+        }
+
+        @Override
+        public void setOrderInfo(String orderInfo) {
+            table.orderInfos.set(row, orderInfo);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.meeshohelper.models;
+
+import java.util.Locale;
+
+/**
+ * Statistics of one processing run, used to calibrate time estimates
+ */
+public class RunStats {
+    private final String operation;
+    private final int pages;
+    private final long elapsedMillis;
+    private final long outputBytes;
+    // Worker count, window and buffer sizes the resource governor chose, e.g. "workers=4;window=200;..."
+    private final String resources;
+    // Input pages read from the page cache, and those analyzed because it did not have them
+    private final int pageCacheHits;
+    private final int pageCacheMisses;
+
+    public RunStats(String operation, int pages, long elapsedMillis, long outputBytes) {
+        this(operation, pages, elapsedMillis, outputBytes, "");
+    }
+
+    public RunStats(String operation, int pages, long elapsedMillis, long outputBytes, String resources) {
+        this(operation, pages, elapsedMillis, outputBytes, resources, 0, 0);
+    }
+
+    public RunStats(String operation, int pages, long elapsedMillis, long outputBytes, String resources,
+                    int pageCacheHits, int pageCacheMisses) {
+        this.operation = operation;
+        this.pages = pages;
+        this.elapsedMillis = elapsedMillis;
+        this.outputBytes = outputBytes;
+        this.resources = resources;
+        this.pageCacheHits = pageCacheHits;
+        this.pageCacheMisses = pageCacheMisses;
+    }
+
+    // Getters
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public String getResources() {
+        return resources;
+    }
+
+    public int getPageCacheHits() {
+        return pageCacheHits;
+    }
+
+    public int getPageCacheMisses() {
+        return pageCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "RunStats{operation=%s, pages=%d, elapsedMs=%d, outputBytes=%d, resources=%s, "
+                        + "pageCacheHits=%d, pageCacheMisses=%d}",
+                operation, pages, elapsedMillis, outputBytes, resources, pageCacheHits, pageCacheMisses);
+    }
+}
@@ -0,0 +1,183 @@
+package com.meeshohelper.models;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact summary of the orders in one processing run, as kept in the analytics log
+ */
+public class RunSummary {
+    private static final String VERSION = "1";
+
+    // Day of the run, yyyy-MM-dd
+    private final String day;
+    // Hash of the input file, so processing the same labels again is counted once
+    private final String inputHash;
+    private final int orders;
+    private final int customers;
+    private final int repeatCustomers;
+    // 64-bit hashes of the customer keys, for distinct-customer counts
+    private final long[] customerHashes;
+    private final Map<String, Integer> pincodes;
+    private final Map<String, Integer> skus;
+
+    public RunSummary(String day, String inputHash, int orders, int customers, int repeatCustomers,
+                      long[] customerHashes, Map<String, Integer> pincodes, Map<String, Integer> skus) {
+        this.day = day;
+        this.inputHash = inputHash;
+        this.orders = orders;
+        this.customers = customers;
+        this.repeatCustomers = repeatCustomers;
+        this.customerHashes = customerHashes;
+        this.pincodes = pincodes;
+        this.skus = skus;
+    }
+
+    // Getters
+    public String getDay() {
+        return day;
+    }
+
+    public String getInputHash() {
+        return inputHash;
+    }
+
+    public int getOrders() {
+        return orders;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public int getRepeatCustomers() {
+        return repeatCustomers;
+    }
+
+    public long[] getCustomerHashes() {
+        return customerHashes;
+    }
+
+    public Map<String, Integer> getPincodes() {
+        return pincodes;
+    }
+
+    public Map<String, Integer> getSkus() {
+        return skus;
+    }
+
+    /**
+     * One tab-separated log line
+     */
+    public String toLine() {
+        StringBuilder hashes = new StringBuilder();
+        for (long hash : customerHashes) {
+            hashes.append(hashes.length() > 0 ? "," : "").append(Long.toHexString(hash));
+        }
+        return VERSION + "\t" + day + "\t" + inputHash + "\t" + orders + "\t" + customers + "\t"
+                + repeatCustomers + "\t" + hashes + "\t" + encodeCounts(pincodes) + "\t" + encodeCounts(skus);
+    }
+
+    /**
+     * Parse a log line written by {@link #toLine}
+     *
+     * @throws IllegalArgumentException if the line is not a summary
+     */
+    public static RunSummary parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 9 || !VERSION.equals(fields[0])) {
+            throw new IllegalArgumentException("Not a run summary");
+        }
+        String[] hashFields = fields[6].isEmpty() ? new String[0] : fields[6].split(",");
+        long[] hashes = new long[hashFields.length];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = Long.parseUnsignedLong(hashFields[i], 16);
+        }
+        return new RunSummary(fields[1], fields[2], Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                Integer.parseInt(fields[5]), hashes, decodeCounts(fields[7]), decodeCounts(fields[8]));
+    }
+
+    private static String encodeCounts(Map<String, Integer> counts) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            encoded.append(encoded.length() > 0 ? "," : "")
+                    .append(encode(entry.getKey())).append(':').append(entry.getValue());
+        }
+        return encoded.toString();
+    }
+
+    private static Map<String, Integer> decodeCounts(String encoded) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (!encoded.isEmpty()) {
+            for (String item : encoded.split(",")) {
+                int colon = item.lastIndexOf(':');
+                counts.put(decode(item.substring(0, colon)), Integer.parseInt(item.substring(colon + 1)));
+            }
+        }
+        return counts;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Collects a run's orders, pincodes and SKUs page by page during the text pass
+     */
+    public static class Builder {
+        private final Set<String> orderIds = new HashSet<>();
+        private final Map<String, Integer> pincodes = new HashMap<>();
+        private final Map<String, Integer> skus = new HashMap<>();
+        private int ordersWithoutId;
+
+        /**
+         * Add one label page; any argument may be null or empty when the label does not show it
+         */
+        public void addPage(String orderId, String pincode, Iterable<String> pageSkus) {
+            // The same order id on several pages is one order
+            if (orderId == null || orderId.isEmpty()) {
+                ordersWithoutId++;
+            } else if (!orderIds.add(orderId)) {
+                return;
+            }
+            if (pincode != null && !pincode.isEmpty()) {
+                pincodes.merge(pincode, 1, Integer::sum);
+            }
+            if (pageSkus != null) {
+                for (String sku : pageSkus) {
+                    skus.merge(sku, 1, Integer::sum);
+                }
+            }
+        }
+
+        public int getOrders() {
+            return orderIds.size() + ordersWithoutId;
+        }
+
+        public Map<String, Integer> getPincodes() {
+            return new HashMap<>(pincodes);
+        }
+
+        public Map<String, Integer> getSkus() {
+            return new HashMap<>(skus);
+        }
+    }
+}
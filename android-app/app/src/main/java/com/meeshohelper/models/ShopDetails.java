@@ -0,0 +1,90 @@
+package com.meeshohelper.models;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Objects;
+
+/**
+ * Seller details printed on leaflets
+ */
+public class ShopDetails {
+    public static final String DEFAULT_NAME = "Your Seller";
+    public static final String DEFAULT_WHATSAPP = "+91 7860861434";
+
+    private final String name;
+    private final String whatsappNumber;
+    // Review page for an order with {order} in place of the order id; empty to review over WhatsApp
+    private final String reviewLink;
+
+    public ShopDetails(String name, String whatsappNumber) {
+        this(name, whatsappNumber, "");
+    }
+
+    public ShopDetails(String name, String whatsappNumber, String reviewLink) {
+        this.name = name;
+        this.whatsappNumber = whatsappNumber;
+        this.reviewLink = reviewLink;
+    }
+
+    public static ShopDetails defaults() {
+        return new ShopDetails(DEFAULT_NAME, DEFAULT_WHATSAPP);
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getWhatsappNumber() {
+        return whatsappNumber;
+    }
+
+    public String getReviewLink() {
+        return reviewLink;
+    }
+
+    /**
+     * Link that opens a WhatsApp chat with the shop, or null without a usable number
+     */
+    public String getWhatsappChatLink() {
+        String digits = whatsappNumber != null ? whatsappNumber.replaceAll("\\D", "") : "";
+        return digits.length() >= 8 ? "https://wa.me/" + digits : null;
+    }
+
+    /**
+     * Link where the customer reviews an order: the review link if set, otherwise a WhatsApp
+     * chat with the review request already typed. Null if neither is possible.
+     */
+    public String getOrderReviewLink(String orderId) {
+        if (orderId == null || orderId.isEmpty()) {
+            return null;
+        }
+        if (reviewLink != null && !reviewLink.isEmpty()) {
+            return reviewLink.replace("{order}", encode(orderId));
+        }
+        String chat = getWhatsappChatLink();
+        return chat != null ? chat + "?text=" + encode("Review for order " + orderId + ": ") : null;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ShopDetails)) return false;
+        ShopDetails that = (ShopDetails) obj;
+        return Objects.equals(name, that.name) && Objects.equals(whatsappNumber, that.whatsappNumber)
+                && Objects.equals(reviewLink, that.reviewLink);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, whatsappNumber, reviewLink);
+    }
+}
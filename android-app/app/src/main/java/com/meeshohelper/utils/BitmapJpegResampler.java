@@ -0,0 +1,29 @@
+package com.meeshohelper.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Resamples JPEGs with Android's bitmap decoder, which reduces by powers of two
+ * while decoding
+ */
+public class BitmapJpegResampler implements JpegResampler {
+
+    @Override
+    public Result resample(byte[] jpeg, int sampleSize, int quality) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length / sampleSize);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        Result result = new Result(out.toByteArray(), bitmap.getWidth(), bitmap.getHeight());
+        bitmap.recycle();
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.CustomerTable;
+import com.meeshohelper.models.RunSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The 4-up sheet, leaflets and hybrid bills of one label PDF from a single read.
+ * Each input page is parsed once and its text extracted at most once, not at all
+ * when the page cache already knows it; the page's label is copied into the 4-up
+ * and hybrid documents side by side, and customers are
+ * collected during the same walk for the leaflets written at the end.
+ * <p>
+ * The 4-up sheet and leaflets match the separate operations. Hybrid sheets pair
+ * each sheet's leaflets with the customers on that sheet's labels, since the
+ * deduplicated customer list is only known after the walk.
+ */
+public class CombinedJob {
+
+    private final File inputFile;
+    private File fourUpFile;
+    private OutputOptions fourUpOptions;
+    private File leafletFile;
+    private OutputOptions leafletOptions;
+    private CustomerHistoryStore history;
+    private File hybridFile;
+    private OutputOptions hybridOptions;
+    private LeafletTemplate template = LeafletTemplate.defaults();
+    private RunSummary.Builder orders;
+    private PageCache pageCache = PageCache.none();
+
+    public CombinedJob(File inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    /**
+     * Write the 4-up sheet of cropped bills, with its imposition manifest
+     */
+    public CombinedJob fourUp(File outputFile, OutputOptions options) {
+        this.fourUpFile = outputFile;
+        this.fourUpOptions = options;
+        return this;
+    }
+
+    /**
+     * Write the leaflets, thanking repeat customers in the history (which may be null)
+     */
+    public CombinedJob leaflets(File outputFile, OutputOptions options, CustomerHistoryStore history) {
+        this.leafletFile = outputFile;
+        this.leafletOptions = options;
+        this.history = history;
+        return this;
+    }
+
+    /**
+     * Write hybrid sheets of bills with their customers' leaflets, thanking repeat customers
+     * in the history (which may be null)
+     */
+    public CombinedJob hybrid(File outputFile, OutputOptions options, CustomerHistoryStore history) {
+        this.hybridFile = outputFile;
+        this.hybridOptions = options;
+        this.history = history;
+        return this;
+    }
+
+    /**
+     * Leaflet template for the leaflets and hybrid sheets
+     */
+    public CombinedJob template(LeafletTemplate template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Collect each page's order, pincode and SKUs for analytics during the walk
+     */
+    public CombinedJob orders(RunSummary.Builder orders) {
+        this.orders = orders;
+        return this;
+    }
+
+    /**
+     * Read pages seen in earlier runs from the page cache instead of extracting their text
+     */
+    public CombinedJob pageCache(PageCache pageCache) {
+        this.pageCache = pageCache;
+        return this;
+    }
+
+    /**
+     * Run the job; outputs that were not requested are skipped
+     *
+     * @return the customers found, deduplicated as for the leaflets
+     */
+    public List<CustomerData> run() throws IOException {
+        CustomerTable customers = new CustomerTable();
+        ImpositionManifest manifest = new ImpositionManifest();
+
+        try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
+             PdfDocument inputDoc = new PdfDocument(reader);
+             PdfWriter fourUpWriter = fourUpFile != null ? fourUpOptions.createWriter(fourUpFile.getAbsolutePath()) : null;
+             PdfDocument fourUpDoc = fourUpWriter != null ? fourUpOptions.createDocument(fourUpWriter) : null;
+             PdfWriter hybridWriter = hybridFile != null ? hybridOptions.createWriter(hybridFile.getAbsolutePath()) : null;
+             PdfDocument hybridDoc = hybridWriter != null ? hybridOptions.createDocument(hybridWriter) : null) {
+
+            ResourceGovernor.Budget fourUpBudget = fourUpDoc != null ? fourUpOptions.getBudget() : null;
+            ResourceGovernor.Budget hybridBudget = hybridDoc != null ? hybridOptions.getBudget() : null;
+            LeafletTemplate.Renderer hybridLeaflets = hybridDoc != null ? template.newRenderer() : null;
+            List<CustomerData> sheetCustomers = new ArrayList<>();
+            int inputPages = inputDoc.getNumberOfPages();
+            PdfCanvas fourUpCanvas = null;
+            PageCache.Pages pages = pageCache.open(inputDoc);
+            LabelFormat format = pages.getFormat();
+
+            for (int i = 1; i <= inputPages; i++) {
+                ProcessingScheduler.yieldPoint();
+                PdfPage inputPage = inputDoc.getPage(i);
+                PageCache.Entry page = pages.analyze(i);
+                int row = page.addCustomers(customers);
+                if (orders != null) {
+                    page.addOrder(orders);
+                }
+                if (row >= 0) {
+                    sheetCustomers.add(customers.get(row));
+                }
+
+                if (fourUpDoc != null) {
+                    fourUpBudget.checkHeap();
+                    Rectangle cropArea = page.getCropArea();
+                    PdfFormXObject form = PDFProcessor.createCroppedBill(inputPage, cropArea, fourUpDoc);
+                    int slot = (i - 1) % 4;
+                    if (slot == 0) {
+                        fourUpCanvas = new PdfCanvas(fourUpDoc.addNewPage(PageSize.A4));
+                    }
+                    PDFProcessor.placeOnFourUpSlot(fourUpCanvas, form, cropArea, slot);
+                    manifest.add(page.orderId);
+                    if (slot == 3) {
+                        PDFProcessor.sheetCompleted(fourUpDoc, fourUpBudget, !fourUpOptions.optimizesOnClose());
+                    }
+                }
+
+                // A hybrid sheet is laid out once its last page has been read
+                if (i % 4 == 0 || i == inputPages) {
+                    if (hybridDoc != null) {
+                        hybridBudget.checkHeap();
+                        PDFProcessor.addHybridSheet(inputDoc, hybridDoc, format, (i - 1) / 4 * 4 + 1,
+                                sheetCustomers, hybridLeaflets, history);
+                        PDFProcessor.sheetCompleted(hybridDoc, hybridBudget, !hybridOptions.optimizesOnClose());
+                    }
+                    sheetCustomers.clear();
+                }
+            }
+        }
+        if (fourUpFile != null) {
+            manifest.save(fourUpFile);
+        }
+
+        List<CustomerData> deduplicated = new CustomerDeduplicator().deduplicate(customers);
+        if (leafletFile != null && !deduplicated.isEmpty()) {
+            LeafletGenerator.generateLeafletPDF(deduplicated, leafletFile, leafletOptions, history, template);
+        }
+        return deduplicated;
+    }
+}
@@ -0,0 +1,271 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.CustomerTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fuzzy customer dedup. Customers are keyed on a normalized name plus pincode
+ * and address. Candidates are grouped into blocks by pincode and a phonetic code
+ * of the first name, and only customers in the same block are compared, so the
+ * work stays near-linear instead of all-pairs.
+ */
+public class CustomerDeduplicator {
+
+    private static final Pattern PINCODE_PATTERN = Pattern.compile("\\b(\\d{6})\\b");
+
+    // Words that are not part of a name: honorifics and address fragments left by the label layout
+    private static final Set<String> NOISE_WORDS = new HashSet<>(Arrays.asList(
+            "mr", "mrs", "ms", "miss", "dr", "shri", "sri", "smt", "kumari",
+            "near", "opp", "opposite", "behind", "beside", "house", "flat", "road", "street"));
+
+    private final double nameThreshold;
+    private final double addressThreshold;
+
+    /**
+     * Default thresholds: names must be at least 0.92 Jaro-Winkler similar, and when
+     * both customers have an address, at least 0.3 of its words must overlap
+     */
+    public CustomerDeduplicator() {
+        this(0.92, 0.3);
+    }
+
+    public CustomerDeduplicator(double nameThreshold, double addressThreshold) {
+        this.nameThreshold = nameThreshold;
+        this.addressThreshold = addressThreshold;
+    }
+
+    /**
+     * Remove duplicate customers, keeping the first occurrence of each. City, state
+     * and pincode columns are carried over when the input is a {@link CustomerTable}.
+     */
+    public List<CustomerData> deduplicate(List<CustomerData> customers) {
+        CustomerTable table = customers instanceof CustomerTable ? (CustomerTable) customers : null;
+        CustomerTable unique = new CustomerTable();
+        Map<String, List<Candidate>> blocks = new HashMap<>();
+
+        for (int i = 0; i < customers.size(); i++) {
+            CustomerData customer = customers.get(i);
+            String normalizedName = normalizeName(customer.getName());
+            if (normalizedName.isEmpty()) {
+                continue;
+            }
+
+            String pincode = table != null ? table.getPincode(i) : findPincode(customer.getAddress());
+            String blockKey = (pincode != null ? pincode : "") + "|" + phoneticCode(firstToken(normalizedName));
+            List<Candidate> block = blocks.get(blockKey);
+            if (block == null) {
+                block = new ArrayList<>();
+                blocks.put(blockKey, block);
+            }
+
+            Candidate candidate = new Candidate(normalizedName, customer.getAddress());
+            if (matchesAny(candidate, block)) {
+                continue;
+            }
+            block.add(candidate);
+            if (table != null) {
+                unique.add(customer.getName(), customer.getAddress(), customer.getOrderInfo(),
+                        table.getCity(i), table.getState(i), pincode);
+            } else {
+                unique.add(customer.getName(), customer.getAddress(), customer.getOrderInfo());
+            }
+        }
+        return unique;
+    }
+
+    private boolean matchesAny(Candidate candidate, List<Candidate> block) {
+        for (Candidate existing : block) {
+            if (isSameCustomer(candidate, existing)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSameCustomer(Candidate a, Candidate b) {
+        if (!a.name.equals(b.name) && jaroWinkler(a.name, b.name) < nameThreshold) {
+            return false;
+        }
+        // Without an address on both sides the name and pincode decide
+        Set<String> aWords = a.addressWords();
+        Set<String> bWords = b.addressWords();
+        if (aWords.isEmpty() || bWords.isEmpty()) {
+            return true;
+        }
+        return jaccard(aWords, bWords) >= addressThreshold;
+    }
+
+    /**
+     * Lowercase letters only, single spaces, honorifics and address words removed
+     */
+    public static String normalizeName(String name) {
+        StringBuilder normalized = new StringBuilder();
+        for (String word : words(name, false)) {
+            if (!NOISE_WORDS.contains(word)) {
+                normalized.append(normalized.length() > 0 ? " " : "").append(word);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Lowercase words of a string; a hand-rolled scan, as regex splitting dominated the run time
+     */
+    private static List<String> words(String text, boolean keepDigits) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && (Character.isLetter(text.charAt(i))
+                    || (keepDigits && Character.isDigit(text.charAt(i))));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Soundex-style code tuned for romanized Indian names: vowels, h, w and y are
+     * dropped and similar consonants share a digit ("Rahul"/"Raahul" -> "R4")
+     */
+    static String phoneticCode(String word) {
+        if (word.isEmpty()) {
+            return "";
+        }
+        StringBuilder code = new StringBuilder().append(Character.toUpperCase(word.charAt(0)));
+        char last = soundexDigit(word.charAt(0));
+        for (int i = 1; i < word.length() && code.length() < 4; i++) {
+            char digit = soundexDigit(word.charAt(i));
+            if (digit != '0' && digit != last) {
+                code.append(digit);
+            }
+            last = digit;
+        }
+        return code.toString();
+    }
+
+    private static char soundexDigit(char c) {
+        switch (c) {
+            case 'b': case 'f': case 'p': case 'v': return '1';
+            case 'c': case 'g': case 'j': case 'k': case 'q': case 's': case 'x': case 'z': return '2';
+            case 'd': case 't': return '3';
+            case 'l': return '4';
+            case 'm': case 'n': return '5';
+            case 'r': return '6';
+            default: return '0';
+        }
+    }
+
+    static double jaroWinkler(String a, String b) {
+        int matchWindow = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+        boolean[] aMatched = new boolean[a.length()];
+        boolean[] bMatched = new boolean[b.length()];
+        int matches = 0;
+
+        for (int i = 0; i < a.length(); i++) {
+            int from = Math.max(0, i - matchWindow);
+            int to = Math.min(b.length() - 1, i + matchWindow);
+            for (int j = from; j <= to; j++) {
+                if (!bMatched[j] && a.charAt(i) == b.charAt(j)) {
+                    aMatched[i] = true;
+                    bMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < a.length(); i++) {
+            if (aMatched[i]) {
+                while (!bMatched[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+
+        double m = matches;
+        double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(a.length(), b.length())) && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        int common = 0;
+        for (String word : a) {
+            if (b.contains(word)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    private static Set<String> addressWords(String address) {
+        Set<String> words = new HashSet<>();
+        for (String word : words(address, true)) {
+            if (word.length() > 1) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    static String findPincode(String address) {
+        if (address == null) {
+            return null;
+        }
+        Matcher matcher = PINCODE_PATTERN.matcher(address);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String firstToken(String normalizedName) {
+        int space = normalizedName.indexOf(' ');
+        return space < 0 ? normalizedName : normalizedName.substring(0, space);
+    }
+
+    private static class Candidate {
+        final String name;
+        final String address;
+        // Most customers land in an empty block, so address words are built on first comparison
+        private Set<String> addressWords;
+
+        Candidate(String name, String address) {
+            this.name = name;
+            this.address = address;
+        }
+
+        Set<String> addressWords() {
+            if (addressWords == null) {
+                addressWords = CustomerDeduplicator.addressWords(address);
+            }
+            return addressWords;
+        }
+    }
+}
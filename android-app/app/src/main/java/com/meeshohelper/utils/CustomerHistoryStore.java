@@ -0,0 +1,113 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * History of every customer and order seen across runs. Only the customers of the
+ * current run are looked up, each once, by normalized name and pincode, so repeat
+ * checks cost the same however long the history grows and never touch old PDFs.
+ */
+public abstract class CustomerHistoryStore implements Closeable {
+
+    // Customer key (normalized name + pincode) -> order id it was first seen with
+    private final Map<String, String> firstOrders = new HashMap<>();
+    // Customer keys looked up and not found in storage
+    private final Set<String> unseen = new HashSet<>();
+    private int orderCount;
+
+    /**
+     * Whether this customer was seen before with a different order. Processing
+     * the same labels again does not turn customers into repeat customers, and a
+     * customer without an order id cannot be told apart from such a rerun, so is
+     * not counted as one either.
+     */
+    public boolean isRepeatCustomer(CustomerData customer) {
+        String firstOrder = firstOrder(nameKey(customer), pincode(customer));
+        if (firstOrder == null) {
+            return false;
+        }
+        String orderId = customer.getOrderInfo();
+        return orderId != null && !orderId.isEmpty() && !orderId.equals(firstOrder);
+    }
+
+    private synchronized String firstOrder(String nameKey, String pincode) {
+        String key = customerKey(nameKey, pincode);
+        String firstOrder = firstOrders.get(key);
+        if (firstOrder == null && !unseen.contains(key)) {
+            firstOrder = findFirstOrder(nameKey, pincode);
+            if (firstOrder != null) {
+                firstOrders.put(key, firstOrder);
+            } else {
+                unseen.add(key);
+            }
+        }
+        return firstOrder;
+    }
+
+    /**
+     * Record the customers and orders of one run in a single batch
+     */
+    public void recordRun(List<CustomerData> customers) throws IOException {
+        insertBatch(customers);
+        for (CustomerData customer : customers) {
+            remember(customerKey(customer), customer.getOrderInfo());
+        }
+    }
+
+    /**
+     * Number of orders recorded so far
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Write customers to storage in one transaction; orders already stored are ignored
+     */
+    protected abstract void insertBatch(List<CustomerData> customers) throws IOException;
+
+    /**
+     * Order id a customer was first stored with, "" if that order had none, or null if
+     * the customer is not in storage
+     */
+    protected abstract String findFirstOrder(String nameKey, String pincode);
+
+    /**
+     * Add a recorded order to the in-memory key index
+     */
+    protected synchronized void remember(String customerKey, String orderId) {
+        unseen.remove(customerKey);
+        if (!firstOrders.containsKey(customerKey)) {
+            firstOrders.put(customerKey, orderId != null ? orderId : "");
+        }
+    }
+
+    protected void setOrderCount(int orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public static String nameKey(CustomerData customer) {
+        return CustomerDeduplicator.normalizeName(customer.getName());
+    }
+
+    public static String pincode(CustomerData customer) {
+        String pincode = CustomerDeduplicator.findPincode(customer.getAddress());
+        return pincode != null ? pincode : "";
+    }
+
+    static String customerKey(CustomerData customer) {
+        return customerKey(nameKey(customer), pincode(customer));
+    }
+
+    static String customerKey(String nameKey, String pincode) {
+        return nameKey + "|" + pincode;
+    }
+}
@@ -0,0 +1,160 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Customers extracted from one input, held while the seller reviews and corrects them so
+ * generation can use the edited list without extracting again. Lists of tens of thousands
+ * of customers are too large for an Intent, so the review screens share this instance.
+ */
+public class CustomerReview {
+
+    private static final CustomerReview instance = new CustomerReview();
+
+    // Input the rows were extracted from; null when no review is open
+    private String inputKey;
+    private List<Row> rows = new ArrayList<>();
+    private long nextId;
+    private boolean edited;
+
+    // Last search, narrowed further when the query grows
+    private String lastQuery;
+    private List<Row> lastMatches;
+
+    private CustomerReview() {
+    }
+
+    public static CustomerReview getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start reviewing the customers extracted from an input, replacing any earlier review
+     */
+    public synchronized void start(String inputKey, List<CustomerData> customers) {
+        List<Row> started = new ArrayList<>(customers.size());
+        for (CustomerData customer : customers) {
+            started.add(new Row(nextId++, customer));
+        }
+        this.inputKey = inputKey;
+        this.rows = started;
+        this.edited = false;
+        clearSearch();
+    }
+
+    public synchronized boolean isOpen() {
+        return inputKey != null;
+    }
+
+    /**
+     * The reviewed customers of an input, or null if that input has not been reviewed
+     */
+    public synchronized List<CustomerData> getCustomers(String inputKey) {
+        if (this.inputKey == null || !this.inputKey.equals(inputKey)) {
+            return null;
+        }
+        List<CustomerData> customers = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            customers.add(row.customer);
+        }
+        return customers;
+    }
+
+    /**
+     * Whether any customer was edited or deleted since the review started
+     */
+    public synchronized boolean isEdited() {
+        return edited;
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    /**
+     * Replace a customer's name and address. The row gets a new customer object, so lists
+     * handed out earlier still show the old values and can be diffed against new ones.
+     */
+    public synchronized void update(long id, String name, String address) {
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            if (row.id == id) {
+                rows.set(i, new Row(id, new CustomerData(name, address, row.customer.getOrderInfo())));
+                edited = true;
+                clearSearch();
+                return;
+            }
+        }
+    }
+
+    public synchronized void delete(long id) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).id == id) {
+                rows.remove(i);
+                edited = true;
+                clearSearch();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rows whose name or address contains the query, ignoring case; all rows for an empty
+     * query. A query extending the previous one only scans the previous matches.
+     */
+    public synchronized List<Row> search(String query) {
+        String needle = query.trim().toLowerCase(Locale.ROOT);
+        List<Row> source = lastMatches != null && needle.startsWith(lastQuery) ? lastMatches : rows;
+        List<Row> matches;
+        if (needle.isEmpty()) {
+            matches = new ArrayList<>(rows);
+        } else {
+            matches = new ArrayList<>();
+            for (Row row : source) {
+                if (row.searchText.contains(needle)) {
+                    matches.add(row);
+                }
+            }
+        }
+        lastQuery = needle;
+        lastMatches = matches;
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * End the review and release its rows
+     */
+    public synchronized void clear() {
+        inputKey = null;
+        rows = new ArrayList<>();
+        edited = false;
+        clearSearch();
+    }
+
+    private void clearSearch() {
+        lastQuery = null;
+        lastMatches = null;
+    }
+
+    /**
+     * One reviewed customer. Rows are immutable; an edit replaces the row under the same id.
+     */
+    public static class Row {
+        public final long id;
+        public final CustomerData customer;
+        // Lower-cased name and address, so searches don't lower-case every row again
+        final String searchText;
+
+        Row(long id, CustomerData customer) {
+            this.id = id;
+            this.customer = customer;
+            String address = customer.getAddress() != null ? customer.getAddress() : "";
+            this.searchText = (customer.getName() + "\n" + address).toLowerCase(Locale.ROOT);
+        }
+    }
+}
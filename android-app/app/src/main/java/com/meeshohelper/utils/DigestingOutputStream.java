@@ -0,0 +1,56 @@
+package com.meeshohelper.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Buffered output stream that computes the SHA-256 and size of everything
+ * written, so a destination such as a user-picked document never has to be
+ * read back to learn them
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+
+    // Large writes keep SAF and USB OTG destinations from doing many small transfers
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final MessageDigest digest;
+    private long byteCount;
+
+    public DigestingOutputStream(OutputStream out) throws IOException {
+        super(new BufferedOutputStream(out, BUFFER_SIZE));
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        digest.update((byte) b);
+        byteCount++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        digest.update(b, off, len);
+        byteCount += len;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Hex SHA-256 of the bytes written; call once, after the last write
+     */
+    public String getHash() {
+        return FileHashes.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,79 @@
+package com.meeshohelper.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content hashes of input and output files, shared by the app and the engine. Kept
+ * apart from {@link FileManager} so the engine does not depend on Android.
+ */
+public class FileHashes {
+
+    // Hashes of files already read or written in this process, by path, length and modification time
+    private static final Map<String, String> HASH_CACHE = new HashMap<>();
+
+    private FileHashes() {
+    }
+
+    /**
+     * Compute the SHA-256 hash of a file's content as a hex string
+     */
+    public static String computeFileHash(File file) throws IOException {
+        String cacheKey = hashCacheKey(file);
+        synchronized (HASH_CACHE) {
+            String cached = HASH_CACHE.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] buffer = new byte[65536];
+            int bytesRead;
+            while ((bytesRead = fis.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+        String hash = toHex(digest.digest());
+        rememberFileHash(file, hash);
+        return hash;
+    }
+
+    /**
+     * Remember a hash computed while the file was written, so it is not read again
+     */
+    public static void rememberFileHash(File file, String hash) {
+        synchronized (HASH_CACHE) {
+            HASH_CACHE.put(hashCacheKey(file), hash);
+        }
+    }
+
+    // A rewritten file gets a new length or modification time, so stale entries are never hit
+    private static String hashCacheKey(File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Convert bytes to a lowercase hex string
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+               .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package com.meeshohelper.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Copies a picked document into app storage off the main thread. The content
+ * hash is computed from the same read, progress is reported as whole percents,
+ * and the copy is staged so a cancelled ingestion never leaves a partial file
+ * in place of the previous one.
+ */
+public class FileIngestor {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Receives copy progress; totalBytes is -1 when the provider does not report a size
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesCopied, long totalBytes);
+    }
+
+    /**
+     * An ingested file with its size and SHA-256
+     */
+    public static class Result {
+        private final File file;
+        private final long size;
+        private final String hash;
+
+        Result(File file, long size, String hash) {
+            this.file = file;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    private final Context context;
+
+    public FileIngestor(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Copy a document to the destination file. Call from a background thread;
+     * a cancelled scheduler task stops the copy.
+     */
+    public Result ingest(Uri source, File destination, ProgressListener listener) throws IOException {
+        long totalBytes = querySize(source);
+        File stagingFile = new File(destination.getParentFile(), destination.getName() + ".part");
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+
+        long bytesCopied = 0;
+        try (InputStream input = context.getContentResolver().openInputStream(source);
+             OutputStream output = new FileOutputStream(stagingFile)) {
+            if (input == null) {
+                throw new IOException("Cannot open input stream from URI");
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int lastPercent = -1;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                ProcessingScheduler.yieldPoint();
+                output.write(buffer, 0, bytesRead);
+                digest.update(buffer, 0, bytesRead);
+                bytesCopied += bytesRead;
+
+                int percent = totalBytes > 0 ? (int) (bytesCopied * 100 / totalBytes) : -1;
+                if (listener != null && (percent != lastPercent || totalBytes <= 0)) {
+                    listener.onProgress(bytesCopied, totalBytes);
+                    lastPercent = percent;
+                }
+            }
+        } catch (IOException e) {
+            stagingFile.delete();
+            throw e;
+        }
+
+        if (!stagingFile.renameTo(destination)) {
+            stagingFile.delete();
+            throw new IOException("Cannot write " + destination.getName());
+        }
+
+        String hash = FileHashes.toHex(digest.digest());
+        FileHashes.rememberFileHash(destination, hash);
+        return new Result(destination, bytesCopied, hash);
+    }
+
+    /**
+     * Status line for an ingestion in progress, e.g. "Loading bill.pdf... 42%"
+     */
+    public static String formatProgress(String fileName, long bytesCopied, long totalBytes) {
+        if (totalBytes > 0) {
+            return "Loading " + fileName + "... " + (bytesCopied * 100 / totalBytes) + "%";
+        }
+        return "Loading " + fileName + "... " + FileManager.getReadableFileSize(bytesCopied);
+    }
+
+    private long querySize(Uri source) {
+        try (Cursor cursor = context.getContentResolver().query(source,
+                new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (RuntimeException e) {
+            // Some providers reject projections; progress then shows bytes only
+        }
+        return -1;
+    }
+}
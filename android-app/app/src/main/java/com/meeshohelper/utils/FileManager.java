@@ -1,8 +1,13 @@
 package com.meeshohelper.utils;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
+import android.provider.OpenableColumns;
+
+import com.meeshohelper.models.ShopDetails;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -18,6 +23,21 @@ public class FileManager {
     private static final String APP_FOLDER = "MeeshoHelper";
     private static final String TEMP_FOLDER = "temp";
     private static final String OUTPUT_FOLDER = "output";
+    private static final String JOBS_FOLDER = "jobs";
+    private static final String MEMO_FOLDER = "memo";
+    private static final String ANALYTICS_FOLDER = "analytics";
+    private static final String PAGE_CACHE_FOLDER = "pages";
+    private static final String PREFERENCES_NAME = "settings";
+    private static final String PREF_OUTPUT_PROFILE = "output_profile";
+    private static final String PREF_SHOP_NAME = "shop_name";
+    private static final String PREF_SHOP_WHATSAPP = "shop_whatsapp";
+    private static final String PREF_SHOP_REVIEW_LINK = "shop_review_link";
+    private static final String PREF_LEAFLET_TEMPLATE = "leaflet_template";
+
+    // Shared by every FileManager, so concurrent runs append to one copy of the aggregates
+    private static OrderAnalytics orderAnalytics;
+    // Pages shared by every run, so concurrent saves write one set of entries
+    private static PageCache pageCache;
 
     private Context context;
 
@@ -47,6 +67,14 @@ public class FileManager {
         return tempDir;
     }
 
+    /**
+     * Get the file an operation's first-sheet preview is written to; previews are
+     * temporary and replaced by the next run
+     */
+    public File getPreviewFile(String operationType) {
+        return new File(getTempDirectory(), "preview_" + operationType + ".pdf");
+    }
+
     /**
      * Get the output files directory
      */
@@ -58,6 +86,17 @@ public class FileManager {
         return outputDir;
     }
 
+    /**
+     * Get the checkpoint directory of a resumable job
+     */
+    public File getJobDirectory(String jobName) {
+        File jobDir = new File(new File(getAppDirectory(), JOBS_FOLDER), jobName);
+        if (!jobDir.exists()) {
+            jobDir.mkdirs();
+        }
+        return jobDir;
+    }
+
     /**
      * Copy a file from URI to internal storage
      */
@@ -82,6 +121,51 @@ public class FileManager {
         return destFile;
     }
 
+    /**
+     * File extension matching the type of a picked document (".pdf", ".csv" or ".xlsx").
+     * Providers report CSV under several types, including Android's own
+     * "text/comma-separated-values" and Excel's "application/vnd.ms-excel"; when the type
+     * says nothing, the extension of the document's display name decides.
+     */
+    public String getExtensionForUri(Uri uri) {
+        String mimeType = context.getContentResolver().getType(uri);
+        if (mimeType != null) {
+            if (mimeType.contains("csv") || mimeType.contains("comma-separated-values")
+                    || mimeType.equals("text/plain") || mimeType.equals("application/vnd.ms-excel")) {
+                return ".csv";
+            }
+            if (mimeType.contains("spreadsheetml")) {
+                return ".xlsx";
+            }
+            if (mimeType.equals("application/pdf")) {
+                return ".pdf";
+            }
+        }
+
+        String displayName = queryDisplayName(uri);
+        if (displayName != null) {
+            String name = displayName.toLowerCase(Locale.ROOT);
+            for (String extension : new String[]{".csv", ".xlsx", ".pdf"}) {
+                if (name.endsWith(extension)) {
+                    return extension;
+                }
+            }
+        }
+        return ".pdf";
+    }
+
+    private String queryDisplayName(Uri uri) {
+        try (Cursor cursor = context.getContentResolver().query(uri,
+                new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getString(0);
+            }
+        } catch (RuntimeException e) {
+            // Some providers reject projections; the document is then treated as a PDF
+        }
+        return null;
+    }
+
     /**
      * Generate a unique filename with timestamp
      */
@@ -100,6 +184,171 @@ public class FileManager {
         return operationType + "_" + baseName + "_" + timestamp + ".pdf";
     }
 
+    /**
+     * Find the most recent output of an operation that has an imposition manifest
+     */
+    public File findLatestOutput(String operationType) {
+        File[] files = getOutputDirectory().listFiles();
+        File latest = null;
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().startsWith(operationType + "_")
+                        && file.getName().endsWith(".pdf")
+                        && ImpositionManifest.manifestFileFor(file).exists()
+                        && (latest == null || file.lastModified() > latest.lastModified())) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Generate a stable output filename for deterministic runs, derived from the memo key
+     */
+    public String generateOutputFilename(String inputFilename, String operationType, String memoKey) {
+        String baseName = inputFilename.replaceFirst("[.][^.]+$", ""); // Remove extension
+        return operationType + "_" + baseName + "_" + memoKey.substring(0, 12) + ".pdf";
+    }
+
+    /**
+     * Name for an output with bills added to an earlier one. It keeps the earlier name's
+     * operation prefix, so it is found as that operation's latest output.
+     */
+    public String generateAppendedFilename(File earlierOutput) {
+        String baseName = earlierOutput.getName().replaceFirst("[.][^.]+$", "").replaceFirst("_added_\\d+$", "");
+        return baseName + "_added_" + System.currentTimeMillis() + ".pdf";
+    }
+
+    /**
+     * Get the store of memoized outputs
+     */
+    public OutputMemoStore getOutputMemoStore() {
+        File memoDir = new File(getAppDirectory(), MEMO_FOLDER);
+        if (!memoDir.exists()) {
+            memoDir.mkdirs();
+        }
+        return new OutputMemoStore(memoDir);
+    }
+
+    /**
+     * Get the cache of analyzed label pages for a new run. The pages are loaded once and
+     * shared by every run, each counting its own hits and misses.
+     */
+    public PageCache getPageCache() {
+        synchronized (FileManager.class) {
+            if (pageCache == null) {
+                File cacheDir = new File(getAppDirectory(), PAGE_CACHE_FOLDER);
+                if (!cacheDir.exists()) {
+                    cacheDir.mkdirs();
+                }
+                pageCache = new PageCache(cacheDir, PageCache.DEFAULT_MAX_BYTES);
+            }
+            return pageCache.newRun();
+        }
+    }
+
+    /**
+     * Open the customer history database; callers close it when the run is done
+     */
+    public CustomerHistoryStore openCustomerHistory() {
+        return new SqliteCustomerHistoryStore(context);
+    }
+
+    /**
+     * Get the order analytics, opened on first use and then shared by every screen, so
+     * runs recorded at the same time all reach the log and the saved aggregates
+     */
+    public OrderAnalytics getOrderAnalytics() throws IOException {
+        synchronized (FileManager.class) {
+            if (orderAnalytics == null) {
+                File analyticsDir = new File(getAppDirectory(), ANALYTICS_FOLDER);
+                if (!analyticsDir.exists()) {
+                    analyticsDir.mkdirs();
+                }
+                orderAnalytics = new OrderAnalytics(analyticsDir);
+            }
+            return orderAnalytics;
+        }
+    }
+
+    /**
+     * Get this device's throughput model used for time estimates
+     */
+    public ThroughputModel getThroughputModel() {
+        return new ThroughputModel(getAppDirectory());
+    }
+
+    /**
+     * Get the compression profile chosen for generated PDFs
+     */
+    public OutputOptions.Profile getOutputProfile() {
+        String name = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_OUTPUT_PROFILE, OutputOptions.Profile.STANDARD.name());
+        try {
+            return OutputOptions.Profile.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return OutputOptions.Profile.STANDARD;
+        }
+    }
+
+    /**
+     * Remember the compression profile for generated PDFs
+     */
+    public void setOutputProfile(OutputOptions.Profile profile) {
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(PREF_OUTPUT_PROFILE, profile.name())
+                .apply();
+    }
+
+    /**
+     * Get the seller details printed on leaflets
+     */
+    public ShopDetails getShopDetails() {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        return new ShopDetails(preferences.getString(PREF_SHOP_NAME, ShopDetails.DEFAULT_NAME),
+                preferences.getString(PREF_SHOP_WHATSAPP, ShopDetails.DEFAULT_WHATSAPP),
+                preferences.getString(PREF_SHOP_REVIEW_LINK, ""));
+    }
+
+    /**
+     * Get the leaflet template text chosen by the seller
+     */
+    public String getLeafletTemplateSource() {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_LEAFLET_TEMPLATE, LeafletTemplate.DEFAULT_SOURCE);
+    }
+
+    /**
+     * Get the compiled leaflet template for the seller's text and shop details. A template
+     * saved by an older version that no longer compiles falls back to the built-in one.
+     */
+    public LeafletTemplate getLeafletTemplate() {
+        ShopDetails shop = getShopDetails();
+        try {
+            return LeafletTemplate.compile(getLeafletTemplateSource(), shop);
+        } catch (IllegalArgumentException e) {
+            return LeafletTemplate.compile(LeafletTemplate.DEFAULT_SOURCE, shop);
+        }
+    }
+
+    /**
+     * Remember the leaflet template and shop details
+     *
+     * @throws IllegalArgumentException if the template does not compile; nothing is saved then
+     */
+    public void setLeafletTemplate(String source, ShopDetails shop) {
+        LeafletTemplate.compile(source, shop);
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(PREF_LEAFLET_TEMPLATE, source)
+                .putString(PREF_SHOP_NAME, shop.getName())
+                .putString(PREF_SHOP_WHATSAPP, shop.getWhatsappNumber())
+                .putString(PREF_SHOP_REVIEW_LINK, shop.getReviewLink())
+                .apply();
+    }
+
     /**
      * Clean up temporary files
      */
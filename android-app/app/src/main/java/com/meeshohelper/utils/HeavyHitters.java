@@ -0,0 +1,103 @@
+package com.meeshohelper.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent items of a stream in fixed memory. Counts are kept in a count-min
+ * sketch, which never undercounts, and the items with the highest estimates are kept
+ * as candidates; updates and queries take time independent of the stream length.
+ */
+public class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+
+    private final int capacity;
+    private final int[][] counts = new int[DEPTH][WIDTH];
+    // Candidate items with their latest estimates; never more than capacity entries
+    private final Map<String, Integer> candidates = new HashMap<>();
+
+    /**
+     * @param capacity number of candidates kept; queries can return up to this many items
+     */
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Count an item occurring the given number of times
+     */
+    public void add(String item, int occurrences) {
+        long hash = HyperLogLog.hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = Math.floorMod(h1 + row * h2, WIDTH);
+            counts[row][column] += occurrences;
+            estimate = Math.min(estimate, counts[row][column]);
+        }
+
+        if (candidates.containsKey(item) || candidates.size() < capacity) {
+            candidates.put(item, estimate);
+            return;
+        }
+        // Replace the weakest candidate if this item now outranks it
+        String weakest = null;
+        int weakestCount = Integer.MAX_VALUE;
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()) {
+            if (candidate.getValue() < weakestCount) {
+                weakest = candidate.getKey();
+                weakestCount = candidate.getValue();
+            }
+        }
+        if (estimate > weakestCount) {
+            candidates.remove(weakest);
+            candidates.put(item, estimate);
+        }
+    }
+
+    /**
+     * Up to limit items with their estimated counts, most frequent first
+     */
+    public List<Map.Entry<String, Integer>> top(int limit) {
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(candidates.entrySet());
+        top.sort((a, b) -> {
+            int byCount = Integer.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+        });
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        for (int[] row : counts) {
+            for (int count : row) {
+                out.writeInt(count);
+            }
+        }
+        out.writeInt(candidates.size());
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()) {
+            out.writeUTF(candidate.getKey());
+            out.writeInt(candidate.getValue());
+        }
+    }
+
+    void read(DataInputStream in) throws IOException {
+        for (int[] row : counts) {
+            for (int i = 0; i < WIDTH; i++) {
+                row[i] = in.readInt();
+            }
+        }
+        candidates.clear();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            candidates.put(in.readUTF(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.meeshohelper.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Approximate count of distinct items in 4 KB, about 1.6% standard error. Adding an
+ * item and reading the count take constant time however many items were added.
+ */
+public class HyperLogLog {
+
+    // 2^12 registers
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Add an item by its 64-bit hash, see {@link #hash}
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        // Position of the first 1 bit in the remaining bits, counting from 1
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Estimated number of distinct items added
+     */
+    public long count() {
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        // Small counts are estimated from the empty registers instead
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.write(registers);
+    }
+
+    void read(DataInputStream in) throws IOException {
+        in.readFully(registers);
+    }
+
+    /**
+     * Well-mixed 64-bit hash of a string (FNV-1a followed by a finalizer)
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,113 @@
+package com.meeshohelper.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tracks which order labels have already been imposed into an output PDF.
+ * Stored next to the output as "<output>.manifest", one order id per bill slot.
+ */
+public class ImpositionManifest {
+
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String UNKNOWN_ORDER = "-";
+
+    private final List<String> slots = new ArrayList<>();
+    private final Set<String> orderIds = new HashSet<>();
+    private boolean exists;
+
+    /**
+     * Get the manifest file that belongs to an output PDF
+     */
+    public static File manifestFileFor(File outputFile) {
+        return new File(outputFile.getParentFile(), outputFile.getName() + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Load the manifest of an output PDF, or an empty one if none was written yet
+     */
+    public static ImpositionManifest load(File outputFile) throws IOException {
+        ImpositionManifest manifest = new ImpositionManifest();
+        File manifestFile = manifestFileFor(outputFile);
+        if (!manifestFile.exists()) {
+            return manifest;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    manifest.add(UNKNOWN_ORDER.equals(line) ? null : line);
+                }
+            }
+        }
+        manifest.exists = true;
+        return manifest;
+    }
+
+    /**
+     * Whether this manifest was read from disk
+     */
+    public boolean exists() {
+        return exists;
+    }
+
+    /**
+     * Whether the given order id is already imposed
+     */
+    public boolean contains(String orderId) {
+        return orderId != null && orderIds.contains(orderId);
+    }
+
+    /**
+     * Record the next filled bill slot; orderId may be null when the label has none
+     */
+    public void add(String orderId) {
+        slots.add(orderId != null ? orderId : UNKNOWN_ORDER);
+        if (orderId != null) {
+            orderIds.add(orderId);
+        }
+    }
+
+    /**
+     * Number of bill slots filled so far
+     */
+    public int getBillCount() {
+        return slots.size();
+    }
+
+    /**
+     * Write the manifest next to the output PDF, replacing the previous one atomically
+     */
+    public void save(File outputFile) throws IOException {
+        File manifestFile = manifestFileFor(outputFile);
+        File tempFile = new File(manifestFile.getParentFile(), manifestFile.getName() + ".tmp");
+
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (String slot : slots) {
+                writer.write(slot);
+                writer.newLine();
+            }
+        }
+
+        if (!tempFile.renameTo(manifestFile)) {
+            tempFile.delete();
+            throw new IOException("Cannot write manifest " + manifestFile.getName());
+        }
+        exists = true;
+    }
+}
@@ -0,0 +1,40 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Customer history kept in memory only, for runs that must not persist anything
+ * and for exercising the history logic on a plain JVM
+ */
+public class InMemoryCustomerHistoryStore extends CustomerHistoryStore {
+
+    private final Set<String> orderIds = new HashSet<>();
+    private int ordersWithoutId;
+
+    @Override
+    protected void insertBatch(List<CustomerData> customers) {
+        for (CustomerData customer : customers) {
+            String orderId = customer.getOrderInfo();
+            if (orderId == null || orderId.isEmpty()) {
+                ordersWithoutId++;
+            } else {
+                orderIds.add(orderId);
+            }
+        }
+        setOrderCount(orderIds.size() + ordersWithoutId);
+    }
+
+    @Override
+    protected String findFirstOrder(String nameKey, String pincode) {
+        // Everything recorded is already in the key index
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.meeshohelper.utils;
+
+/**
+ * Image codec that decodes a JPEG at a reduced size and encodes it again. The app
+ * uses the platform's bitmap decoder; the server brings its own.
+ */
+public interface JpegResampler {
+
+    /**
+     * Decode a JPEG at 1/sampleSize of its width and height and re-encode it at the
+     * given quality; null when the codec cannot decode it
+     */
+    Result resample(byte[] jpeg, int sampleSize, int quality);
+
+    /**
+     * A re-encoded JPEG with its pixel size
+     */
+    class Result {
+        private final byte[] jpeg;
+        private final int width;
+        private final int height;
+
+        public Result(byte[] jpeg, int width, int height) {
+            this.jpeg = jpeg;
+            this.width = width;
+            this.height = height;
+        }
+
+        public byte[] getJpeg() {
+            return jpeg;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+}
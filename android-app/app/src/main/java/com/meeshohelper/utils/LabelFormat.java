@@ -0,0 +1,373 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+
+import com.meeshohelper.models.CustomerTable;
+import com.meeshohelper.models.RunSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How to read one marketplace's shipping labels: the anchor text that identifies the
+ * format, where the customer name is, which order ids it prints and where the bill sits
+ * on the page. A document's format is detected once from its first page and then used
+ * for every page, so the cost per page does not grow with the number of formats.
+ */
+public class LabelFormat {
+
+    private static final Pattern PINCODE_PATTERN = Pattern.compile("\\b\\d{6}\\b");
+    // Prefix some labels print before the name on the line below the address heading
+    private static final Pattern NAME_PREFIX = Pattern.compile("(?i)^name\\s*:\\s*");
+
+    // Address lines read below the customer name on a label
+    private static final int ADDRESS_MAX_LINES = 4;
+
+    // Product table header and the row words that end the table
+    private static final Pattern SKU_HEADING = Pattern.compile("(?i)\\bSKU\\b");
+    private static final Pattern TABLE_END = Pattern.compile("(?i)^(?:order|total|invoice|tax)\\b");
+    private static final int SKU_MAX_ROWS = 10;
+
+    // Courier partners by the names and spellings labels print, checked in this order
+    private static final String[][] COURIERS = {
+            {"Delhivery", "DELHIVERY"},
+            {"Xpress Bees", "XPRESSBEES", "XPRESS BEES", "XPRESSBEE"},
+            {"Valmo", "VALMO"},
+            {"Ecom Express", "ECOM EXPRESS", "ECOMEXPRESS"},
+            {"Shadowfax", "SHADOWFAX"},
+            {"Ekart", "EKART", "E-KART"},
+            {"Blue Dart", "BLUEDART", "BLUE DART"},
+            {"DTDC", "DTDC"},
+            {"Amazon Shipping", "AMAZON SHIPPING", "AMAZON TRANSPORTATION"},
+    };
+
+    public static final LabelFormat MEESHO = new LabelFormat("Meesho",
+            Arrays.asList("BILL TO / SHIP TO", "MEESHO"),
+            // The name is always on the line below the heading
+            Pattern.compile("(?i)(?:BILL TO|SHIP TO).*"),
+            Arrays.asList(
+                    Pattern.compile("(?i)order\\s*(?:no|number|id)\\.?\\s*[:\\-]?\\s*(\\d{6,}(?:_\\d+)?)\\b"),
+                    // Sub-order ids such as 123456789012345678_1, printed in the label's product table
+                    Pattern.compile("\\b(\\d{9,}_\\d+)\\b")),
+            new Rectangle(0.05f, 0.3f, 0.9f, 0.4f));
+
+    // Shopsy labels also name Flipkart, so Shopsy is tried first
+    public static final LabelFormat SHOPSY = new LabelFormat("Shopsy",
+            Arrays.asList("SHOPSY"),
+            Pattern.compile("(?i)shipping\\s*/\\s*customer\\s+address\\s*:?"),
+            Arrays.asList(Pattern.compile("\\b(OD\\d{15,})\\b")),
+            new Rectangle(0.3f, 0.55f, 0.4f, 0.42f));
+
+    public static final LabelFormat FLIPKART = new LabelFormat("Flipkart",
+            Arrays.asList("FLIPKART", "E-KART", "EKART"),
+            Pattern.compile("(?i)shipping\\s*/\\s*customer\\s+address\\s*:?"),
+            Arrays.asList(Pattern.compile("\\b(OD\\d{15,})\\b")),
+            new Rectangle(0.3f, 0.55f, 0.4f, 0.42f));
+
+    public static final LabelFormat AMAZON_EASY_SHIP = new LabelFormat("Amazon Easy Ship",
+            Arrays.asList("EASY SHIP", "AMAZON"),
+            Pattern.compile("(?i)(?:ship|deliver)\\s+to\\s*:?"),
+            Arrays.asList(Pattern.compile("\\b(\\d{3}-\\d{7}-\\d{7})\\b")),
+            new Rectangle(0.02f, 0.5f, 0.48f, 0.48f));
+
+    // Tried in order; formats registered later are tried before the built-in ones
+    private static final List<LabelFormat> REGISTRY = new CopyOnWriteArrayList<>(
+            Arrays.asList(MEESHO, SHOPSY, FLIPKART, AMAZON_EASY_SHIP));
+
+    private final String name;
+    private final List<String> anchors;
+    private final Pattern nameHeading;
+    private final List<Pattern> orderIdPatterns;
+    private final Rectangle cropFractions;
+
+    /**
+     * @param anchors         text, in upper case, that only this format's labels print
+     * @param nameHeading     heading before the customer name; the name is the rest of the
+     *                        heading's line, or the next line if nothing follows the heading
+     * @param orderIdPatterns order id patterns in order of preference, the id in group 1
+     * @param cropFractions   bill area as fractions of the page width and height, from the bottom left
+     */
+    public LabelFormat(String name, List<String> anchors, Pattern nameHeading,
+                       List<Pattern> orderIdPatterns, Rectangle cropFractions) {
+        this.name = name;
+        this.anchors = new ArrayList<>(anchors);
+        this.nameHeading = nameHeading;
+        this.orderIdPatterns = new ArrayList<>(orderIdPatterns);
+        this.cropFractions = cropFractions;
+    }
+
+    /**
+     * Add a format, tried before those already registered
+     */
+    public static void register(LabelFormat format) {
+        REGISTRY.add(0, format);
+    }
+
+    /**
+     * Format of a document, from the text of its first page
+     */
+    public static LabelFormat detect(PdfDocument document) {
+        if (document.getNumberOfPages() == 0) {
+            return MEESHO;
+        }
+        return detect(PdfTextExtractor.getTextFromPage(document.getFirstPage()));
+    }
+
+    /**
+     * Format whose anchor text appears on a page; Meesho if none does
+     */
+    public static LabelFormat detect(String pageText) {
+        LabelFormat format = recognize(pageText);
+        return format != null ? format : MEESHO;
+    }
+
+    /**
+     * Format whose anchor text appears on a page, or null if no registered format's does
+     */
+    public static LabelFormat recognize(String pageText) {
+        String upper = pageText.toUpperCase(Locale.ROOT);
+        for (LabelFormat format : REGISTRY) {
+            for (String anchor : format.anchors) {
+                if (upper.contains(anchor)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registered format with the given name, or null if none is registered
+     */
+    public static LabelFormat forName(String name) {
+        for (LabelFormat format : REGISTRY) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names of the registered formats in the order they are tried; detection gives
+     * different results when this changes
+     */
+    public static String describeRegistry() {
+        StringBuilder names = new StringBuilder();
+        for (LabelFormat format : REGISTRY) {
+            names.append(format.name).append(',');
+        }
+        return names.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Add the customers named on one label page
+     *
+     * @return row of the first customer added, or -1 if the page names none
+     */
+    public int addPageCustomers(String text, CustomerTable customers) {
+        String[] lines = text.split("\n");
+        int firstRow = -1;
+        String orderId = null;
+
+        for (int j = 0; j < lines.length; j++) {
+            Matcher heading = nameHeading.matcher(lines[j]);
+            if (!heading.find()) {
+                continue;
+            }
+            String rest = lines[j].substring(heading.end()).trim();
+            int addressStart = j + 1;
+            String rawName = rest;
+            if (rest.isEmpty()) {
+                // Look for the name in the next line
+                if (j + 1 >= lines.length) {
+                    continue;
+                }
+                rawName = lines[j + 1].trim();
+                addressStart = j + 2;
+            }
+            String cleanedName = cleanCustomerName(NAME_PREFIX.matcher(rawName).replaceFirst(""));
+            if (cleanedName != null && !cleanedName.isEmpty()) {
+                if (orderId == null) {
+                    orderId = extractOrderId(text);
+                }
+                int row = customers.add(cleanedName, extractAddress(lines, addressStart),
+                        orderId != null ? orderId : "");
+                if (firstRow < 0) {
+                    firstRow = row;
+                }
+            }
+        }
+        return firstRow;
+    }
+
+    /**
+     * The order id printed on a label page, or null if none is found
+     */
+    public String extractOrderId(String pageText) {
+        for (Pattern pattern : orderIdPatterns) {
+            Matcher matcher = pattern.matcher(pageText);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Courier partner named on a label page, or null if none is recognised
+     */
+    public static String extractCourier(String pageText) {
+        String upper = pageText.toUpperCase(Locale.ROOT);
+        for (String[] courier : COURIERS) {
+            for (int i = 1; i < courier.length; i++) {
+                if (upper.contains(courier[i])) {
+                    return courier[0];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pincode of the delivery address on a label page, or null if none is found. Only the
+     * lines after the address heading are read, so the return address is not picked up.
+     */
+    public String extractPincode(String pageText) {
+        String[] lines = pageText.split("\n");
+        for (int j = 0; j < lines.length; j++) {
+            if (!nameHeading.matcher(lines[j]).find()) {
+                continue;
+            }
+            // The name may share the heading line; the address lines follow it
+            for (int k = j; k < lines.length && k <= j + ADDRESS_MAX_LINES + 1; k++) {
+                Matcher pincode = PINCODE_PATTERN.matcher(lines[k]);
+                if (pincode.find()) {
+                    return pincode.group();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a label page's order, delivery pincode and SKUs to a run summary
+     */
+    public void addPageOrder(String pageText, RunSummary.Builder orders) {
+        orders.addPage(extractOrderId(pageText), extractPincode(pageText), extractSkus(pageText));
+    }
+
+    /**
+     * SKUs listed in the product table of a label page, read from the column headed "SKU"
+     */
+    public List<String> extractSkus(String pageText) {
+        List<String> skus = new ArrayList<>();
+        String[] lines = pageText.split("\n");
+        for (int j = 0; j < lines.length; j++) {
+            if (!SKU_HEADING.matcher(lines[j]).find()) {
+                continue;
+            }
+            // Tables are either "|" separated or aligned with spaces
+            String separator = lines[j].contains("|") ? "\\s*\\|\\s*" : "\\s+";
+            String[] headings = lines[j].trim().split(separator);
+            int column = 0;
+            while (column < headings.length && !SKU_HEADING.matcher(headings[column]).find()) {
+                column++;
+            }
+            for (int k = j + 1; k < lines.length && k <= j + SKU_MAX_ROWS; k++) {
+                String row = lines[k].trim();
+                if (row.isEmpty() || TABLE_END.matcher(row).find()) {
+                    break;
+                }
+                String[] cells = row.split(separator);
+                if (column < cells.length && !cells[column].isEmpty()) {
+                    skus.add(cells[column]);
+                }
+            }
+            break;
+        }
+        return skus;
+    }
+
+    /**
+     * Area of the page holding the bill
+     */
+    public Rectangle cropArea(PdfPage page) {
+        Rectangle pageRect = page.getPageSize();
+        float pageWidth = pageRect.getWidth();
+        float pageHeight = pageRect.getHeight();
+        return new Rectangle(pageWidth * cropFractions.getX(), pageHeight * cropFractions.getY(),
+                pageWidth * cropFractions.getWidth(), pageHeight * cropFractions.getHeight());
+    }
+
+    /**
+     * Join the address lines below the name, up to and including the pincode line
+     */
+    private static String extractAddress(String[] lines, int start) {
+        StringBuilder address = new StringBuilder();
+        for (int k = start; k < lines.length && k < start + ADDRESS_MAX_LINES; k++) {
+            String line = lines[k].trim();
+            if (line.isEmpty() || line.toUpperCase().contains("ORDER")) {
+                break;
+            }
+            address.append(address.length() > 0 ? ", " : "").append(line);
+            if (PINCODE_PATTERN.matcher(line).find()) {
+                break;
+            }
+        }
+        return address.toString();
+    }
+
+    /**
+     * Clean customer name by removing address parts and unwanted text
+     */
+    private static String cleanCustomerName(String rawName) {
+        if (rawName == null || rawName.trim().isEmpty()) {
+            return null;
+        }
+
+        // Remove common address keywords and patterns
+        String cleaned = rawName
+                .replaceAll("(?i)\\b(house|h\\.no|h\\.no\\.|flat|apartment|apt|road|rd|street|st|lane|ln|area|sector|block|plot|pin|pincode|pin code|zip|postal|post|near|opp|opposite|behind|beside|next to|above|below)\\b.*", "")
+                .replaceAll("(?i)\\b(city|district|state|country|india|pin|pincode|\\d{6})\\b.*", "")
+                .replaceAll("\\d{6,}", "") // Remove pincode-like numbers
+                .replaceAll("[,;].*", "") // Remove everything after comma or semicolon
+                .replaceAll("\\s+", " ") // Replace multiple spaces with single space
+                .trim();
+
+        // Remove if it's just numbers or too short
+        if (cleaned.matches("\\d+") || cleaned.length() < 2) {
+            return null;
+        }
+
+        // Capitalize first letter of each word
+        String[] words = cleaned.split("\\s+");
+        StringBuilder result = new StringBuilder();
+        for (String word : words) {
+            if (word.length() > 0) {
+                result.append(Character.toUpperCase(word.charAt(0)))
+                      .append(word.substring(1).toLowerCase())
+                      .append(" ");
+            }
+        }
+
+        return result.toString().trim();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,195 @@
+package com.meeshohelper.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts labels by courier, then pincode, then input page. Keys are kept in memory up
+ * to the budget's page window; beyond that each window is sorted and spilled to a run
+ * file, and the runs are merged when read back, so memory stays bounded however many
+ * labels a batch has.
+ */
+class LabelSorter implements Closeable {
+
+    /**
+     * Sort key of one label, with what is needed to place it without reading the page again
+     */
+    static class Entry implements Comparable<Entry> {
+        // Empty when unknown; unknown couriers and pincodes sort last
+        final String courier;
+        final String pincode;
+        final String orderId;
+        final int page;
+        final float width;
+        final float height;
+
+        Entry(String courier, String pincode, String orderId, int page, float width, float height) {
+            this.courier = courier != null ? courier : "";
+            this.pincode = pincode != null ? pincode : "";
+            this.orderId = orderId != null ? orderId : "";
+            this.page = page;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = compareKnownFirst(courier, other.courier);
+            if (result == 0) {
+                result = compareKnownFirst(pincode, other.pincode);
+            }
+            return result != 0 ? result : Integer.compare(page, other.page);
+        }
+
+        private static int compareKnownFirst(String a, String b) {
+            if (a.isEmpty() || b.isEmpty()) {
+                return Boolean.compare(a.isEmpty(), b.isEmpty());
+            }
+            return a.compareTo(b);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(courier);
+            out.writeUTF(pincode);
+            out.writeUTF(orderId);
+            out.writeInt(page);
+            out.writeFloat(width);
+            out.writeFloat(height);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            return new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(),
+                    in.readFloat(), in.readFloat());
+        }
+    }
+
+    /**
+     * Receives the entries in sorted order
+     */
+    interface Consumer {
+        void accept(Entry entry) throws IOException;
+    }
+
+    private final File spillDir;
+    private final ResourceGovernor.Budget budget;
+    private final List<Entry> buffer = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * @param spillDir directory for run files, created when the first run is spilled
+     */
+    LabelSorter(File spillDir, ResourceGovernor.Budget budget) {
+        this.spillDir = spillDir;
+        this.budget = budget;
+    }
+
+    void add(Entry entry) throws IOException {
+        buffer.add(entry);
+        // The window may shrink during the pass when memory runs low
+        if (buffer.size() >= budget.getWindowPages()) {
+            spill();
+        }
+    }
+
+    /**
+     * Pass every entry to the consumer in sorted order
+     */
+    void forEachSorted(Consumer consumer) throws IOException {
+        if (runs.isEmpty()) {
+            Collections.sort(buffer);
+            for (Entry entry : buffer) {
+                consumer.accept(entry);
+            }
+            return;
+        }
+
+        spill();
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(runs.size(),
+                    (a, b) -> a.head.compareTo(b.head));
+            for (File run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                consumer.accept(reader.head);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a spilled run one entry at a time
+     */
+    private static class RunReader {
+        final DataInputStream in;
+        Entry head;
+
+        RunReader(File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                head = Entry.read(in);
+                return true;
+            } catch (EOFException e) {
+                head = null;
+                return false;
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        if (!spillDir.exists() && !spillDir.mkdirs()) {
+            throw new IOException("Cannot create " + spillDir.getName());
+        }
+        Collections.sort(buffer);
+        File run = new File(spillDir, "run_" + runs.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+            for (Entry entry : buffer) {
+                entry.write(out);
+            }
+        }
+        runs.add(run);
+        buffer.clear();
+    }
+
+    /**
+     * Delete the run files
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        spillDir.delete();
+    }
+}
@@ -1,159 +1,127 @@
 package com.meeshohelper.utils;
 
 import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.layout.Document;
-import com.itextpdf.layout.borders.Border;
-import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.property.TextAlignment;
-import com.itextpdf.layout.property.UnitValue;
 import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.io.font.constants.StandardFonts;
-import com.itextpdf.kernel.colors.ColorConstants;
 
 import com.meeshohelper.models.CustomerData;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public class LeafletGenerator {
 
     private static final int LEAFLETS_PER_PAGE = 8; // 2 columns x 4 rows
+    private static final int COLUMNS = 2;
     private static final float MARGIN = 20f;
-    private static final String WHATSAPP_NUMBER = "+91 7860861434";
+    private static final float CELL_HEIGHT = 100f;
+    private static final float CELL_PADDING = 8f;
+    // Template sizes are for the leaflet grid; the simple layout has a full page width
+    private static final float SIMPLE_SCALE = 1.2f;
 
     /**
      * Generate leaflet PDF with thank you messages for customers
      */
     public static void generateLeafletPDF(List<CustomerData> customers, File outputFile) throws IOException {
-        try (PdfWriter writer = new PdfWriter(outputFile.getAbsolutePath());
-             PdfDocument pdfDoc = new PdfDocument(writer);
-             Document document = new Document(pdfDoc, PageSize.A4)) {
-
-            document.setMargins(MARGIN, MARGIN, MARGIN, MARGIN);
-
-            PdfFont boldFont = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
-            PdfFont regularFont = PdfFontFactory.createFont(StandardFonts.HELVETICA);
-
-            int customersProcessed = 0;
-            int totalCustomers = customers.size();
-
-            while (customersProcessed < totalCustomers) {
-                // Create table for leaflets layout (2 columns)
-                Table table = new Table(2);
-                table.setWidth(UnitValue.createPercentValue(100));
+        generateLeafletPDF(customers, outputFile, OutputOptions.defaults());
+    }
 
-                // Add leaflets to current page
-                for (int i = 0; i < LEAFLETS_PER_PAGE && customersProcessed < totalCustomers; i++) {
-                    CustomerData customer = customers.get(customersProcessed);
-                    Cell leafletCell = createLeafletCell(customer, boldFont, regularFont);
-                    table.addCell(leafletCell);
-                    customersProcessed++;
-                }
+    /**
+     * Generate leaflet PDF with thank you messages for customers, written with the given output options
+     */
+    public static void generateLeafletPDF(List<CustomerData> customers, File outputFile,
+                                          OutputOptions options) throws IOException {
+        generateLeafletPDF(customers, outputFile, options, null, LeafletTemplate.defaults());
+    }
 
-                // Fill remaining cells if needed to maintain layout
-                int cellsToFill = LEAFLETS_PER_PAGE - (customersProcessed % LEAFLETS_PER_PAGE);
-                if (cellsToFill > 0 && cellsToFill < LEAFLETS_PER_PAGE) {
-                    for (int i = 0; i < cellsToFill; i++) {
-                        Cell emptyCell = new Cell()
-                                .setBorder(Border.NO_BORDER)
-                                .setHeight(80); // Same height as leaflet cells
-                        table.addCell(emptyCell);
-                    }
-                }
+    /**
+     * Generate leaflet PDF from a leaflet template, thanking repeat customers in the history
+     * (which may be null) for coming back
+     */
+    public static void generateLeafletPDF(List<CustomerData> customers, File outputFile, OutputOptions options,
+                                          CustomerHistoryStore history, LeafletTemplate template) throws IOException {
+        try (PdfWriter writer = options.createWriter(outputFile.getAbsolutePath())) {
+            writeLeafletPDF(customers, writer, options, history, template);
+        }
+    }
 
-                document.add(table);
+    /**
+     * Generate leaflet PDF straight into a stream, such as a document picked by the user.
+     * The stream is left open for the caller.
+     */
+    public static void generateLeafletPDF(List<CustomerData> customers, OutputStream output, OutputOptions options,
+                                          CustomerHistoryStore history, LeafletTemplate template) throws IOException {
+        try (PdfWriter writer = options.createWriter(output)) {
+            writeLeafletPDF(customers, writer, options, history, template);
+        }
+    }
 
-                // Add new page if there are more customers
-                if (customersProcessed < totalCustomers) {
-                    document.add(new com.itextpdf.layout.element.AreaBreak());
+    private static void writeLeafletPDF(List<CustomerData> customers, PdfWriter writer, OutputOptions options,
+                                        CustomerHistoryStore history, LeafletTemplate template) throws IOException {
+        try (PdfDocument pdfDoc = options.createDocument(writer)) {
+            boolean[] repeat = new boolean[customers.size()];
+            for (int i = 0; i < repeat.length; i++) {
+                repeat[i] = history != null && history.isRepeatCustomer(customers.get(i));
+            }
+            LeafletTemplate.Renderer renderer = template.newRenderer();
+            renderer.prepareCodes(customers, repeat);
+            ResourceGovernor.Budget budget = options.getBudget();
+            PageSize pageSize = PageSize.A4;
+            float cellWidth = (pageSize.getWidth() - 2 * MARGIN) / COLUMNS;
+
+            for (int first = 0; first < customers.size(); first += LEAFLETS_PER_PAGE) {
+                ProcessingScheduler.yieldPoint();
+                budget.checkHeap();
+                PdfCanvas canvas = new PdfCanvas(pdfDoc.addNewPage(pageSize));
+                canvas.setLineWidth(1);
+
+                for (int i = 0; i < LEAFLETS_PER_PAGE && first + i < customers.size(); i++) {
+                    float x = MARGIN + (i % COLUMNS) * cellWidth;
+                    float y = pageSize.getHeight() - MARGIN - (i / COLUMNS + 1) * CELL_HEIGHT;
+
+                    canvas.rectangle(x, y, cellWidth, CELL_HEIGHT).stroke();
+                    renderer.draw(canvas, new Rectangle(x + CELL_PADDING, y + CELL_PADDING,
+                            cellWidth - 2 * CELL_PADDING, CELL_HEIGHT - 2 * CELL_PADDING),
+                            customers.get(first + i), repeat[first + i]);
                 }
+                PDFProcessor.sheetCompleted(pdfDoc, budget, !options.optimizesOnClose());
             }
         }
     }
 
     /**
-     * Create a single leaflet cell with thank you message
+     * Generate a simple leaflet PDF with basic layout
      */
-    private static Cell createLeafletCell(CustomerData customer, PdfFont boldFont, PdfFont regularFont) {
-        Cell cell = new Cell()
-                .setPadding(8)
-                .setBorder(com.itextpdf.layout.borders.SolidBorder.createSolidBorder(ColorConstants.BLACK, 1))
-                .setHeight(100)
-                .setBackgroundColor(ColorConstants.WHITE);
-
-        // Customer name (greeting)
-        Paragraph greeting = new Paragraph("Dear " + customer.getName() + ",")
-                .setFont(boldFont)
-                .setFontSize(10)
-                .setTextAlignment(TextAlignment.LEFT)
-                .setMarginBottom(5);
-
-        // Thank you message
-        Paragraph thankYou = new Paragraph("Thank you for choosing us!")
-                .setFont(boldFont)
-                .setFontSize(9)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(3);
-
-        // Order dispatched message
-        Paragraph orderInfo = new Paragraph("Your order has been dispatched.")
-                .setFont(regularFont)
-                .setFontSize(8)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-
-        // Contact information
-        Paragraph contact = new Paragraph("For any queries, contact us on")
-                .setFont(regularFont)
-                .setFontSize(7)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(2);
-
-        Paragraph whatsapp = new Paragraph("WhatsApp: " + WHATSAPP_NUMBER)
-                .setFont(boldFont)
-                .setFontSize(8)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-
-        // Rating request
-        Paragraph rating = new Paragraph("Please rate us ⭐⭐⭐⭐⭐ on the app!")
-                .setFont(regularFont)
-                .setFontSize(7)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-
-        // Closing
-        Paragraph closing = new Paragraph("With love,\nYour Seller")
-                .setFont(regularFont)
-                .setFontSize(7)
-                .setTextAlignment(TextAlignment.RIGHT)
-                .setMarginBottom(0);
-
-        // Add all paragraphs to cell
-        cell.add(greeting);
-        cell.add(thankYou);
-        cell.add(orderInfo);
-        cell.add(contact);
-        cell.add(whatsapp);
-        cell.add(rating);
-        cell.add(closing);
+    public static void generateSimpleLeafletPDF(List<CustomerData> customers, File outputFile) throws IOException {
+        generateSimpleLeafletPDF(customers, outputFile, OutputOptions.defaults());
+    }
 
-        return cell;
+    /**
+     * Generate a simple leaflet PDF with basic layout, written with the given output options
+     */
+    public static void generateSimpleLeafletPDF(List<CustomerData> customers, File outputFile,
+                                                OutputOptions options) throws IOException {
+        generateSimpleLeafletPDF(customers, outputFile, options, null, LeafletTemplate.defaults());
     }
 
     /**
-     * Generate a simple leaflet PDF with basic layout
+     * Generate a simple leaflet PDF from a leaflet template, thanking repeat customers in the
+     * history (which may be null) for coming back
      */
-    public static void generateSimpleLeafletPDF(List<CustomerData> customers, File outputFile) throws IOException {
-        try (PdfWriter writer = new PdfWriter(outputFile.getAbsolutePath());
-             PdfDocument pdfDoc = new PdfDocument(writer);
+    public static void generateSimpleLeafletPDF(List<CustomerData> customers, File outputFile, OutputOptions options,
+                                                CustomerHistoryStore history, LeafletTemplate template) throws IOException {
+        try (PdfWriter writer = options.createWriter(outputFile.getAbsolutePath());
+             PdfDocument pdfDoc = options.createDocument(writer);
              Document document = new Document(pdfDoc, PageSize.A4)) {
 
             document.setMargins(30, 30, 30, 30);
@@ -171,6 +139,7 @@ public class LeafletGenerator {
 
             // Create leaflets for each customer
             for (int i = 0; i < customers.size(); i++) {
+                ProcessingScheduler.yieldPoint();
                 CustomerData customer = customers.get(i);
 
                 // Add separator line before each leaflet (except the first)
@@ -182,7 +151,8 @@ public class LeafletGenerator {
                 }
 
                 // Customer leaflet content
-                addLeafletContent(document, customer, boldFont, regularFont);
+                boolean repeat = history != null && history.isRepeatCustomer(customer);
+                addLeafletContent(document, template, customer, repeat, boldFont, regularFont);
 
                 // Add some space after each leaflet
                 document.add(new Paragraph("\n"));
@@ -191,66 +161,38 @@ public class LeafletGenerator {
     }
 
     /**
-     * Add leaflet content for a single customer
+     * Add the template's rows for a single customer
      */
-    private static void addLeafletContent(Document document, CustomerData customer, 
-                                        PdfFont boldFont, PdfFont regularFont) {
-        // Greeting
-        Paragraph greeting = new Paragraph("Dear " + customer.getName() + ",")
-                .setFont(boldFont)
-                .setFontSize(12)
-                .setTextAlignment(TextAlignment.LEFT)
-                .setMarginBottom(8);
-        document.add(greeting);
-
-        // Thank you message
-        Paragraph thankYou = new Paragraph("Thank you for choosing us! Your order has been dispatched.")
-                .setFont(regularFont)
-                .setFontSize(10)
-                .setTextAlignment(TextAlignment.LEFT)
-                .setMarginBottom(10);
-        document.add(thankYou);
-
-        // Contact info
-        Paragraph contact = new Paragraph("For any queries, contact us on WhatsApp: " + WHATSAPP_NUMBER)
-                .setFont(regularFont)
-                .setFontSize(10)
-                .setTextAlignment(TextAlignment.LEFT)
-                .setMarginBottom(8);
-        document.add(contact);
-
-        // Rating request
-        Paragraph rating = new Paragraph("Please rate us 5 stars ⭐⭐⭐⭐⭐ on the app!")
-                .setFont(regularFont)
-                .setFontSize(10)
-                .setTextAlignment(TextAlignment.LEFT)
-                .setMarginBottom(10);
-        document.add(rating);
+    private static void addLeafletContent(Document document, LeafletTemplate template, CustomerData customer,
+                                          boolean repeat, PdfFont boldFont, PdfFont regularFont) {
+        for (LeafletTemplate.Row row : template.getRows()) {
+            String text = row.appliesTo(repeat) ? row.fill(customer) : null;
+            if (text == null) {
+                continue;
+            }
+            float fontSize = row.getFontSize() * SIMPLE_SCALE;
+            document.add(new Paragraph(text)
+                    .setFont(row.isBold() ? boldFont : regularFont)
+                    .setFontSize(fontSize)
+                    .setTextAlignment(toTextAlignment(row.getAlign()))
+                    .setMarginTop(0)
+                    .setMarginBottom(fontSize * 0.35f));
+        }
+    }
 
-        // Closing
-        Paragraph closing = new Paragraph("With love,\nYour Seller")
-                .setFont(regularFont)
-                .setFontSize(10)
-                .setTextAlignment(TextAlignment.RIGHT)
-                .setMarginBottom(5);
-        document.add(closing);
+    private static TextAlignment toTextAlignment(LeafletTemplate.Align align) {
+        switch (align) {
+            case CENTER: return TextAlignment.CENTER;
+            case RIGHT: return TextAlignment.RIGHT;
+            default: return TextAlignment.LEFT;
+        }
     }
 
     /**
-     * Create a formatted thank you message string
+     * Create a formatted thank you message string from the built-in template
      */
     public static String createThankYouMessage(String customerName) {
-        return String.format(
-                "Dear %s,\n\n" +
-                "Thank you for choosing us!\n" +
-                "Your order has been dispatched.\n\n" +
-                "For any queries, contact us on\n" +
-                "WhatsApp: %s\n\n" +
-                "Please rate us 5 stars ⭐⭐⭐⭐⭐ on the app!\n\n" +
-                "With love,\n" +
-                "Your Seller",
-                customerName, WHATSAPP_NUMBER
-        );
+        return LeafletTemplate.defaults().fill(new CustomerData(customerName), false);
     }
 
     /**
@@ -0,0 +1,572 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.ShopDetails;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Leaflet text as a seller-editable template, compiled once into a render plan.
+ * Each template line is one row of the leaflet:
+ * <pre>
+ *   [new:|repeat:] &lt;bold|regular&gt; &lt;size&gt; &lt;left|center|right&gt; | text
+ * </pre>
+ * {shop_name} and {whatsapp} are filled from the shop details at compile time, so
+ * they are measured once with the rest of the static text; {name} and {order} are
+ * filled per customer. A row whose placeholders are all empty is left out, and rows
+ * marked new: or repeat: only show for first-time or returning customers.
+ * <p>
+ * The lines {@code qr: shop} and {@code qr: review} add QR codes beside the text: a
+ * WhatsApp chat with the shop, the same on every leaflet and so stored once per
+ * document, and for returning customers a review link for their order.
+ */
+public class LeafletTemplate {
+
+    /**
+     * Horizontal placement of a row within the leaflet
+     */
+    public enum Align { LEFT, CENTER, RIGHT }
+
+    public static final String DEFAULT_SOURCE =
+            "# One row per line: <bold|regular> <size> <left|center|right> | text\n"
+            + "# {name} and {order} are filled per customer, {shop_name} and {whatsapp} from the shop details.\n"
+            + "# Start a row with new: or repeat: to show it only to first-time or returning customers.\n"
+            + "# qr: shop adds a WhatsApp QR code, qr: review a review QR code for returning customers.\n"
+            + "bold 10 left | Dear {name},\n"
+            + "new: bold 9 center | Thank you for choosing us!\n"
+            + "repeat: bold 9 center | Thank you for shopping with us again!\n"
+            + "regular 8 center | Your order has been dispatched.\n"
+            + "regular 7 center | For any queries, contact us on\n"
+            + "bold 8 center | WhatsApp: {whatsapp}\n"
+            + "regular 7 center | Please rate us 5 stars on the app!\n"
+            + "regular 7 right | With love,\n"
+            + "regular 7 right | {shop_name}\n"
+            + "qr: shop\n"
+            + "qr: review\n";
+
+    // Space after each row, as a share of its font size
+    private static final float ROW_GAP = 0.35f;
+
+    // QR codes take at most this share of the leaflet width, with this gap to the text
+    private static final float CODE_COLUMN_SHARE = 0.3f;
+    private static final float CODE_GAP = 4f;
+    private static final byte[] DO_OPERATOR = "Do\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final float MIN_FONT_SIZE = 4f;
+    private static final float MAX_FONT_SIZE = 48f;
+
+    // Compiled plans by source and shop details; a few stay cached so switching back is free
+    private static final int CACHE_SIZE = 4;
+    private static final Map<String, LeafletTemplate> CACHE = new LinkedHashMap<String, LeafletTemplate>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LeafletTemplate> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private enum Audience { ALL, NEW, REPEAT }
+
+    private enum Slot { NAME, ORDER }
+
+    private final List<Row> rows;
+    private final String fingerprint;
+    private final ShopDetails shop;
+    // Encoded once per plan and drawn once per document; null without a shop code
+    private final QrCode shopCode;
+    private final boolean reviewCodes;
+    // Glyph widths of Latin-1 characters in 1/1000 em, measured once per plan
+    private final float[] regularWidths;
+    private final float[] boldWidths;
+
+    private LeafletTemplate(List<Row> rows, String fingerprint, ShopDetails shop, QrCode shopCode,
+                            boolean reviewCodes, float[] regularWidths, float[] boldWidths) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.fingerprint = fingerprint;
+        this.shop = shop;
+        this.shopCode = shopCode;
+        this.reviewCodes = reviewCodes;
+        this.regularWidths = regularWidths;
+        this.boldWidths = boldWidths;
+    }
+
+    /**
+     * The built-in template with the default shop details
+     */
+    public static LeafletTemplate defaults() {
+        return compile(DEFAULT_SOURCE, ShopDetails.defaults());
+    }
+
+    /**
+     * Compile a template for a shop, or return the plan compiled earlier for the same input
+     *
+     * @throws IllegalArgumentException if a line cannot be parsed; the message names the line
+     */
+    public static LeafletTemplate compile(String source, ShopDetails shop) {
+        String fingerprint = fingerprint(source, shop);
+        synchronized (CACHE) {
+            LeafletTemplate cached = CACHE.get(fingerprint);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        boolean shopQr = false;
+        boolean reviewQr = false;
+        String[] lines = source.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("qr:")) {
+                String code = line.substring(3).trim().toLowerCase(Locale.US);
+                if ("shop".equals(code)) {
+                    shopQr = true;
+                } else if ("review".equals(code)) {
+                    reviewQr = true;
+                } else {
+                    throw new IllegalArgumentException("Line " + (i + 1) + ": unknown QR code '" + code + "'");
+                }
+                continue;
+            }
+            rows.add(parseRow(line, i + 1, shop));
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Template has no rows");
+        }
+
+        PdfFont regularFont;
+        PdfFont boldFont;
+        try {
+            regularFont = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            boldFont = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        } catch (IOException e) {
+            // The standard fonts are built into iText
+            throw new IllegalStateException("Standard fonts unavailable", e);
+        }
+        float[] regularWidths = measureLatin1(regularFont);
+        float[] boldWidths = measureLatin1(boldFont);
+        for (Row row : rows) {
+            for (Run run : row.runs) {
+                if (run.slot == null) {
+                    row.staticUnits += row.bold ? measure(run.text, boldWidths, boldFont)
+                            : measure(run.text, regularWidths, regularFont);
+                }
+            }
+        }
+
+        String chatLink = shopQr ? shop.getWhatsappChatLink() : null;
+        QrCode shopCode = chatLink != null ? QrCode.encode(chatLink) : null;
+
+        LeafletTemplate template = new LeafletTemplate(rows, fingerprint, shop, shopCode, reviewQr,
+                regularWidths, boldWidths);
+        synchronized (CACHE) {
+            CACHE.put(fingerprint, template);
+        }
+        return template;
+    }
+
+    /**
+     * Short hash of the source and shop details, for memo keys and job options
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * The leaflet for one customer as plain text, one row per line
+     */
+    public String fill(CustomerData customer, boolean repeat) {
+        StringBuilder text = new StringBuilder();
+        for (Row row : rows) {
+            String filled = row.appliesTo(repeat) ? row.fill(customer) : null;
+            if (filled != null) {
+                text.append(text.length() > 0 ? "\n" : "").append(filled);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Renderer with fonts for one output document; use it from one thread
+     */
+    public Renderer newRenderer() throws IOException {
+        return new Renderer(PdfFontFactory.createFont(StandardFonts.HELVETICA),
+                PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD));
+    }
+
+    /**
+     * Draws leaflets straight onto a page canvas from the compiled plan: only the
+     * customer's values are measured, and each row is placed without a layout pass
+     */
+    public class Renderer {
+        private final PdfFont regularFont;
+        private final PdfFont boldFont;
+        private final String[] texts = new String[rows.size()];
+        private final float[] units = new float[rows.size()];
+        // Review codes by link; each is unique to an order, so it is drawn inline as paths
+        private final Map<String, QrCode> reviewCodesByLink = new HashMap<>();
+        private PdfFormXObject shopForm;
+
+        private Renderer(PdfFont regularFont, PdfFont boldFont) {
+            this.regularFont = regularFont;
+            this.boldFont = boldFont;
+        }
+
+        /**
+         * Encode the review codes of the returning customers in parallel ahead of drawing
+         *
+         * @param repeat whether each customer, by index, is a returning one
+         */
+        public void prepareCodes(List<CustomerData> customers, boolean[] repeat) throws InterruptedIOException {
+            if (!reviewCodes) {
+                return;
+            }
+            Set<String> pending = new LinkedHashSet<>();
+            for (int i = 0; i < customers.size(); i++) {
+                String link = repeat[i] ? shop.getOrderReviewLink(customers.get(i).getOrderInfo()) : null;
+                if (link != null && !reviewCodesByLink.containsKey(link)) {
+                    pending.add(link);
+                }
+            }
+            List<String> links = new ArrayList<>(pending);
+            QrCode[] encoded = new QrCode[links.size()];
+            ProcessingScheduler.getInstance().parallelFor(links.size(), i -> encoded[i] = QrCode.encode(links.get(i)));
+            for (int i = 0; i < encoded.length; i++) {
+                reviewCodesByLink.put(links.get(i), encoded[i]);
+            }
+        }
+
+        /**
+         * Draw one customer's leaflet centered in the box, scaled down if it does not fit.
+         * QR codes, if the template has them, take a column on the right.
+         */
+        public void draw(PdfCanvas canvas, Rectangle box, CustomerData customer, boolean repeat) {
+            QrCode reviewCode = null;
+            if (reviewCodes && repeat) {
+                String link = shop.getOrderReviewLink(customer.getOrderInfo());
+                if (link != null) {
+                    reviewCode = reviewCodesByLink.computeIfAbsent(link, QrCode::encode);
+                }
+            }
+            int codes = (shopCode != null ? 1 : 0) + (reviewCode != null ? 1 : 0);
+            if (codes > 0) {
+                float side = Math.min((box.getHeight() - CODE_GAP * (codes - 1)) / codes,
+                        box.getWidth() * CODE_COLUMN_SHARE);
+                float x = box.getRight() - side;
+                float y = box.getY() + (box.getHeight() + side * codes + CODE_GAP * (codes - 1)) / 2;
+                if (shopCode != null) {
+                    y -= side;
+                    drawShopCode(canvas, new Rectangle(x, y, side, side));
+                    y -= CODE_GAP;
+                }
+                if (reviewCode != null) {
+                    y -= side;
+                    reviewCode.draw(canvas, new Rectangle(x, y, side, side));
+                }
+                box = new Rectangle(box.getX(), box.getY(), box.getWidth() - side - CODE_GAP, box.getHeight());
+            }
+            drawText(canvas, box, customer, repeat);
+        }
+
+        private void drawShopCode(PdfCanvas canvas, Rectangle square) {
+            if (shopForm == null) {
+                shopForm = shopCode.toFormXObject(canvas.getDocument());
+            }
+            // Placed by resource name: addXObjectAt reads the form's bounding box, which fails
+            // once page flushing has written the shared form out
+            PdfName name = canvas.getResources().addForm(shopForm);
+            float scale = square.getWidth() / shopCode.getModules();
+            canvas.saveState();
+            canvas.concatMatrix(scale, 0, 0, scale, square.getX(), square.getY());
+            canvas.getContentStream().getOutputStream().write(name).writeSpace().writeBytes(DO_OPERATOR);
+            canvas.restoreState();
+        }
+
+        private void drawText(PdfCanvas canvas, Rectangle box, CustomerData customer, boolean repeat) {
+            float height = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = rows.get(i);
+                texts[i] = row.appliesTo(repeat) ? row.fill(customer) : null;
+                if (texts[i] != null) {
+                    units[i] = row.staticUnits + measureSlots(row, customer);
+                    height += row.fontSize * (1 + ROW_GAP);
+                }
+            }
+            if (height == 0) {
+                return;
+            }
+
+            float scale = Math.min(1f, box.getHeight() / height);
+            float y = box.getTop() - (box.getHeight() - height * scale) / 2;
+            for (int i = 0; i < rows.size(); i++) {
+                if (texts[i] == null) {
+                    continue;
+                }
+                Row row = rows.get(i);
+                float lineHeight = row.fontSize * scale;
+                float size = lineHeight;
+                float width = units[i] * size / 1000;
+                // A long name shrinks its own row rather than running past the box
+                if (width > box.getWidth()) {
+                    size *= box.getWidth() / width;
+                    width = box.getWidth();
+                }
+
+                float x;
+                switch (row.align) {
+                    case CENTER: x = box.getX() + (box.getWidth() - width) / 2; break;
+                    case RIGHT: x = box.getRight() - width; break;
+                    default: x = box.getX(); break;
+                }
+                y -= lineHeight;
+                canvas.beginText()
+                        .setFontAndSize(row.bold ? boldFont : regularFont, size)
+                        .moveText(x, y)
+                        .showText(texts[i])
+                        .endText();
+                y -= lineHeight * ROW_GAP;
+            }
+        }
+
+        private float measureSlots(Row row, CustomerData customer) {
+            float slotUnits = 0;
+            for (Run run : row.runs) {
+                if (run.slot != null) {
+                    slotUnits += measure(run.value(customer), row.bold ? boldWidths : regularWidths,
+                            row.bold ? boldFont : regularFont);
+                }
+            }
+            return slotUnits;
+        }
+    }
+
+    /**
+     * One row of the compiled plan
+     */
+    public static class Row {
+        private final Audience audience;
+        private final boolean bold;
+        private final float fontSize;
+        private final Align align;
+        private final List<Run> runs;
+        private final boolean hasSlots;
+        // Width of the static runs in 1/1000 em
+        private float staticUnits;
+
+        private Row(Audience audience, boolean bold, float fontSize, Align align, List<Run> runs) {
+            this.audience = audience;
+            this.bold = bold;
+            this.fontSize = fontSize;
+            this.align = align;
+            this.runs = runs;
+            boolean slots = false;
+            for (Run run : runs) {
+                slots |= run.slot != null;
+            }
+            this.hasSlots = slots;
+        }
+
+        public boolean isBold() {
+            return bold;
+        }
+
+        public float getFontSize() {
+            return fontSize;
+        }
+
+        public Align getAlign() {
+            return align;
+        }
+
+        public boolean appliesTo(boolean repeat) {
+            return audience == Audience.ALL || (audience == Audience.REPEAT) == repeat;
+        }
+
+        /**
+         * Row text for a customer, or null if all its placeholders are empty
+         */
+        public String fill(CustomerData customer) {
+            StringBuilder text = new StringBuilder();
+            boolean anyValue = !hasSlots;
+            for (Run run : runs) {
+                String value = run.value(customer);
+                anyValue |= run.slot != null && !value.isEmpty();
+                text.append(value);
+            }
+            return anyValue ? text.toString() : null;
+        }
+    }
+
+    /**
+     * Static text, or a placeholder filled per customer
+     */
+    private static class Run {
+        final String text;
+        final Slot slot;
+
+        Run(String text, Slot slot) {
+            this.text = text;
+            this.slot = slot;
+        }
+
+        String value(CustomerData customer) {
+            if (slot == null) {
+                return text;
+            }
+            String value = slot == Slot.NAME ? customer.getName() : customer.getOrderInfo();
+            return value != null ? value : "";
+        }
+    }
+
+    private static Row parseRow(String line, int number, ShopDetails shop) {
+        Audience audience = Audience.ALL;
+        if (line.startsWith("new:")) {
+            audience = Audience.NEW;
+            line = line.substring(4).trim();
+        } else if (line.startsWith("repeat:")) {
+            audience = Audience.REPEAT;
+            line = line.substring(7).trim();
+        }
+
+        int bar = line.indexOf('|');
+        if (bar < 0) {
+            throw new IllegalArgumentException("Line " + number + ": expected '|' between style and text");
+        }
+        String[] style = line.substring(0, bar).trim().toLowerCase(Locale.US).split("\\s+");
+        if (style.length != 3) {
+            throw new IllegalArgumentException("Line " + number + ": style must be <bold|regular> <size> <left|center|right>");
+        }
+
+        boolean bold;
+        if ("bold".equals(style[0])) {
+            bold = true;
+        } else if ("regular".equals(style[0])) {
+            bold = false;
+        } else {
+            throw new IllegalArgumentException("Line " + number + ": unknown font '" + style[0] + "'");
+        }
+
+        float fontSize;
+        try {
+            fontSize = Float.parseFloat(style[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + number + ": invalid size '" + style[1] + "'");
+        }
+        if (fontSize < MIN_FONT_SIZE || fontSize > MAX_FONT_SIZE) {
+            throw new IllegalArgumentException("Line " + number + ": size must be between 4 and 48");
+        }
+
+        Align align;
+        try {
+            align = Align.valueOf(style[2].toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + number + ": unknown alignment '" + style[2] + "'");
+        }
+
+        return new Row(audience, bold, fontSize, align, parseRuns(line.substring(bar + 1).trim(), number, shop));
+    }
+
+    /**
+     * Split row text into runs; shop placeholders become static text, adjacent static text is merged
+     */
+    private static List<Run> parseRuns(String text, int number, ShopDetails shop) {
+        List<Run> runs = new ArrayList<>();
+        StringBuilder pending = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            int open = text.indexOf('{', i);
+            if (open < 0) {
+                pending.append(text, i, text.length());
+                break;
+            }
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Line " + number + ": unclosed '{'");
+            }
+            pending.append(text, i, open);
+            String placeholder = text.substring(open + 1, close).trim();
+            switch (placeholder) {
+                case "shop_name":
+                    pending.append(shop.getName());
+                    break;
+                case "whatsapp":
+                    pending.append(shop.getWhatsappNumber());
+                    break;
+                case "name":
+                case "order":
+                    if (pending.length() > 0) {
+                        runs.add(new Run(pending.toString(), null));
+                        pending.setLength(0);
+                    }
+                    runs.add(new Run(null, "name".equals(placeholder) ? Slot.NAME : Slot.ORDER));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Line " + number + ": unknown placeholder {" + placeholder + "}");
+            }
+            i = close + 1;
+        }
+        if (pending.length() > 0) {
+            runs.add(new Run(pending.toString(), null));
+        }
+        return runs;
+    }
+
+    private static float[] measureLatin1(PdfFont font) {
+        float[] widths = new float[256];
+        for (int c = 0; c < widths.length; c++) {
+            widths[c] = font.getWidth(c);
+        }
+        return widths;
+    }
+
+    /**
+     * Width of text in 1/1000 em from the cached table; characters beyond Latin-1 ask the font
+     */
+    private static float measure(String text, float[] widths, PdfFont font) {
+        float total = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            total += c < widths.length ? widths[c] : font.getWidth(c);
+        }
+        return total;
+    }
+
+    private static String fingerprint(String source, ShopDetails shop) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((source + "\n" + shop.getName() + "\n" + shop.getWhatsappNumber()
+                    + "\n" + shop.getReviewLink())
+                    .getBytes(StandardCharsets.UTF_8));
+            return FileHashes.toHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
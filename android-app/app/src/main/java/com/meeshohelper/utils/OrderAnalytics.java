@@ -0,0 +1,287 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.RunSummary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Order analytics kept up to date run by run. Each run's summary is appended to a log
+ * and folded into fixed-size aggregates: daily order counts, a HyperLogLog of distinct
+ * customers and count-min heavy hitters for pincodes and SKUs. The aggregates are saved
+ * with the log offset they cover, so opening replays only runs logged after the last
+ * save, and queries never re-read the log or any PDF.
+ */
+public class OrderAnalytics {
+
+    private static final String LOG_FILE = "runs.log";
+    private static final String AGGREGATES_FILE = "aggregates.bin";
+    private static final int AGGREGATES_VERSION = 1;
+
+    // Days of daily order counts kept
+    private static final int DAYS_KEPT = 60;
+    // Inputs remembered so the same labels processed again are counted once
+    private static final int INPUTS_KEPT = 1000;
+    private static final int TOP_CANDIDATES = 20;
+
+    private final File logFile;
+    private final File aggregatesFile;
+
+    private long logOffset;
+    private long orders;
+    private long customers;
+    private long repeatCustomers;
+    private TreeMap<String, Integer> ordersPerDay;
+    private HyperLogLog distinctCustomers;
+    private HeavyHitters pincodes;
+    private HeavyHitters skus;
+    private Set<String> recordedInputs;
+
+    /**
+     * Open the analytics kept in a directory, catching up with runs logged after the last save
+     */
+    public OrderAnalytics(File directory) throws IOException {
+        this.logFile = new File(directory, LOG_FILE);
+        this.aggregatesFile = new File(directory, AGGREGATES_FILE);
+        reset();
+        if (!loadAggregates()) {
+            reset();
+        }
+        if (logFile.length() > logOffset) {
+            replayLog();
+            saveAggregates();
+        }
+    }
+
+    /**
+     * Summarize a run from its customers and the orders collected during the text pass.
+     * Call before the run is recorded in the customer history, so repeat customers are
+     * those seen in earlier runs.
+     */
+    public static RunSummary summarize(String inputHash, List<CustomerData> runCustomers,
+                                       RunSummary.Builder orders, CustomerHistoryStore history) {
+        long[] customerHashes = new long[runCustomers.size()];
+        int repeat = 0;
+        for (int i = 0; i < runCustomers.size(); i++) {
+            CustomerData customer = runCustomers.get(i);
+            customerHashes[i] = HyperLogLog.hash(CustomerHistoryStore.customerKey(customer));
+            if (history != null && history.isRepeatCustomer(customer)) {
+                repeat++;
+            }
+        }
+        // Order exports carry no label pages, so each customer row stands for an order
+        int orderCount = orders != null && orders.getOrders() > 0 ? orders.getOrders() : runCustomers.size();
+        String day = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+        return new RunSummary(day, inputHash, orderCount, runCustomers.size(), repeat, customerHashes,
+                orders != null ? orders.getPincodes() : new TreeMap<>(),
+                orders != null ? orders.getSkus() : new TreeMap<>());
+    }
+
+    /**
+     * Append a run to the log and fold it into the aggregates, in time proportional to the
+     * run. A run of labels that were already recorded is ignored.
+     *
+     * @return whether the run was recorded
+     */
+    public synchronized boolean record(RunSummary run) throws IOException {
+        if (recordedInputs.contains(run.getInputHash())) {
+            return false;
+        }
+        // A line cut short by a crash is ended first so this run gets a line of its own
+        String line = (endsCleanly() ? "" : "\n") + run.toLine() + "\n";
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+        }
+        apply(run);
+        logOffset = logFile.length();
+        saveAggregates();
+        return true;
+    }
+
+    private void apply(RunSummary run) {
+        orders += run.getOrders();
+        customers += run.getCustomers();
+        repeatCustomers += run.getRepeatCustomers();
+        ordersPerDay.merge(run.getDay(), run.getOrders(), Integer::sum);
+        while (ordersPerDay.size() > DAYS_KEPT) {
+            ordersPerDay.pollFirstEntry();
+        }
+        for (long hash : run.getCustomerHashes()) {
+            distinctCustomers.add(hash);
+        }
+        for (Map.Entry<String, Integer> pincode : run.getPincodes().entrySet()) {
+            pincodes.add(pincode.getKey(), pincode.getValue());
+        }
+        for (Map.Entry<String, Integer> sku : run.getSkus().entrySet()) {
+            skus.add(sku.getKey(), sku.getValue());
+        }
+        recordedInputs.add(run.getInputHash());
+        Iterator<String> oldest = recordedInputs.iterator();
+        while (recordedInputs.size() > INPUTS_KEPT) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    // Queries, answered from the aggregates
+    public synchronized long getOrders() {
+        return orders;
+    }
+
+    /**
+     * Estimated number of distinct customers across all runs
+     */
+    public synchronized long getDistinctCustomers() {
+        return distinctCustomers.count();
+    }
+
+    /**
+     * Share of customers in each run who had ordered in an earlier run, from 0 to 1
+     */
+    public synchronized double getRepeatCustomerRate() {
+        return customers > 0 ? (double) repeatCustomers / customers : 0;
+    }
+
+    /**
+     * Orders on each of the most recent days with orders, newest first
+     */
+    public synchronized List<Map.Entry<String, Integer>> getOrdersPerDay(int days) {
+        List<Map.Entry<String, Integer>> recent = new ArrayList<>();
+        for (Map.Entry<String, Integer> day : ordersPerDay.descendingMap().entrySet()) {
+            if (recent.size() == days) {
+                break;
+            }
+            recent.add(day);
+        }
+        return recent;
+    }
+
+    /**
+     * Pincodes with the most orders and their estimated order counts
+     */
+    public synchronized List<Map.Entry<String, Integer>> getTopPincodes(int limit) {
+        return pincodes.top(limit);
+    }
+
+    /**
+     * SKUs on the most orders and their estimated counts
+     */
+    public synchronized List<Map.Entry<String, Integer>> getTopSkus(int limit) {
+        return skus.top(limit);
+    }
+
+    private boolean endsCleanly() throws IOException {
+        if (logFile.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            log.seek(log.length() - 1);
+            return log.read() == '\n';
+        }
+    }
+
+    private void replayLog() throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            log.seek(logOffset);
+            String line;
+            while ((line = log.readLine()) != null) {
+                // readLine reads bytes as Latin-1; SKUs may not be
+                String text = new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+                try {
+                    apply(RunSummary.parse(text));
+                } catch (IllegalArgumentException e) {
+                    // A line cut short by a crash while appending
+                }
+                logOffset = log.getFilePointer();
+            }
+        }
+    }
+
+    private void reset() {
+        logOffset = 0;
+        orders = 0;
+        customers = 0;
+        repeatCustomers = 0;
+        ordersPerDay = new TreeMap<>();
+        distinctCustomers = new HyperLogLog();
+        pincodes = new HeavyHitters(TOP_CANDIDATES);
+        skus = new HeavyHitters(TOP_CANDIDATES);
+        recordedInputs = new LinkedHashSet<>();
+    }
+
+    private boolean loadAggregates() {
+        if (!aggregatesFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aggregatesFile)))) {
+            if (in.readInt() != AGGREGATES_VERSION) {
+                return false;
+            }
+            logOffset = in.readLong();
+            orders = in.readLong();
+            customers = in.readLong();
+            repeatCustomers = in.readLong();
+            int days = in.readInt();
+            for (int i = 0; i < days; i++) {
+                ordersPerDay.put(in.readUTF(), in.readInt());
+            }
+            distinctCustomers.read(in);
+            pincodes.read(in);
+            skus.read(in);
+            int inputs = in.readInt();
+            for (int i = 0; i < inputs; i++) {
+                recordedInputs.add(in.readUTF());
+            }
+            return logOffset <= logFile.length();
+        } catch (IOException e) {
+            // Rebuilt from the log
+            return false;
+        }
+    }
+
+    private void saveAggregates() throws IOException {
+        File tempFile = new File(aggregatesFile.getParentFile(), aggregatesFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(AGGREGATES_VERSION);
+            out.writeLong(logOffset);
+            out.writeLong(orders);
+            out.writeLong(customers);
+            out.writeLong(repeatCustomers);
+            out.writeInt(ordersPerDay.size());
+            for (Map.Entry<String, Integer> day : ordersPerDay.entrySet()) {
+                out.writeUTF(day.getKey());
+                out.writeInt(day.getValue());
+            }
+            distinctCustomers.write(out);
+            pincodes.write(out);
+            skus.write(out);
+            out.writeInt(recordedInputs.size());
+            for (String input : recordedInputs) {
+                out.writeUTF(input);
+            }
+        }
+        if (!tempFile.renameTo(aggregatesFile)) {
+            tempFile.delete();
+            throw new IOException("Cannot save analytics");
+        }
+    }
+}
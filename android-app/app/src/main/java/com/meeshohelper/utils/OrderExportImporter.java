@@ -0,0 +1,430 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.CustomerTable;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Imports customers from a supplier-panel order export (CSV or XLSX) as a fast
+ * alternative to scraping names from the label PDF. Rows are streamed one at a
+ * time; the worksheet is read with a SAX parser and never loaded as a whole.
+ */
+public class OrderExportImporter {
+
+    private static final String MAPPING_CACHE_FILE = "column_mappings.properties";
+
+    // Column roles, in the order they are stored in a cached mapping
+    private static final int NAME = 0;
+    private static final int ADDRESS = 1;
+    private static final int CITY = 2;
+    private static final int STATE = 3;
+    private static final int PINCODE = 4;
+    private static final int ORDER_ID = 5;
+    private static final int ROLE_COUNT = 6;
+
+    /**
+     * Receives rows of an export in file order
+     */
+    private interface RowHandler {
+        void onRow(List<String> cells);
+    }
+
+    /**
+     * Whether a file looks like an order export rather than a label PDF
+     */
+    public static boolean isOrderExport(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        return name.endsWith(".csv") || name.endsWith(".xlsx");
+    }
+
+    /**
+     * Import unique customers from a CSV or XLSX export. Column mappings are
+     * detected from the header row and cached per header signature in cacheDir.
+     */
+    public static List<CustomerData> importCustomers(File exportFile, File cacheDir) throws IOException {
+        CustomerTable customers = new CustomerTable();
+        Properties mappingCache = loadMappingCache(cacheDir);
+        int[][] mapping = new int[1][];
+
+        RowHandler handler = cells -> {
+            if (mapping[0] == null) {
+                // First non-empty row is the header
+                if (!isBlankRow(cells)) {
+                    mapping[0] = resolveMapping(cells, mappingCache);
+                }
+                return;
+            }
+
+            String name = cell(cells, mapping[0][NAME]);
+            if (name.isEmpty()) {
+                return;
+            }
+            customers.add(name, joinAddress(cells, mapping[0]), cell(cells, mapping[0][ORDER_ID]),
+                    cell(cells, mapping[0][CITY]), cell(cells, mapping[0][STATE]), cell(cells, mapping[0][PINCODE]));
+        };
+
+        if (exportFile.getName().toLowerCase(Locale.US).endsWith(".xlsx")) {
+            readXlsx(exportFile, handler);
+        } else {
+            try (Reader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(exportFile), StandardCharsets.UTF_8), 65536)) {
+                readCsv(reader, handler);
+            }
+        }
+
+        if (mapping[0] == null || mapping[0][NAME] < 0) {
+            throw new IOException("No customer name column found in " + exportFile.getName());
+        }
+        saveMappingCache(cacheDir, mappingCache);
+        return new CustomerDeduplicator().deduplicate(customers);
+    }
+
+    /**
+     * Stream CSV rows (RFC 4180 quoting, quoted fields may span lines)
+     */
+    private static void readCsv(Reader reader, RowHandler handler) throws IOException {
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        int c;
+
+        // Skip a UTF-8 byte order mark written by spreadsheet apps
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+
+        while ((c = reader.read()) != -1) {
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                row.add(field.toString().trim());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                row.add(field.toString().trim());
+                field.setLength(0);
+                handler.onRow(row);
+                row = new ArrayList<>();
+            } else {
+                field.append((char) c);
+            }
+        }
+
+        if (field.length() > 0 || !row.isEmpty()) {
+            row.add(field.toString().trim());
+            handler.onRow(row);
+        }
+    }
+
+    /**
+     * Stream the first worksheet of an XLSX workbook. Only the shared string table
+     * is kept in memory, as cells refer to it by index.
+     */
+    private static void readXlsx(File xlsxFile, RowHandler handler) throws IOException {
+        try (ZipFile zip = new ZipFile(xlsxFile)) {
+            List<String> sharedStrings = new ArrayList<>();
+            ZipEntry sharedStringsEntry = zip.getEntry("xl/sharedStrings.xml");
+            if (sharedStringsEntry != null) {
+                try (InputStream in = zip.getInputStream(sharedStringsEntry)) {
+                    parseXml(in, new SharedStringsHandler(sharedStrings));
+                }
+            }
+
+            ZipEntry sheetEntry = findFirstSheet(zip);
+            if (sheetEntry == null) {
+                throw new IOException("No worksheet found in " + xlsxFile.getName());
+            }
+            try (InputStream in = zip.getInputStream(sheetEntry)) {
+                parseXml(in, new SheetHandler(sharedStrings, handler));
+            }
+        }
+    }
+
+    private static ZipEntry findFirstSheet(ZipFile zip) {
+        ZipEntry first = zip.getEntry("xl/worksheets/sheet1.xml");
+        if (first != null) {
+            return first;
+        }
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (name.startsWith("xl/worksheets/") && name.endsWith(".xml")
+                    && (first == null || name.compareTo(first.getName()) < 0)) {
+                first = entry;
+            }
+        }
+        return first;
+    }
+
+    private static void parseXml(InputStream in, DefaultHandler handler) throws IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(false);
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(new InputSource(in), handler);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid spreadsheet: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the &lt;si&gt; entries of sharedStrings.xml, joining rich-text runs
+     */
+    private static class SharedStringsHandler extends DefaultHandler {
+        private final List<String> strings;
+        private final StringBuilder text = new StringBuilder();
+        private boolean inText;
+
+        SharedStringsHandler(List<String> strings) {
+            this.strings = strings;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("si".equals(qName)) {
+                text.setLength(0);
+            } else if ("t".equals(qName)) {
+                inText = true;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("t".equals(qName)) {
+                inText = false;
+            } else if ("si".equals(qName)) {
+                strings.add(text.toString());
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * Turns &lt;row&gt;/&lt;c&gt; elements of a worksheet into rows of cell strings
+     */
+    private static class SheetHandler extends DefaultHandler {
+        private final List<String> sharedStrings;
+        private final RowHandler rowHandler;
+        private final StringBuilder value = new StringBuilder();
+        private List<String> row;
+        private String cellType;
+        private int column;
+        private boolean inValue;
+
+        SheetHandler(List<String> sharedStrings, RowHandler rowHandler) {
+            this.sharedStrings = sharedStrings;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("row".equals(qName)) {
+                row = new ArrayList<>();
+            } else if ("c".equals(qName)) {
+                cellType = attributes.getValue("t");
+                column = columnIndex(attributes.getValue("r"), row.size());
+                value.setLength(0);
+            } else if ("v".equals(qName) || "t".equals(qName)) {
+                inValue = true;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("v".equals(qName) || "t".equals(qName)) {
+                inValue = false;
+            } else if ("c".equals(qName)) {
+                String text = value.toString();
+                if ("s".equals(cellType) && !text.isEmpty()) {
+                    int index = Integer.parseInt(text.trim());
+                    text = index < sharedStrings.size() ? sharedStrings.get(index) : "";
+                }
+                // Cells may be sparse; pad skipped columns
+                while (row.size() < column) {
+                    row.add("");
+                }
+                row.add(text.trim());
+            } else if ("row".equals(qName)) {
+                rowHandler.onRow(row);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                value.append(ch, start, length);
+            }
+        }
+
+        private static int columnIndex(String reference, int fallback) {
+            if (reference == null) {
+                return fallback;
+            }
+            int index = 0;
+            for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++) {
+                index = index * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+
+    /**
+     * Get the column roles for a header row, from the cache or by detection
+     */
+    private static int[] resolveMapping(List<String> header, Properties mappingCache) {
+        String signature = headerSignature(header);
+        String cached = mappingCache.getProperty(signature);
+        if (cached != null) {
+            String[] parts = cached.split(",");
+            if (parts.length == ROLE_COUNT) {
+                int[] mapping = new int[ROLE_COUNT];
+                for (int i = 0; i < ROLE_COUNT; i++) {
+                    mapping[i] = Integer.parseInt(parts[i]);
+                }
+                return mapping;
+            }
+        }
+
+        int[] mapping = detectMapping(header);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < ROLE_COUNT; i++) {
+            value.append(i > 0 ? "," : "").append(mapping[i]);
+        }
+        mappingCache.setProperty(signature, value.toString());
+        return mapping;
+    }
+
+    /**
+     * Detect column roles from header names used by marketplace exports
+     */
+    private static int[] detectMapping(List<String> header) {
+        int[] mapping = {-1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).toLowerCase(Locale.US).replaceAll("[^a-z]", " ").trim();
+
+            if (mapping[NAME] < 0 && (column.contains("customer name") || column.contains("buyer name")
+                    || column.contains("recipient name") || column.equals("name"))) {
+                mapping[NAME] = i;
+            } else if (mapping[ORDER_ID] < 0 && (column.contains("sub order") || column.contains("order id")
+                    || column.contains("order no") || column.contains("order number"))) {
+                mapping[ORDER_ID] = i;
+            } else if (mapping[PINCODE] < 0 && (hasWordStartingWith(column, "pin")
+                    || hasWordStartingWith(column, "postal") || hasWordStartingWith(column, "zip"))) {
+                mapping[PINCODE] = i;
+            } else if (mapping[CITY] < 0 && column.contains("city")) {
+                mapping[CITY] = i;
+            } else if (mapping[STATE] < 0 && column.contains("state")) {
+                mapping[STATE] = i;
+            } else if (mapping[ADDRESS] < 0 && column.contains("address")) {
+                mapping[ADDRESS] = i;
+            }
+        }
+        return mapping;
+    }
+
+    private static boolean hasWordStartingWith(String column, String prefix) {
+        return column.startsWith(prefix) || column.contains(" " + prefix);
+    }
+
+    private static String headerSignature(List<String> header) {
+        StringBuilder signature = new StringBuilder();
+        for (String column : header) {
+            signature.append(column.toLowerCase(Locale.US).trim()).append('|');
+        }
+        return Integer.toHexString(signature.toString().hashCode()) + "_" + header.size();
+    }
+
+    private static String joinAddress(List<String> cells, int[] mapping) {
+        StringBuilder address = new StringBuilder(cell(cells, mapping[ADDRESS]));
+        for (int role : new int[]{CITY, STATE, PINCODE}) {
+            String part = cell(cells, mapping[role]);
+            if (!part.isEmpty()) {
+                address.append(address.length() > 0 ? ", " : "").append(part);
+            }
+        }
+        return address.toString();
+    }
+
+    private static String cell(List<String> cells, int index) {
+        return index >= 0 && index < cells.size() ? cells.get(index) : "";
+    }
+
+    private static boolean isBlankRow(List<String> cells) {
+        for (String cell : cells) {
+            if (!cell.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Properties loadMappingCache(File cacheDir) {
+        Properties cache = new Properties();
+        File cacheFile = new File(cacheDir, MAPPING_CACHE_FILE);
+        if (cacheFile.exists()) {
+            try (InputStream in = new FileInputStream(cacheFile)) {
+                cache.load(in);
+            } catch (IOException e) {
+                cache.clear();
+            }
+        }
+        return cache;
+    }
+
+    private static void saveMappingCache(File cacheDir, Properties cache) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(cacheDir, MAPPING_CACHE_FILE))) {
+            cache.store(out, null);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.meeshohelper.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Remembers finished outputs by input file hash, operation, options and engine
+ * version, so re-running the same operation on the same file can return the
+ * existing output instead of rendering it again.
+ */
+public class OutputMemoStore {
+
+    private static final String INDEX_FILE = "memo.properties";
+
+    private final File indexFile;
+    private final Properties index = new Properties();
+
+    public OutputMemoStore(File memoDirectory) {
+        this.indexFile = new File(memoDirectory, INDEX_FILE);
+        if (indexFile.exists()) {
+            try (InputStream in = new FileInputStream(indexFile)) {
+                index.load(in);
+            } catch (IOException e) {
+                // A damaged index only costs a re-render
+                index.clear();
+            }
+        }
+    }
+
+    /**
+     * Build the memo key of an operation on an input file
+     */
+    public static String key(String inputHash, String operation, String options) throws IOException {
+        String material = inputHash + "|" + operation + "|" + options + "|" + PDFProcessor.ENGINE_VERSION;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return FileHashes.toHex(digest.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Get the finished output for a key, or null if there is none or it was changed since
+     */
+    public synchronized File lookup(String key) {
+        String entry = index.getProperty(key);
+        if (entry == null) {
+            return null;
+        }
+
+        // Entry format: length;lastModified;path
+        String[] parts = entry.split(";", 3);
+        if (parts.length != 3) {
+            return null;
+        }
+        File output = new File(parts[2]);
+        if (!output.isFile()
+                || output.length() != Long.parseLong(parts[0])
+                || output.lastModified() != Long.parseLong(parts[1])) {
+            index.remove(key);
+            return null;
+        }
+        return output;
+    }
+
+    /**
+     * Remember a finished output for a key
+     */
+    public synchronized void record(String key, File output) throws IOException {
+        index.setProperty(key, output.length() + ";" + output.lastModified() + ";" + output.getAbsolutePath());
+
+        File tempFile = new File(indexFile.getParentFile(), INDEX_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            index.store(out, null);
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            throw new IOException("Cannot write output memo index");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Options for how generated PDFs are written. All generators create their
+ * writer and output document through this class.
+ */
+public class OutputOptions {
+
+    // Fixed date written in deterministic mode instead of the current time
+    private static final String FIXED_PDF_DATE = "D:20000101000000Z";
+
+    // Resolution of the label printers outputs are shared for; SHARE downsamples images to it
+    public static final float PRINTER_DPI = 203f;
+
+    /**
+     * Trade-offs between output size and the CPU time spent writing it
+     */
+    public enum Profile {
+        /** iText's default writer settings */
+        STANDARD,
+        /** Smallest files for messaging apps: ARCHIVE plus images reduced to printer resolution */
+        SHARE,
+        /** Object streams and every stream at maximum compression, images kept as they are */
+        ARCHIVE,
+        /** Lowest CPU: fastest compression level and no object streams */
+        FAST
+    }
+
+    private String deterministicSeed;
+    private Profile profile = Profile.STANDARD;
+    private ResourceGovernor.Budget budget;
+    private PageCache pageCache;
+
+    /**
+     * Default options: regular iText output with a fresh document ID and dates
+     */
+    public static OutputOptions defaults() {
+        return new OutputOptions();
+    }
+
+    /**
+     * Deterministic output: the document ID is derived from the seed and the dates
+     * are fixed, so identical inputs produce byte-identical files
+     */
+    public static OutputOptions deterministic(String seed) {
+        OutputOptions options = new OutputOptions();
+        options.deterministicSeed = seed;
+        return options;
+    }
+
+    /**
+     * Use the given compression profile
+     */
+    public OutputOptions withProfile(Profile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Run with the given resource budget instead of a fresh one from the governor
+     */
+    public OutputOptions withBudget(ResourceGovernor.Budget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Resource budget of the run writing with these options. It sets buffer sizes and
+     * when pages are flushed, not what is drawn, so it is not part of {@link #describe()}.
+     */
+    public ResourceGovernor.Budget getBudget() {
+        if (budget == null) {
+            budget = ResourceGovernor.getInstance().newBudget();
+        }
+        return budget;
+    }
+
+    /**
+     * Read input pages through the given cache, so pages seen in earlier runs are not analyzed again
+     */
+    public OutputOptions withPageCache(PageCache pageCache) {
+        this.pageCache = pageCache;
+        return this;
+    }
+
+    /**
+     * Cache of analyzed input pages; a cached page gives the same fields as analyzing it,
+     * so it is not part of {@link #describe()} either
+     */
+    public PageCache getPageCache() {
+        if (pageCache == null) {
+            pageCache = PageCache.none();
+        }
+        return pageCache;
+    }
+
+    public boolean isDeterministic() {
+        return deterministicSeed != null;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Describe the options that change output bytes, for use in cache keys
+     */
+    public String describe() {
+        return "deterministic=" + isDeterministic() + ";profile=" + profile;
+    }
+
+    /**
+     * Create a writer for the given output path
+     */
+    public PdfWriter createWriter(String outputPath) throws IOException {
+        return new PdfWriter(new BufferedOutputStream(new FileOutputStream(outputPath), getBudget().getBufferSize()),
+                createWriterProperties());
+    }
+
+    /**
+     * Create a writer for a stream owned by the caller; closing the writer flushes
+     * but does not close the stream
+     */
+    public PdfWriter createWriter(OutputStream output) throws IOException {
+        PdfWriter writer = new PdfWriter(output, createWriterProperties());
+        writer.setCloseStream(false);
+        return writer;
+    }
+
+    /**
+     * Create the output document on top of a writer
+     */
+    public PdfDocument createDocument(PdfWriter writer) {
+        PdfDocument document = optimizesOnClose()
+                ? new PdfDocument(writer) {
+                    @Override
+                    public void close() {
+                        // Every page is complete by now, so displayed image sizes are known
+                        if (!isClosed()) {
+                            if (profile == Profile.SHARE) {
+                                StreamOptimizer.downsampleImages(this, PRINTER_DPI);
+                            }
+                            StreamOptimizer.recompressStreams(this);
+                        }
+                        super.close();
+                    }
+                }
+                : new PdfDocument(writer);
+        if (isDeterministic()) {
+            // iText stamps the current time when the document is opened; overwrite it
+            document.getDocumentInfo().setMoreInfo(PdfName.CreationDate.getValue(), FIXED_PDF_DATE);
+            document.getDocumentInfo().setMoreInfo(PdfName.ModDate.getValue(), FIXED_PDF_DATE);
+        }
+        return document;
+    }
+
+    /**
+     * Whether documents from {@link #createDocument} rework every page when they close, so
+     * pages should only be flushed early when memory runs low
+     */
+    boolean optimizesOnClose() {
+        return profile == Profile.SHARE || profile == Profile.ARCHIVE;
+    }
+
+    private WriterProperties createWriterProperties() throws IOException {
+        WriterProperties properties = new WriterProperties();
+        switch (profile) {
+            case SHARE:
+            case ARCHIVE:
+                properties.setFullCompressionMode(true);
+                properties.setCompressionLevel(CompressionConstants.BEST_COMPRESSION);
+                break;
+            case FAST:
+                properties.setCompressionLevel(CompressionConstants.BEST_SPEED);
+                break;
+            default:
+                break;
+        }
+        if (isDeterministic()) {
+            PdfString documentId = new PdfString(documentIdFor(deterministicSeed)).setHexWriting(true);
+            properties.setInitialDocumentId(documentId);
+            properties.setModifiedDocumentId(documentId);
+        }
+        return properties;
+    }
+
+    /**
+     * First 16 bytes of SHA-256 of the seed, the usual length of a PDF file ID
+     */
+    private static byte[] documentIdFor(String seed) throws IOException {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(seed.getBytes(StandardCharsets.UTF_8));
+            byte[] id = new byte[16];
+            System.arraycopy(hash, 0, id, 0, id.length);
+            return id;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+}
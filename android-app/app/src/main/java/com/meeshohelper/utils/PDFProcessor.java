@@ -1,297 +1,771 @@
 package com.meeshohelper.utils;
 
+import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
 import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfStream;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
 import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Text;
-import com.itextpdf.layout.property.TextAlignment;
-import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
-import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.pdf.extgstate.PdfExtGState;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.utils.PdfMerger;
 
 import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.CustomerTable;
+import com.meeshohelper.models.RunSummary;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class PDFProcessor {
 
+    // Bump whenever a change alters generated output, so memoized results are not reused
+    public static final String ENGINE_VERSION = "8";
+
+    // Thermal label stock: 4x6 inch, and the 100x150 mm size some couriers use
+    public static final PageSize THERMAL_4X6 = new PageSize(288, 432);
+    public static final PageSize THERMAL_100X150_MM = new PageSize(283.46f, 425.2f);
+    private static final float THERMAL_MARGIN = 6f;
+    private static final byte[] DO_OPERATOR = "Do\n".getBytes(StandardCharsets.ISO_8859_1);
+    // Input pages on a preview, one output sheet
+    private static final int PREVIEW_PAGES = 4;
+
     /**
-     * Extract customer names from Meesho PDF
+     * Extract customer names from a label PDF of any registered format
      */
     public static List<CustomerData> extractCustomerNames(File pdfFile) throws IOException {
-        Set<String> uniqueNames = new HashSet<>();
-        List<CustomerData> customers = new ArrayList<>();
+        return extractCustomerNames(pdfFile, null);
+    }
+
+    /**
+     * Extract customer names, also collecting each page's order, pincode and SKUs for
+     * analytics in the same text pass
+     *
+     * @param orders collects the run's orders; may be null
+     */
+    public static List<CustomerData> extractCustomerNames(File pdfFile, RunSummary.Builder orders) throws IOException {
+        return extractCustomerNames(pdfFile, orders, PageCache.none());
+    }
+
+    /**
+     * Extract customer names, reading pages seen in earlier runs from the page cache
+     * instead of extracting their text again
+     *
+     * @param orders collects the run's orders; may be null
+     */
+    public static List<CustomerData> extractCustomerNames(File pdfFile, RunSummary.Builder orders,
+                                                          PageCache pageCache) throws IOException {
+        CustomerTable customers = new CustomerTable();
 
         try (PdfReader reader = new PdfReader(pdfFile.getAbsolutePath());
              PdfDocument pdfDoc = new PdfDocument(reader)) {
 
+            PageCache.Pages pages = pageCache.open(pdfDoc);
             int numPages = pdfDoc.getNumberOfPages();
             for (int i = 1; i <= numPages; i++) {
-                PdfPage page = pdfDoc.getPage(i);
-                String text = PdfTextExtractor.getTextFromPage(page);
-                String[] lines = text.split("\n");
-
-                for (int j = 0; j < lines.length; j++) {
-                    String line = lines[j].trim();
-                    if (line.toUpperCase().contains("BILL TO") || 
-                        line.toUpperCase().contains("SHIP TO") ||
-                        line.toUpperCase().contains("BILL TO / SHIP TO")) {
-                        
-                        // Look for the name in the next line
-                        if (j + 1 < lines.length) {
-                            String rawName = lines[j + 1].trim();
-                            String cleanedName = cleanCustomerName(rawName);
-                            if (cleanedName != null && !cleanedName.isEmpty() && 
-                                !uniqueNames.contains(cleanedName)) {
-                                uniqueNames.add(cleanedName);
-                                customers.add(new CustomerData(cleanedName));
-                            }
-                        }
-                    }
+                ProcessingScheduler.yieldPoint();
+                PageCache.Entry page = pages.analyze(i);
+                page.addCustomers(customers);
+                if (orders != null) {
+                    page.addOrder(orders);
                 }
             }
         }
 
-        return customers;
+        return new CustomerDeduplicator().deduplicate(customers);
     }
 
     /**
-     * Clean customer name by removing address parts and unwanted text
+     * Crop the bill area from a Meesho label page
      */
-    private static String cleanCustomerName(String rawName) {
-        if (rawName == null || rawName.trim().isEmpty()) {
-            return null;
+    public static Rectangle cropBillArea(PdfPage page) {
+        return LabelFormat.MEESHO.cropArea(page);
+    }
+
+    /**
+     * Extract the order id printed on a Meesho label page, or null if none is found
+     */
+    public static String extractOrderId(String pageText) {
+        return LabelFormat.MEESHO.extractOrderId(pageText);
+    }
+
+    /**
+     * Create a 4-up layout of cropped bills
+     */
+    public static void createFourUpLayout(File inputFile, File outputFile) throws IOException {
+        createFourUpLayout(inputFile, outputFile, OutputOptions.defaults());
+    }
+
+    /**
+     * Create a 4-up layout of cropped bills with the given output options
+     */
+    public static void createFourUpLayout(File inputFile, File outputFile, OutputOptions options) throws IOException {
+        ImpositionManifest manifest;
+        try (PdfWriter writer = options.createWriter(outputFile.getAbsolutePath())) {
+            manifest = writeFourUpLayout(inputFile, writer, options, Integer.MAX_VALUE);
         }
+        manifest.save(outputFile);
+    }
 
-        // Remove common address keywords and patterns
-        String cleaned = rawName
-                .replaceAll("(?i)\\b(house|h\\.no|h\\.no\\.|flat|apartment|apt|road|rd|street|st|lane|ln|area|sector|block|plot|pin|pincode|pin code|zip|postal|post|near|opp|opposite|behind|beside|next to|above|below)\\b.*", "")
-                .replaceAll("(?i)\\b(city|district|state|country|india|pin|pincode|\\d{6})\\b.*", "")
-                .replaceAll("\\d{6,}", "") // Remove pincode-like numbers
-                .replaceAll("[,;].*", "") // Remove everything after comma or semicolon
-                .replaceAll("\\s+", " ") // Replace multiple spaces with single space
-                .trim();
-
-        // Remove if it's just numbers or too short
-        if (cleaned.matches("\\d+") || cleaned.length() < 2) {
-            return null;
+    /**
+     * Create 4-up layout PDF straight into a stream, such as a document picked by the user.
+     * The stream is left open for the caller.
+     */
+    public static void createFourUpLayout(File inputFile, OutputStream output, OutputOptions options) throws IOException {
+        try (PdfWriter writer = options.createWriter(output)) {
+            writeFourUpLayout(inputFile, writer, options, Integer.MAX_VALUE);
         }
+    }
 
-        // Capitalize first letter of each word
-        String[] words = cleaned.split("\\s+");
-        StringBuilder result = new StringBuilder();
-        for (String word : words) {
-            if (word.length() > 0) {
-                result.append(Character.toUpperCase(word.charAt(0)))
-                      .append(word.substring(1).toLowerCase())
-                      .append(" ");
+    /**
+     * Write only the first 4-up sheet, as a standalone preview to check the crop on while
+     * the full layout is still being made
+     */
+    public static void createFourUpPreview(File inputFile, File previewFile, OutputOptions options) throws IOException {
+        try (PdfWriter writer = options.createWriter(previewFile.getAbsolutePath())) {
+            writeFourUpLayout(inputFile, writer, options, PREVIEW_PAGES);
+        }
+    }
+
+    /**
+     * Create a 4-up layout with the bills ordered by courier, then delivery pincode, so each
+     * courier's pickup prints together. Courier and pincode are read in the same text pass
+     * that copies each bill into the output; the bills are placed on sheets once the order
+     * is known, so no page is read twice. Sort keys beyond the budget's page window are
+     * spilled to a folder next to the output and merged back.
+     */
+    public static void createSortedFourUpLayout(File inputFile, File outputFile,
+                                                OutputOptions options) throws IOException {
+        ImpositionManifest manifest = new ImpositionManifest();
+        ResourceGovernor.Budget budget = options.getBudget();
+        File spillDir = new File(outputFile.getParentFile(), outputFile.getName() + ".sort");
+
+        try (LabelSorter sorter = new LabelSorter(spillDir, budget);
+             PdfWriter writer = options.createWriter(outputFile.getAbsolutePath());
+             PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
+             PdfDocument inputDoc = new PdfDocument(reader);
+             PdfDocument outputDoc = options.createDocument(writer)) {
+
+            // Bills by input page; written ones are kept as small handles placed by name
+            List<PdfFormXObject> forms = new ArrayList<>();
+            PageCache.Pages pages = options.getPageCache().open(inputDoc);
+            int inputPages = inputDoc.getNumberOfPages();
+            for (int i = 1; i <= inputPages; i++) {
+                ProcessingScheduler.yieldPoint();
+                budget.checkHeap();
+                PageCache.Entry page = pages.analyze(i);
+                Rectangle cropArea = page.getCropArea();
+                PdfFormXObject form = createCroppedBill(inputDoc.getPage(i), cropArea, outputDoc);
+                if (!options.optimizesOnClose() || budget.getShrinkCount() > 0) {
+                    flushCroppedBill(form, outputDoc);
+                }
+                forms.add(form);
+                sorter.add(new LabelSorter.Entry(page.courier, page.pincode, page.orderId,
+                        i, cropArea.getWidth(), cropArea.getHeight()));
             }
+
+            sorter.forEachSorted(new LabelSorter.Consumer() {
+                private PdfCanvas canvas;
+                private int billsPlaced;
+
+                @Override
+                public void accept(LabelSorter.Entry entry) {
+                    if (billsPlaced % 4 == 0) {
+                        canvas = new PdfCanvas(outputDoc.addNewPage(PageSize.A4));
+                    }
+                    placeOnFourUpSlot(canvas, forms.get(entry.page - 1), entry.width, entry.height,
+                            billsPlaced % 4);
+                    manifest.add(entry.orderId.isEmpty() ? null : entry.orderId);
+                    billsPlaced++;
+                    if (billsPlaced % 4 == 0) {
+                        sheetCompleted(outputDoc, budget, !options.optimizesOnClose());
+                    }
+                }
+            });
         }
+        manifest.save(outputFile);
+    }
+
+    private static ImpositionManifest writeFourUpLayout(File inputFile, PdfWriter writer,
+                                                        OutputOptions options, int pageLimit) throws IOException {
+        ImpositionManifest manifest = new ImpositionManifest();
+
+        try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
+             PdfDocument inputDoc = new PdfDocument(reader);
+             PdfDocument outputDoc = options.createDocument(writer)) {
 
-        return result.toString().trim();
+            ResourceGovernor.Budget budget = options.getBudget();
+            int inputPages = Math.min(inputDoc.getNumberOfPages(), pageLimit);
+            int billsProcessed = 0;
+            PdfCanvas canvas = null;
+            PageCache.Pages pages = options.getPageCache().open(inputDoc);
+
+            for (int i = 1; i <= inputPages; i++) {
+                ProcessingScheduler.yieldPoint();
+                budget.checkHeap();
+                PageCache.Entry page = pages.analyze(i);
+                Rectangle cropArea = page.getCropArea();
+                PdfFormXObject form = createCroppedBill(inputDoc.getPage(i), cropArea, outputDoc);
+
+                // Create new output page every 4 bills
+                if (billsProcessed % 4 == 0) {
+                    canvas = new PdfCanvas(outputDoc.addNewPage(PageSize.A4));
+                }
+
+                placeOnFourUpSlot(canvas, form, cropArea, billsProcessed % 4);
+                manifest.add(page.orderId);
+                billsProcessed++;
+                if (billsProcessed % 4 == 0) {
+                    sheetCompleted(outputDoc, budget, !options.optimizesOnClose());
+                }
+            }
+        }
+
+        return manifest;
     }
 
     /**
-     * Crop a specific area from a PDF page
+     * Append new labels to an existing 4-up output. Empty slots on the last sheet are
+     * filled first, further sheets are added with an incremental update so the earlier
+     * pages are never rewritten. Labels already listed in the manifest are skipped. Only
+     * 4-up outputs with an imposition manifest can be appended to.
+     * <p>
+     * The result is written to appendedOutput and the existing output is left as it is:
+     * it may be the memoized output of its input, which a later run would render over.
+     *
+     * @return number of bills appended; appendedOutput is only written if this is not 0
      */
-    public static Rectangle cropBillArea(PdfPage page) {
-        Rectangle pageRect = page.getPageSize();
-        float pageWidth = pageRect.getWidth();
-        float pageHeight = pageRect.getHeight();
+    public static int appendToFourUpLayout(File existingOutput, File newLabelsFile,
+                                           File appendedOutput) throws IOException {
+        ImpositionManifest manifest = ImpositionManifest.load(existingOutput);
+        if (!manifest.exists()) {
+            // Without it the filled slots are unknown, and the file may not even be a 4-up layout
+            throw new IOException(existingOutput.getName() + " is not a 4-up output that can be added to");
+        }
+        File stagingFile = new File(appendedOutput.getParentFile(), appendedOutput.getName() + ".append");
+        int billsAppended = 0;
+
+        try (PdfReader labelReader = new PdfReader(newLabelsFile.getAbsolutePath());
+             PdfDocument labelDoc = new PdfDocument(labelReader);
+             PdfReader outputReader = new PdfReader(existingOutput.getAbsolutePath());
+             PdfWriter writer = new PdfWriter(stagingFile.getAbsolutePath());
+             PdfDocument outputDoc = new PdfDocument(outputReader, writer,
+                     new StampingProperties().useAppendMode())) {
+
+            int billsPlaced = manifest.getBillCount();
+            PdfCanvas canvas = null;
+
+            if (billsPlaced % 4 != 0 && outputDoc.getNumberOfPages() > 0) {
+                PdfPage lastPage = outputDoc.getLastPage();
+                canvas = new PdfCanvas(lastPage.newContentStreamAfter(), lastPage.getResources(), outputDoc);
+                lastPage.setModified();
+            }
+
+            int labelPages = labelDoc.getNumberOfPages();
+            LabelFormat format = null;
+            for (int i = 1; i <= labelPages; i++) {
+                ProcessingScheduler.yieldPoint();
+                PdfPage labelPage = labelDoc.getPage(i);
+                String text = PdfTextExtractor.getTextFromPage(labelPage);
+                if (format == null) {
+                    format = LabelFormat.detect(text);
+                }
+                String orderId = format.extractOrderId(text);
+                if (manifest.contains(orderId)) {
+                    continue;
+                }
+
+                Rectangle cropArea = format.cropArea(labelPage);
+                PdfFormXObject form = createCroppedBill(labelPage, cropArea, outputDoc);
+
+                if (billsPlaced % 4 == 0) {
+                    canvas = new PdfCanvas(outputDoc.addNewPage(PageSize.A4));
+                }
 
-        // Meesho bill cropping parameters (adjust as needed)
-        // These values are approximations and may need fine-tuning
-        float cropX = pageWidth * 0.05f; // 5% from left
-        float cropY = pageHeight * 0.3f; // 30% from bottom
-        float cropWidth = pageWidth * 0.9f; // 90% of page width
-        float cropHeight = pageHeight * 0.4f; // 40% of page height
+                placeOnFourUpSlot(canvas, form, cropArea, billsPlaced % 4);
+                manifest.add(orderId);
+                billsPlaced++;
+                billsAppended++;
+            }
+        }
 
-        return new Rectangle(cropX, cropY, cropWidth, cropHeight);
+        if (billsAppended == 0) {
+            stagingFile.delete();
+            return 0;
+        }
+
+        // The staging file holds the original bytes plus the appended revision
+        if (!stagingFile.renameTo(appendedOutput)) {
+            stagingFile.delete();
+            throw new IOException("Cannot write " + appendedOutput.getName());
+        }
+        manifest.save(appendedOutput);
+        return billsAppended;
     }
 
     /**
-     * Create a 4-up layout of cropped bills
+     * Create a thermal label PDF with one cropped bill per 4x6 inch page, in grayscale
      */
-    public static void createFourUpLayout(File inputFile, File outputFile) throws IOException {
+    public static void createThermalLayout(File inputFile, File outputFile) throws IOException {
+        createThermalLayout(inputFile, outputFile, THERMAL_4X6, true, OutputOptions.defaults());
+    }
+
+    /**
+     * Create a thermal label PDF with one cropped bill per page of the given label size.
+     * Bills are rotated when that prints them larger and stay vector content; grayscale
+     * is applied with a Saturation blend overlay instead of rasterizing the page.
+     */
+    public static void createThermalLayout(File inputFile, File outputFile, PageSize labelSize,
+                                           boolean grayscale, OutputOptions options) throws IOException {
+        try (PdfWriter writer = options.createWriter(outputFile.getAbsolutePath())) {
+            writeThermalLayout(inputFile, writer, labelSize, grayscale, options);
+        }
+    }
+
+    /**
+     * Create a thermal label PDF straight into a stream; the stream is left open for the caller
+     */
+    public static void createThermalLayout(File inputFile, OutputStream output, PageSize labelSize,
+                                           boolean grayscale, OutputOptions options) throws IOException {
+        try (PdfWriter writer = options.createWriter(output)) {
+            writeThermalLayout(inputFile, writer, labelSize, grayscale, options);
+        }
+    }
+
+    private static void writeThermalLayout(File inputFile, PdfWriter writer, PageSize labelSize,
+                                           boolean grayscale, OutputOptions options) throws IOException {
         try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
              PdfDocument inputDoc = new PdfDocument(reader);
-             PdfWriter writer = new PdfWriter(outputFile.getAbsolutePath());
-             PdfDocument outputDoc = new PdfDocument(writer)) {
+             PdfDocument outputDoc = options.createDocument(writer)) {
 
-            PageSize a4 = PageSize.A4;
-            float pageWidth = a4.getWidth();
-            float pageHeight = a4.getHeight();
-            
-            // Calculate dimensions for 4-up layout (2x2 grid)
-            float billWidth = pageWidth / 2 - 20; // Margin of 10 points on each side
-            float billHeight = pageHeight / 2 - 20;
+            PdfExtGState grayscaleState = new PdfExtGState().setBlendMode(PdfExtGState.BM_SATURATION);
 
+            ResourceGovernor.Budget budget = options.getBudget();
+            LabelFormat format = LabelFormat.detect(inputDoc);
             int inputPages = inputDoc.getNumberOfPages();
-            int billsProcessed = 0;
-            PdfPage currentOutputPage = null;
-            PdfCanvas canvas = null;
-
             for (int i = 1; i <= inputPages; i++) {
+                ProcessingScheduler.yieldPoint();
+                budget.checkHeap();
                 PdfPage inputPage = inputDoc.getPage(i);
-                Rectangle cropArea = cropBillArea(inputPage);
-                
-                // Create form XObject from cropped area
-                PdfFormXObject form = new PdfFormXObject(cropArea);
-                PdfCanvas formCanvas = new PdfCanvas(form, outputDoc);
-                formCanvas.addXObjectAt(inputPage.copyAsFormXObject(outputDoc), -cropArea.getX(), -cropArea.getY());
-
-                // Create new output page every 4 bills
-                if (billsProcessed % 4 == 0) {
-                    currentOutputPage = outputDoc.addNewPage(a4);
-                    canvas = new PdfCanvas(currentOutputPage);
+                Rectangle cropArea = format.cropArea(inputPage);
+                PdfFormXObject form = createCroppedBill(inputPage, cropArea, outputDoc);
+
+                PdfCanvas canvas = new PdfCanvas(outputDoc.addNewPage(labelSize));
+                placeOnThermalLabel(canvas, form, cropArea, labelSize);
+
+                if (grayscale) {
+                    // White has no saturation, so this keeps each colour's luminosity and drops its hue
+                    canvas.saveState()
+                            .setExtGState(grayscaleState)
+                            .setFillColor(ColorConstants.WHITE)
+                            .rectangle(0, 0, labelSize.getWidth(), labelSize.getHeight())
+                            .fill()
+                            .restoreState();
                 }
+                sheetCompleted(outputDoc, budget, !options.optimizesOnClose());
+            }
+        }
+    }
 
-                // Calculate position for current bill (2x2 grid)
-                int position = billsProcessed % 4;
-                float x = (position % 2) * (billWidth + 20) + 10;
-                float y = pageHeight - ((position / 2) + 1) * (billHeight + 20) + 10;
+    /**
+     * Draw a cropped bill centred on a thermal label, turned 90 degrees clockwise if that fits better
+     */
+    private static void placeOnThermalLabel(PdfCanvas canvas, PdfFormXObject form, Rectangle cropArea,
+                                            PageSize labelSize) {
+        float labelWidth = labelSize.getWidth();
+        float labelHeight = labelSize.getHeight();
+        float availableWidth = labelWidth - 2 * THERMAL_MARGIN;
+        float availableHeight = labelHeight - 2 * THERMAL_MARGIN;
+        float billWidth = cropArea.getWidth();
+        float billHeight = cropArea.getHeight();
+
+        float uprightScale = Math.min(availableWidth / billWidth, availableHeight / billHeight);
+        float rotatedScale = Math.min(availableWidth / billHeight, availableHeight / billWidth);
+
+        canvas.saveState();
+        if (rotatedScale > uprightScale) {
+            float scale = rotatedScale;
+            canvas.concatMatrix(0, -scale, scale, 0,
+                    (labelWidth - scale * billHeight) / 2, (labelHeight + scale * billWidth) / 2);
+        } else {
+            float scale = uprightScale;
+            canvas.concatMatrix(scale, 0, 0, scale,
+                    (labelWidth - scale * billWidth) / 2, (labelHeight - scale * billHeight) / 2);
+        }
+        canvas.addXObjectAt(form, 0, 0);
+        canvas.restoreState();
+    }
 
-                // Scale form to fit in allocated space
-                float scaleX = billWidth / cropArea.getWidth();
-                float scaleY = billHeight / cropArea.getHeight();
-                float scale = Math.min(scaleX, scaleY);
+    /**
+     * Count a finished output sheet and, when the budget says so, flush the finished
+     * pages with their form XObjects so they no longer occupy the heap. Without routine
+     * flushing, pages are only flushed once the budget has shrunk for low memory.
+     */
+    static void sheetCompleted(PdfDocument outputDoc, ResourceGovernor.Budget budget,
+                                       boolean flushRoutinely) {
+        if (budget.sheetCompleted() && (flushRoutinely || budget.getShrinkCount() > 0)) {
+            flushFinishedPages(outputDoc);
+        }
+    }
 
-                canvas.saveState();
-                canvas.concatMatrix(scale, 0, 0, scale, x, y);
-                canvas.addXObjectAt(form, 0, 0);
-                canvas.restoreState();
+    private static void flushFinishedPages(PdfDocument outputDoc) {
+        for (int p = outputDoc.getNumberOfPages(); p >= 1; p--) {
+            PdfPage page = outputDoc.getPage(p);
+            if (page.isFlushed()) {
+                break;
+            }
+            page.flush(true);
+        }
+    }
 
-                billsProcessed++;
+    /**
+     * Copy the cropped bill area of an input page into the output document. The form's
+     * origin is the crop corner, so it can be placed with its lower left at any point.
+     */
+    static PdfFormXObject createCroppedBill(PdfPage inputPage, Rectangle cropArea,
+                                                    PdfDocument outputDoc) throws IOException {
+        PdfFormXObject form = new PdfFormXObject(new Rectangle(0, 0, cropArea.getWidth(), cropArea.getHeight()));
+        PdfCanvas formCanvas = new PdfCanvas(form, outputDoc);
+        formCanvas.addXObjectAt(inputPage.copyAsFormXObject(outputDoc), -cropArea.getX(), -cropArea.getY());
+        return form;
+    }
+
+    /**
+     * Draw a cropped bill into one of the four slots (2x2 grid) of an A4 sheet
+     */
+    static void placeOnFourUpSlot(PdfCanvas canvas, PdfFormXObject form, Rectangle cropArea, int position) {
+        canvas.saveState();
+        concatFourUpSlot(canvas, cropArea.getWidth(), cropArea.getHeight(), position);
+        canvas.addXObjectAt(form, 0, 0);
+        canvas.restoreState();
+    }
+
+    /**
+     * Draw a cropped bill of the given size into a 4-up slot by resource name, which also
+     * works for a bill already written by {@link #flushCroppedBill}
+     */
+    private static void placeOnFourUpSlot(PdfCanvas canvas, PdfFormXObject form, float width, float height,
+                                          int position) {
+        PdfName name = canvas.getResources().addForm(form);
+        canvas.saveState();
+        concatFourUpSlot(canvas, width, height, position);
+        canvas.getContentStream().getOutputStream().write(name).writeSpace().writeBytes(DO_OPERATOR);
+        canvas.restoreState();
+    }
+
+    private static void concatFourUpSlot(PdfCanvas canvas, float width, float height, int position) {
+        float pageWidth = PageSize.A4.getWidth();
+        float pageHeight = PageSize.A4.getHeight();
+
+        // Calculate dimensions for 4-up layout (2x2 grid)
+        float billWidth = pageWidth / 2 - 20; // Margin of 10 points on each side
+        float billHeight = pageHeight / 2 - 20;
+
+        float x = (position % 2) * (billWidth + 20) + 10;
+        float y = pageHeight - ((position / 2) + 1) * (billHeight + 20) + 10;
+
+        // Scale form to fit in allocated space
+        float scaleX = billWidth / width;
+        float scaleY = billHeight / height;
+        float scale = Math.min(scaleX, scaleY);
+
+        canvas.concatMatrix(scale, 0, 0, scale, x, y);
+    }
+
+    /**
+     * Write a cropped bill and the images and page content it draws to the output now,
+     * so a bill that is placed later does not hold them in memory
+     */
+    private static void flushCroppedBill(PdfFormXObject form, PdfDocument outputDoc) {
+        flushWithXObjects(form.getPdfObject(), outputDoc);
+    }
+
+    private static void flushWithXObjects(PdfStream stream, PdfDocument outputDoc) {
+        PdfDictionary resources = stream.getAsDictionary(PdfName.Resources);
+        PdfDictionary xObjects = resources != null ? resources.getAsDictionary(PdfName.XObject) : null;
+        if (xObjects != null) {
+            for (PdfName name : xObjects.keySet()) {
+                // Already written XObjects, such as a logo shared by every label, read as null
+                PdfStream xObject = xObjects.getAsStream(name);
+                if (xObject != null && !xObject.isFlushed()) {
+                    flushWithXObjects(xObject, outputDoc);
+                }
             }
         }
+        if (stream.getIndirectReference() == null) {
+            stream.makeIndirect(outputDoc);
+        }
+        stream.flush();
     }
 
     /**
      * Generate hybrid bill (cropped bills + leaflets)
      */
-    public static void generateHybridBill(File inputFile, File outputFile, List<CustomerData> customers) throws IOException {
+    public static void generateHybridBill(File inputFile, File outputFile, List<CustomerData> customers,
+                                          CustomerHistoryStore history) throws IOException {
         try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
              PdfDocument inputDoc = new PdfDocument(reader);
              PdfWriter writer = new PdfWriter(outputFile.getAbsolutePath());
              PdfDocument outputDoc = new PdfDocument(writer)) {
 
-            PageSize a4 = PageSize.A4;
-            float pageWidth = a4.getWidth();
-            float pageHeight = a4.getHeight();
-            
-            // Layout: 4 bills at corners, leaflets in center
-            float billWidth = pageWidth * 0.4f;
-            float billHeight = pageHeight * 0.25f;
-            float centerWidth = pageWidth * 0.6f;
-            float centerHeight = pageHeight * 0.5f;
-
+            LeafletTemplate.Renderer leaflets = LeafletTemplate.defaults().newRenderer();
+            LabelFormat format = LabelFormat.detect(inputDoc);
             int inputPages = inputDoc.getNumberOfPages();
-            int billsProcessed = 0;
-            int customerIndex = 0;
-
             for (int i = 1; i <= inputPages; i += 4) {
-                PdfPage outputPage = outputDoc.addNewPage(a4);
-                PdfCanvas canvas = new PdfCanvas(outputPage);
-
-                // Add 4 bills at corners
-                for (int j = 0; j < 4 && (i + j) <= inputPages; j++) {
-                    PdfPage inputPage = inputDoc.getPage(i + j);
-                    Rectangle cropArea = cropBillArea(inputPage);
-                    
-                    PdfFormXObject form = new PdfFormXObject(cropArea);
-                    PdfCanvas formCanvas = new PdfCanvas(form, outputDoc);
-                    formCanvas.addXObjectAt(inputPage.copyAsFormXObject(outputDoc), -cropArea.getX(), -cropArea.getY());
-
-                    // Position at corners
-                    float x, y;
-                    switch (j) {
-                        case 0: x = 10; y = pageHeight - billHeight - 10; break; // Top-left
-                        case 1: x = pageWidth - billWidth - 10; y = pageHeight - billHeight - 10; break; // Top-right
-                        case 2: x = 10; y = 10; break; // Bottom-left
-                        case 3: x = pageWidth - billWidth - 10; y = 10; break; // Bottom-right
-                        default: continue;
+                addHybridSheet(inputDoc, outputDoc, format, i, sheetCustomers(customers, i), leaflets, history);
+            }
+        }
+    }
+
+    /**
+     * Write only the first hybrid sheet, with leaflets for the customers on its bills, as a
+     * standalone preview. Only those pages are read, so it is ready long before the
+     * customers of the whole file are known.
+     */
+    public static void createHybridPreview(File inputFile, File previewFile, LeafletTemplate template,
+                                           CustomerHistoryStore history) throws IOException {
+        try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
+             PdfDocument inputDoc = new PdfDocument(reader);
+             PdfWriter writer = new PdfWriter(previewFile.getAbsolutePath());
+             PdfDocument outputDoc = new PdfDocument(writer)) {
+
+            LabelFormat format = LabelFormat.detect(inputDoc);
+            CustomerTable customers = new CustomerTable();
+            int pages = Math.min(inputDoc.getNumberOfPages(), PREVIEW_PAGES);
+            for (int i = 1; i <= pages; i++) {
+                format.addPageCustomers(PdfTextExtractor.getTextFromPage(inputDoc.getPage(i)), customers);
+            }
+            addHybridSheet(inputDoc, outputDoc, format, 1, new CustomerDeduplicator().deduplicate(customers),
+                    template.newRenderer(), history);
+        }
+    }
+
+    /**
+     * Generate hybrid bill with crash-safe checkpoints. Completed sheets are committed
+     * in chunks to checkpointDir together with a {@link RenderJournal}; calling this
+     * again for the same input and customers resumes after the last committed chunk.
+     * The final output is assembled next to outputFile and renamed into place, so a
+     * partial output is never visible. Repeat customers in the history (which may be
+     * null) get their review codes.
+     */
+    public static void generateHybridBill(File inputFile, File outputFile, List<CustomerData> customers,
+                                          File checkpointDir, OutputOptions options, LeafletTemplate template,
+                                          CustomerHistoryStore history) throws IOException {
+        int chunkCount = renderHybridChunks(inputFile, customers, checkpointDir, options, template, history);
+
+        File tempOutput = new File(outputFile.getParentFile(), outputFile.getName() + ".part");
+        try (PdfWriter writer = options.createWriter(tempOutput.getAbsolutePath())) {
+            assembleChunks(checkpointDir, chunkCount, writer, options);
+        }
+        if (!tempOutput.renameTo(outputFile)) {
+            tempOutput.delete();
+            throw new IOException("Cannot write " + outputFile.getName());
+        }
+        RenderJournal.clear(checkpointDir);
+    }
+
+    /**
+     * Generate hybrid bills with checkpoints, assembling the result straight into a
+     * stream; the stream is left open for the caller
+     */
+    public static void generateHybridBill(File inputFile, OutputStream output, List<CustomerData> customers,
+                                          File checkpointDir, OutputOptions options, LeafletTemplate template,
+                                          CustomerHistoryStore history) throws IOException {
+        int chunkCount = renderHybridChunks(inputFile, customers, checkpointDir, options, template, history);
+        try (PdfWriter writer = options.createWriter(output)) {
+            assembleChunks(checkpointDir, chunkCount, writer, options);
+        }
+        RenderJournal.clear(checkpointDir);
+    }
+
+    /**
+     * Render the chunks not yet committed to the journal
+     *
+     * @return total number of chunks
+     */
+    private static int renderHybridChunks(File inputFile, List<CustomerData> customers, File checkpointDir,
+                                          OutputOptions options, LeafletTemplate template,
+                                          CustomerHistoryStore history) throws IOException {
+        String inputHash = FileHashes.computeFileHash(inputFile);
+        String jobOptions = hybridOptions(customers, options, template);
+
+        RenderJournal journal = RenderJournal.load(checkpointDir);
+        if (journal == null || !journal.matches(inputHash, jobOptions)) {
+            RenderJournal.clear(checkpointDir);
+            journal = new RenderJournal(inputHash, jobOptions);
+            journal.save(checkpointDir);
+        }
+
+        try (PdfReader reader = new PdfReader(inputFile.getAbsolutePath());
+             PdfDocument inputDoc = new PdfDocument(reader)) {
+
+            ResourceGovernor.Budget budget = options.getBudget();
+            LabelFormat format = LabelFormat.detect(inputDoc);
+            int inputPages = inputDoc.getNumberOfPages();
+            int page = journal.getLastCompletedPage() + 1;
+
+            while (page <= inputPages) {
+                // The window may shrink between chunks when memory runs low
+                int chunkEnd = Math.min(page + budget.getWindowPages() - 1, inputPages);
+                File chunkFile = RenderJournal.chunkFile(checkpointDir, journal.getChunkCount());
+                File tempChunk = new File(checkpointDir, chunkFile.getName() + ".tmp");
+
+                try (PdfWriter writer = new PdfWriter(tempChunk.getAbsolutePath());
+                     PdfDocument chunkDoc = new PdfDocument(writer)) {
+                    LeafletTemplate.Renderer leaflets = template.newRenderer();
+                    for (int i = page; i <= chunkEnd; i += 4) {
+                        budget.checkHeap();
+                        addHybridSheet(inputDoc, chunkDoc, format, i, sheetCustomers(customers, i), leaflets,
+                                history);
+                        sheetCompleted(chunkDoc, budget, true);
                     }
+                }
 
-                    float scale = Math.min(billWidth / cropArea.getWidth(), billHeight / cropArea.getHeight());
-                    canvas.saveState();
-                    canvas.concatMatrix(scale, 0, 0, scale, x, y);
-                    canvas.addXObjectAt(form, 0, 0);
-                    canvas.restoreState();
+                if (!tempChunk.renameTo(chunkFile)) {
+                    throw new IOException("Cannot commit chunk " + chunkFile.getName());
                 }
+                journal.commitChunk(chunkEnd);
+                journal.save(checkpointDir);
+                page = chunkEnd + 1;
+            }
+        }
 
-                // Add leaflets in center
-                addLeafletsToCenter(outputDoc, outputPage, customers, customerIndex, centerWidth, centerHeight, pageWidth, pageHeight);
-                customerIndex += 4;
+        return journal.getChunkCount();
+    }
+
+    /**
+     * Input page from which a checkpointed hybrid job would resume, or 0 if it would start over
+     */
+    public static int getHybridResumePage(File inputFile, List<CustomerData> customers, File checkpointDir,
+                                          OutputOptions options, LeafletTemplate template) throws IOException {
+        RenderJournal journal = RenderJournal.load(checkpointDir);
+        if (journal == null || journal.getLastCompletedPage() == 0
+                || !journal.matches(FileHashes.computeFileHash(inputFile), hybridOptions(customers, options, template))) {
+            return 0;
+        }
+        return journal.getLastCompletedPage() + 1;
+    }
+
+    /**
+     * Customers whose leaflets go on the sheet starting at firstPage; each sheet consumes
+     * 4 bills and 4 customers
+     */
+    private static List<CustomerData> sheetCustomers(List<CustomerData> customers, int firstPage) {
+        int start = Math.min(firstPage - 1, customers.size());
+        return customers.subList(start, Math.min(start + 4, customers.size()));
+    }
+
+    /**
+     * Options that affect hybrid output; a journal is only resumed when these match
+     */
+    private static String hybridOptions(List<CustomerData> customers, OutputOptions options,
+                                        LeafletTemplate template) {
+        return "hybrid;customers=" + customers.size() + ";customersHash=" + customers.hashCode()
+                + ";template=" + template.fingerprint() + ";" + options.describe();
+    }
+
+    /**
+     * Merge committed chunks into the final output and rename it into place
+     */
+    private static void assembleChunks(File checkpointDir, int chunkCount, PdfWriter writer,
+                                       OutputOptions options) throws IOException {
+        ResourceGovernor.Budget budget = options.getBudget();
+        try (PdfDocument outputDoc = options.createDocument(writer)) {
+            PdfMerger merger = new PdfMerger(outputDoc);
+            for (int i = 0; i < chunkCount; i++) {
+                try (PdfReader reader = new PdfReader(RenderJournal.chunkFile(checkpointDir, i).getAbsolutePath());
+                     PdfDocument chunkDoc = new PdfDocument(reader)) {
+                    merger.merge(chunkDoc, 1, chunkDoc.getNumberOfPages());
+                }
+                budget.checkHeap();
+                if (!options.optimizesOnClose() || budget.getShrinkCount() > 0) {
+                    flushFinishedPages(outputDoc);
+                }
             }
         }
     }
 
     /**
-     * Add leaflets to the center of the page
+     * Add one hybrid sheet: up to 4 bills starting at firstPage at the corners,
+     * and the leaflets of up to 4 customers in the center. Customers the history (which
+     * may be null) knows from earlier orders get their review codes.
      */
-    private static void addLeafletsToCenter(PdfDocument doc, PdfPage page, List<CustomerData> customers, 
-                                          int startIndex, float centerWidth, float centerHeight, 
-                                          float pageWidth, float pageHeight) {
-        try (Document document = new Document(doc)) {
-            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
-            
-            float centerX = (pageWidth - centerWidth) / 2;
-            float centerY = (pageHeight - centerHeight) / 2;
-            
-            for (int i = 0; i < 4 && (startIndex + i) < customers.size(); i++) {
-                CustomerData customer = customers.get(startIndex + i);
-                
-                float leafletWidth = centerWidth / 2 - 10;
-                float leafletHeight = centerHeight / 2 - 10;
-                float x = centerX + (i % 2) * (leafletWidth + 10);
-                float y = centerY + (i / 2) * (leafletHeight + 10);
-                
-                // Create thank you message
-                String thankYouMessage = createThankYouMessage(customer.getName());
-                
-                Paragraph paragraph = new Paragraph()
-                    .setFont(font)
-                    .setFontSize(10)
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .add(new Text(thankYouMessage));
-                
-                // Position the paragraph (this is simplified - in real implementation,
-                // you'd need to properly position and size the text within the rectangle)
-                document.showTextAligned(paragraph, x + leafletWidth/2, y + leafletHeight/2, 
-                                       TextAlignment.CENTER);
+    static void addHybridSheet(PdfDocument inputDoc, PdfDocument outputDoc, LabelFormat format,
+                               int firstPage, List<CustomerData> sheetCustomers,
+                               LeafletTemplate.Renderer leaflets, CustomerHistoryStore history) throws IOException {
+        PageSize a4 = PageSize.A4;
+        float pageWidth = a4.getWidth();
+        float pageHeight = a4.getHeight();
+
+        // Layout: 4 bills at corners, leaflets in center
+        float billWidth = pageWidth * 0.4f;
+        float billHeight = pageHeight * 0.25f;
+        float centerWidth = pageWidth * 0.6f;
+        float centerHeight = pageHeight * 0.5f;
+
+        ProcessingScheduler.yieldPoint();
+        int inputPages = inputDoc.getNumberOfPages();
+        PdfPage outputPage = outputDoc.addNewPage(a4);
+        PdfCanvas canvas = new PdfCanvas(outputPage);
+
+        // Add 4 bills at corners
+        for (int j = 0; j < 4 && (firstPage + j) <= inputPages; j++) {
+            PdfPage inputPage = inputDoc.getPage(firstPage + j);
+            Rectangle cropArea = format.cropArea(inputPage);
+            PdfFormXObject form = createCroppedBill(inputPage, cropArea, outputDoc);
+
+            // Position at corners
+            float x, y;
+            switch (j) {
+                case 0: x = 10; y = pageHeight - billHeight - 10; break; // Top-left
+                case 1: x = pageWidth - billWidth - 10; y = pageHeight - billHeight - 10; break; // Top-right
+                case 2: x = 10; y = 10; break; // Bottom-left
+                case 3: x = pageWidth - billWidth - 10; y = 10; break; // Bottom-right
+                default: continue;
             }
-        } catch (IOException e) {
-            // Handle font creation error
-            e.printStackTrace();
+
+            float scale = Math.min(billWidth / cropArea.getWidth(), billHeight / cropArea.getHeight());
+            canvas.saveState();
+            canvas.concatMatrix(scale, 0, 0, scale, x, y);
+            canvas.addXObjectAt(form, 0, 0);
+            canvas.restoreState();
+        }
+
+        boolean[] repeat = new boolean[sheetCustomers.size()];
+        for (int i = 0; i < repeat.length; i++) {
+            repeat[i] = history != null && history.isRepeatCustomer(sheetCustomers.get(i));
         }
+        leaflets.prepareCodes(sheetCustomers, repeat);
+        addLeafletsToCenter(canvas, leaflets, sheetCustomers, repeat, centerWidth, centerHeight, pageWidth, pageHeight);
     }
 
     /**
-     * Create thank you message for customer
+     * Add leaflets to the center of the page
      */
-    private static String createThankYouMessage(String customerName) {
-        return String.format("Dear %s,\n\n" +
-                "Thank you for choosing us!\n" +
-                "Your order has been dispatched.\n\n" +
-                "For queries, contact us on\n" +
-                "WhatsApp: +91 7860861434\n\n" +
-                "Please rate us 5 stars!\n\n" +
-                "With love,\n" +
-                "Your Seller", customerName);
-    }
-}
\ No newline at end of file
+    private static void addLeafletsToCenter(PdfCanvas canvas, LeafletTemplate.Renderer leaflets,
+                                            List<CustomerData> sheetCustomers, boolean[] repeat, float centerWidth,
+                                            float centerHeight, float pageWidth, float pageHeight) {
+        float centerX = (pageWidth - centerWidth) / 2;
+        float centerY = (pageHeight - centerHeight) / 2;
+        float leafletWidth = centerWidth / 2 - 10;
+        float leafletHeight = centerHeight / 2 - 10;
+
+        for (int i = 0; i < 4 && i < sheetCustomers.size(); i++) {
+            float x = centerX + (i % 2) * (leafletWidth + 10);
+            float y = centerY + (i / 2) * (leafletHeight + 10);
+            leaflets.draw(canvas, new Rectangle(x, y, leafletWidth, leafletHeight),
+                    sheetCustomers.get(i), repeat[i]);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.models.CustomerTable;
+import com.meeshohelper.models.RunSummary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Analysis of label pages seen in earlier runs, keyed by a hash of each page's content
+ * streams and resources. Supplier panel downloads repeat the pending orders of the day
+ * before, so only pages not seen before have their text extracted; a known page's
+ * customers, order fields and crop area are read back instead. Entries are kept least
+ * recently used first, and the oldest are evicted once the file would outgrow its bound.
+ */
+public class PageCache {
+
+    private static final String CACHE_FILE = "pages.bin";
+    // Bump when the fields stored per page change
+    private static final int FILE_VERSION = 1;
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+    // Hex page hash as written by writeUTF
+    private static final int KEY_BYTES = 2 + 64;
+
+    // Keys that point back up the page tree, or at font programs that cannot change the
+    // extracted text once the encoding and ToUnicode map are hashed
+    private static final Set<PdfName> SKIPPED_KEYS = new HashSet<>(Arrays.asList(
+            PdfName.Parent, PdfName.P, PdfName.FontFile, PdfName.FontFile2, PdfName.FontFile3));
+    // Subset tag of an embedded font name, e.g. "ABCDEF+"; it differs between files
+    private static final Pattern SUBSET_TAG = Pattern.compile("^[A-Z]{6}\\+");
+
+    private final Store store;
+    private int hits;
+    private int misses;
+
+    /**
+     * @param directory folder of the cache file, or null to keep nothing
+     * @param maxBytes  bound on the size of the cache file
+     */
+    public PageCache(File directory, long maxBytes) {
+        this(new Store(directory, maxBytes));
+    }
+
+    private PageCache(Store store) {
+        this.store = store;
+    }
+
+    /**
+     * A cache that keeps nothing, so every page is analyzed
+     */
+    public static PageCache none() {
+        return new PageCache(null, 0);
+    }
+
+    /**
+     * The same pages for another run, with hit and miss counts of its own. Runs that
+     * share the pages add to and save one set of entries, so none of them is lost.
+     */
+    public PageCache newRun() {
+        return new PageCache(store);
+    }
+
+    /**
+     * Pages read from the cache by this run
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Pages this run analyzed because the cache did not have them
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Write the cache if pages were added since it was opened or last saved
+     */
+    public void save() throws IOException {
+        store.save();
+    }
+
+    /**
+     * Start reading the pages of an open document through the cache
+     */
+    Pages open(PdfDocument document) {
+        return new Pages(document);
+    }
+
+    private Entry lookup(String pageHash) {
+        return store.lookup(pageHash);
+    }
+
+    private void put(String pageHash, Entry entry) {
+        store.put(pageHash, entry);
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    private static String generation() {
+        return PDFProcessor.ENGINE_VERSION + ";" + LabelFormat.describeRegistry();
+    }
+
+    /**
+     * The entries and their file, shared by every run reading through them
+     */
+    private static class Store {
+        private final File cacheFile;
+        private final long maxBytes;
+        // Access ordered, so iteration starts at the least recently used page
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private long bytes;
+        private boolean dirty;
+
+        Store(File directory, long maxBytes) {
+            this.cacheFile = directory != null ? new File(directory, CACHE_FILE) : null;
+            this.maxBytes = maxBytes;
+            if (cacheFile != null && cacheFile.exists()) {
+                try {
+                    load();
+                } catch (IOException e) {
+                    // A damaged cache only costs analyzing the pages again
+                    entries.clear();
+                    bytes = 0;
+                }
+            }
+        }
+
+        synchronized void save() throws IOException {
+            if (!dirty || cacheFile == null) {
+                return;
+            }
+            File tempFile = File.createTempFile(CACHE_FILE, ".tmp", cacheFile.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(generation());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            } catch (IOException e) {
+                tempFile.delete();
+                throw e;
+            }
+            if (!tempFile.renameTo(cacheFile)) {
+                tempFile.delete();
+                throw new IOException("Cannot write page cache");
+            }
+            dirty = false;
+        }
+
+        synchronized Entry lookup(String pageHash) {
+            return entries.get(pageHash);
+        }
+
+        synchronized void put(String pageHash, Entry entry) {
+            if (cacheFile == null) {
+                return;
+            }
+            Entry replaced = entries.put(pageHash, entry);
+            if (replaced != null) {
+                bytes -= KEY_BYTES + replaced.size;
+            }
+            bytes += KEY_BYTES + entry.size;
+            dirty = true;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= KEY_BYTES + eldest.next().size;
+                eldest.remove();
+            }
+        }
+
+        private void load() throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                // Pages analyzed by another engine or set of formats are analyzed again
+                if (in.readInt() != FILE_VERSION || !in.readUTF().equals(generation())) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String pageHash = in.readUTF();
+                    Entry entry = Entry.read(in);
+                    entries.put(pageHash, entry);
+                    bytes += KEY_BYTES + entry.size;
+                }
+            }
+        }
+    }
+
+    /**
+     * The pages of one document. The document's format is detected once, from its first
+     * page, and a cached page is only used if it was analyzed with that same format.
+     */
+    class Pages {
+        private final PdfDocument document;
+        // Digests of the indirect objects already hashed, such as fonts shared by every page
+        private final Map<PdfIndirectReference, byte[]> objectDigests = new HashMap<>();
+        private final Set<PdfIndirectReference> hashing = new HashSet<>();
+        private LabelFormat format;
+        private String firstPageHash;
+        // First page, when its text was extracted to detect the format
+        private Entry firstPage;
+
+        private Pages(PdfDocument document) {
+            this.document = document;
+        }
+
+        LabelFormat getFormat() throws IOException {
+            if (format != null) {
+                return format;
+            }
+            if (document.getNumberOfPages() == 0) {
+                format = LabelFormat.MEESHO;
+                return format;
+            }
+            firstPageHash = hashPage(1);
+            Entry cached = lookup(firstPageHash);
+            format = cached != null ? LabelFormat.forName(cached.detectedFormat) : null;
+            if (format == null) {
+                PdfPage page = document.getPage(1);
+                String text = PdfTextExtractor.getTextFromPage(page);
+                format = LabelFormat.detect(text);
+                firstPage = Entry.analyze(page, text, format);
+                count(false);
+                put(firstPageHash, firstPage);
+            }
+            return format;
+        }
+
+        /**
+         * Analysis of a page, from the cache when the page was seen before
+         */
+        Entry analyze(int pageNumber) throws IOException {
+            LabelFormat documentFormat = getFormat();
+            if (pageNumber == 1 && firstPage != null) {
+                return firstPage;
+            }
+            String pageHash = pageNumber == 1 ? firstPageHash : hashPage(pageNumber);
+            Entry entry = lookup(pageHash);
+            if (entry != null && entry.format.equals(documentFormat.getName())) {
+                count(true);
+                return entry;
+            }
+            PdfPage page = document.getPage(pageNumber);
+            entry = Entry.analyze(page, PdfTextExtractor.getTextFromPage(page), documentFormat);
+            count(false);
+            put(pageHash, entry);
+            return entry;
+        }
+
+        /**
+         * Hash of everything text extraction and cropping read from a page: its boxes,
+         * content streams and resources, with form XObjects and fonts followed down
+         */
+        private String hashPage(int pageNumber) throws IOException {
+            PdfPage page = document.getPage(pageNumber);
+            MessageDigest digest = newDigest();
+            updateRectangle(digest, page.getMediaBox());
+            updateRectangle(digest, page.getCropBox());
+            updateInt(digest, page.getRotation());
+            hashObject(digest, page.getPdfObject().get(PdfName.Contents));
+            hashObject(digest, page.getResources().getPdfObject());
+            return FileHashes.toHex(digest.digest());
+        }
+
+        private void hashObject(MessageDigest digest, PdfObject object) throws IOException {
+            if (object != null && object.isIndirectReference()) {
+                object = ((PdfIndirectReference) object).getRefersTo();
+            }
+            PdfIndirectReference reference = object != null ? object.getIndirectReference() : null;
+            if (reference == null) {
+                hashDirect(digest, object);
+                return;
+            }
+            byte[] known = objectDigests.get(reference);
+            if (known == null) {
+                if (!hashing.add(reference)) {
+                    // A reference back to an object still being hashed
+                    digest.update((byte) 'c');
+                    return;
+                }
+                MessageDigest objectDigest = newDigest();
+                hashDirect(objectDigest, object);
+                known = objectDigest.digest();
+                hashing.remove(reference);
+                objectDigests.put(reference, known);
+            }
+            digest.update(known);
+        }
+
+        private void hashDirect(MessageDigest digest, PdfObject object) throws IOException {
+            if (object == null) {
+                digest.update((byte) 'n');
+                return;
+            }
+            switch (object.getType()) {
+                case PdfObject.DICTIONARY:
+                case PdfObject.STREAM:
+                    PdfDictionary dictionary = (PdfDictionary) object;
+                    List<PdfName> keys = new ArrayList<>(dictionary.keySet());
+                    Collections.sort(keys);
+                    digest.update((byte) 'd');
+                    updateInt(digest, keys.size());
+                    for (PdfName key : keys) {
+                        updateString(digest, key.getValue());
+                        if (SKIPPED_KEYS.contains(key)) {
+                            continue;
+                        }
+                        PdfObject value = dictionary.get(key);
+                        if (PdfName.BaseFont.equals(key) && value instanceof PdfName) {
+                            updateString(digest, SUBSET_TAG.matcher(((PdfName) value).getValue()).replaceFirst(""));
+                        } else {
+                            hashObject(digest, value);
+                        }
+                    }
+                    // Image pixels change neither the text nor the crop, only the image dictionary is hashed
+                    if (object.isStream() && !PdfName.Image.equals(dictionary.getAsName(PdfName.Subtype))) {
+                        byte[] data = ((PdfStream) object).getBytes(false);
+                        updateInt(digest, data.length);
+                        digest.update(data);
+                    }
+                    break;
+                case PdfObject.ARRAY:
+                    PdfArray array = (PdfArray) object;
+                    digest.update((byte) 'a');
+                    updateInt(digest, array.size());
+                    for (int i = 0; i < array.size(); i++) {
+                        hashObject(digest, array.get(i));
+                    }
+                    break;
+                case PdfObject.NAME:
+                    digest.update((byte) '/');
+                    updateString(digest, ((PdfName) object).getValue());
+                    break;
+                case PdfObject.STRING:
+                    byte[] value = ((PdfString) object).getValueBytes();
+                    digest.update((byte) 's');
+                    updateInt(digest, value.length);
+                    digest.update(value);
+                    break;
+                case PdfObject.NUMBER:
+                    digest.update((byte) '#');
+                    updateString(digest, Double.toString(((PdfNumber) object).getValue()));
+                    break;
+                default:
+                    // Booleans and null
+                    digest.update((byte) '?');
+                    updateString(digest, object.toString());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * What the analysis stage reads from one label page
+     */
+    static class Entry {
+        // Format detected from this page's own text, used when it is the first page
+        final String detectedFormat;
+        // Format the page was analyzed with, that of its document
+        final String format;
+        final List<CustomerData> customers;
+        final String orderId;
+        final String pincode;
+        final String courier;
+        final List<String> skus;
+        private final Rectangle cropArea;
+        // Bytes the entry takes in the cache file
+        private final int size;
+
+        private Entry(String detectedFormat, String format, List<CustomerData> customers, String orderId,
+                      String pincode, String courier, List<String> skus, Rectangle cropArea) throws IOException {
+            this.detectedFormat = detectedFormat;
+            this.format = format;
+            this.customers = customers;
+            this.orderId = orderId;
+            this.pincode = pincode;
+            this.courier = courier;
+            this.skus = skus;
+            this.cropArea = cropArea;
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            write(new DataOutputStream(encoded));
+            this.size = encoded.size();
+        }
+
+        static Entry analyze(PdfPage page, String text, LabelFormat format) throws IOException {
+            CustomerTable pageCustomers = new CustomerTable();
+            format.addPageCustomers(text, pageCustomers);
+            List<CustomerData> customers = new ArrayList<>(pageCustomers.size());
+            for (CustomerData customer : pageCustomers) {
+                customers.add(new CustomerData(customer.getName(), customer.getAddress(), customer.getOrderInfo()));
+            }
+            return new Entry(LabelFormat.detect(text).getName(), format.getName(), customers,
+                    format.extractOrderId(text), format.extractPincode(text), LabelFormat.extractCourier(text),
+                    format.extractSkus(text), format.cropArea(page));
+        }
+
+        /**
+         * Add the page's customers to a table, as {@link LabelFormat#addPageCustomers} does
+         *
+         * @return row of the first customer added, or -1 if the page names none
+         */
+        int addCustomers(CustomerTable table) {
+            int firstRow = -1;
+            for (CustomerData customer : customers) {
+                int row = table.add(customer.getName(), customer.getAddress(), customer.getOrderInfo());
+                if (firstRow < 0) {
+                    firstRow = row;
+                }
+            }
+            return firstRow;
+        }
+
+        void addOrder(RunSummary.Builder orders) {
+            orders.addPage(orderId, pincode, skus);
+        }
+
+        Rectangle getCropArea() {
+            return cropArea.clone();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(detectedFormat);
+            out.writeUTF(format);
+            out.writeInt(customers.size());
+            for (CustomerData customer : customers) {
+                writeNullable(out, customer.getName());
+                writeNullable(out, customer.getAddress());
+                writeNullable(out, customer.getOrderInfo());
+            }
+            writeNullable(out, orderId);
+            writeNullable(out, pincode);
+            writeNullable(out, courier);
+            out.writeInt(skus.size());
+            for (String sku : skus) {
+                out.writeUTF(sku);
+            }
+            out.writeFloat(cropArea.getX());
+            out.writeFloat(cropArea.getY());
+            out.writeFloat(cropArea.getWidth());
+            out.writeFloat(cropArea.getHeight());
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String detectedFormat = in.readUTF();
+            String format = in.readUTF();
+            int customerCount = in.readInt();
+            List<CustomerData> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                customers.add(new CustomerData(readNullable(in), readNullable(in), readNullable(in)));
+            }
+            String orderId = readNullable(in);
+            String pincode = readNullable(in);
+            String courier = readNullable(in);
+            int skuCount = in.readInt();
+            List<String> skus = new ArrayList<>(skuCount);
+            for (int i = 0; i < skuCount; i++) {
+                skus.add(in.readUTF());
+            }
+            Rectangle cropArea = new Rectangle(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+            return new Entry(detectedFormat, format, customers, orderId, pincode, courier, skus, cropArea);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    private static void updateRectangle(MessageDigest digest, Rectangle rectangle) {
+        updateString(digest, rectangle.getX() + "," + rectangle.getY() + ","
+                + rectangle.getWidth() + "," + rectangle.getHeight());
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static void updateString(MessageDigest digest, String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(digest, encoded.length);
+        digest.update(encoded);
+    }
+}
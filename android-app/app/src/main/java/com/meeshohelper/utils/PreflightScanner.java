@@ -0,0 +1,106 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fast pre-flight scan of a picked PDF. Only the trailer, xref and page tree are
+ * read, plus the text of the first page to recognise the label format; no other
+ * content stream is decoded, so the scan stays well under a second even for very
+ * large files.
+ */
+public class PreflightScanner {
+
+    // Page dictionaries sampled for sizes; the page count itself comes from the page tree
+    private static final int MAX_SAMPLED_PAGES = 50;
+
+    /**
+     * Result of a pre-flight scan
+     */
+    public static class Report {
+        private final long fileSize;
+        private final int pageCount;
+        private final Map<String, Integer> pageSizes;
+        private final LabelFormat format;
+
+        Report(long fileSize, int pageCount, Map<String, Integer> pageSizes, LabelFormat format) {
+            this.fileSize = fileSize;
+            this.pageCount = pageCount;
+            this.pageSizes = pageSizes;
+            this.format = format;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public int getPageCount() {
+            return pageCount;
+        }
+
+        /**
+         * Sampled page sizes in points ("595x842") with how many sampled pages had each
+         */
+        public Map<String, Integer> getPageSizes() {
+            return pageSizes;
+        }
+
+        /**
+         * Label format recognised on the first page, or null if none of the registered ones
+         */
+        public LabelFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * Whether the labels are in a format we know where to crop the bill from
+         */
+        public boolean isSupportedTemplate() {
+            return format != null;
+        }
+
+        /**
+         * One-line summary for the file card
+         */
+        public String getSummary() {
+            String sizes = pageSizes.size() == 1 ? pageSizes.keySet().iterator().next() + " pt" : "mixed sizes";
+            return String.format(Locale.getDefault(), "%d pages · %s · %s", pageCount, sizes,
+                    format != null ? format.getName() + " labels" : "not a recognised label layout");
+        }
+    }
+
+    /**
+     * Scan a PDF without reading any page content
+     */
+    public static Report scan(File pdfFile) throws IOException {
+        try (PdfReader reader = new PdfReader(pdfFile.getAbsolutePath());
+             PdfDocument pdfDoc = new PdfDocument(reader)) {
+
+            int pageCount = pdfDoc.getNumberOfPages();
+            Map<String, Integer> pageSizes = new LinkedHashMap<>();
+
+            // Sample pages evenly across the document
+            int step = Math.max(1, pageCount / MAX_SAMPLED_PAGES);
+            for (int i = 1; i <= pageCount; i += step) {
+                Rectangle size = pdfDoc.getPage(i).getPageSize();
+                String key = Math.round(size.getWidth()) + "x" + Math.round(size.getHeight());
+                Integer count = pageSizes.get(key);
+                pageSizes.put(key, count == null ? 1 : count + 1);
+            }
+
+            // Formats crop by fractions of the page, so any page size is fine once the format is known
+            LabelFormat format = pageCount > 0
+                    ? LabelFormat.recognize(PdfTextExtractor.getTextFromPage(pdfDoc.getFirstPage()))
+                    : null;
+            return new Report(pdfFile.length(), pageCount, pageSizes, format);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.meeshohelper.utils;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * App-wide scheduler for all PDF work. Tasks run in priority lanes, and long jobs
+ * call {@link #yieldPoint()} at page boundaries: when a task of a higher lane is
+ * waiting, it is run right there on the same worker before the lower-priority job
+ * continues, so foreground work never queues behind background work.
+ */
+public class ProcessingScheduler {
+
+    /**
+     * Priority lanes, most urgent first
+     */
+    public enum Priority {
+        INTERACTIVE,   // rendering the user is waiting for
+        USER_VISIBLE,  // extraction and scans whose result is shown on screen
+        BACKGROUND     // speculative work, cache warming and cleanup
+    }
+
+    private static volatile ProcessingScheduler instance;
+
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = new ThreadLocal<>();
+    // Task running on this thread, so a nested run can tell whether it was cancelled meanwhile
+    private static final ThreadLocal<PrioritizedTask<?>> CURRENT_TASK = new ThreadLocal<>();
+
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int parallelism;
+
+    private ProcessingScheduler(int parallelism) {
+        this.parallelism = parallelism;
+        for (int i = 0; i < parallelism; i++) {
+            Thread worker = new Thread(this::workLoop, "pdf-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Get the app-wide scheduler, creating it with a default size if needed
+     */
+    public static ProcessingScheduler getInstance() {
+        if (instance == null) {
+            configure(recommendedParallelism(Runtime.getRuntime().availableProcessors(), false, false));
+        }
+        return instance;
+    }
+
+    /**
+     * Create the app-wide scheduler with the given number of workers. Only the first
+     * call has an effect; it is made once at startup from the device state.
+     */
+    public static synchronized void configure(int parallelism) {
+        if (instance == null) {
+            instance = new ProcessingScheduler(Math.max(1, parallelism));
+        }
+    }
+
+    /**
+     * Worker count for this device: one per core, fewer on low-RAM devices and
+     * when the device reports thermal throttling
+     */
+    public static int recommendedParallelism(int cores, boolean lowRam, boolean throttled) {
+        int workers = Math.max(2, cores);
+        if (lowRam) {
+            workers = Math.min(workers, 2);
+        }
+        if (throttled) {
+            workers = Math.max(1, workers / 2);
+        }
+        return workers;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Submit a task to a priority lane
+     */
+    public <T> Future<T> submit(Priority priority, Callable<T> task) {
+        PrioritizedTask<T> prioritized = new PrioritizedTask<>(task, priority, sequence.getAndIncrement());
+        queue.add(prioritized);
+        return prioritized;
+    }
+
+    /**
+     * Submit a task without a result to a priority lane
+     */
+    public Future<?> submit(Priority priority, Runnable task) {
+        return submit(priority, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run body for every index below count on the calling thread and on idle workers, in
+     * the caller's lane. Helpers that have not started by the time the caller runs out of
+     * indexes are withdrawn, so this never waits on a queue the caller may be holding up.
+     */
+    public void parallelFor(int count, IntConsumer body) throws InterruptedIOException {
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable loop = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < count) {
+                try {
+                    if (failure.get() == null) {
+                        body.accept(index);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        Priority current = CURRENT_PRIORITY.get();
+        Priority lane = current != null ? current : Priority.USER_VISIBLE;
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(parallelism, count); i++) {
+            helpers.add(submit(lane, loop));
+        }
+        loop.run();
+        for (Future<?> helper : helpers) {
+            if (helper.cancel(false)) {
+                queue.remove(helper);
+            }
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Processing cancelled");
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Page-boundary check for long jobs. Runs any waiting task of a higher lane
+     * before returning, and aborts the job if it was cancelled.
+     */
+    public static void yieldPoint() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Processing cancelled");
+        }
+
+        ProcessingScheduler scheduler = instance;
+        Priority current = CURRENT_PRIORITY.get();
+        if (scheduler == null || current == null) {
+            return;
+        }
+
+        Runnable next;
+        while ((next = scheduler.pollHigherThan(current)) != null) {
+            scheduler.runTask(next);
+        }
+    }
+
+    private synchronized Runnable pollHigherThan(Priority current) {
+        Runnable head = queue.peek();
+        // Workers take without this lock, so the head is only ours if removing it succeeds;
+        // polling instead could hand back a lower-lane task queued behind it
+        if (head instanceof PrioritizedTask
+                && ((PrioritizedTask<?>) head).priority.ordinal() < current.ordinal()
+                && queue.remove(head)) {
+            return head;
+        }
+        return null;
+    }
+
+    private void workLoop() {
+        while (true) {
+            try {
+                runTask(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        Priority previous = CURRENT_PRIORITY.get();
+        PrioritizedTask<?> outer = CURRENT_TASK.get();
+        Thread thread = Thread.currentThread();
+        int previousThreadPriority = thread.getPriority();
+        boolean wasInterrupted = thread.isInterrupted();
+
+        PrioritizedTask<?> prioritized = (PrioritizedTask<?>) task;
+        CURRENT_PRIORITY.set(prioritized.priority);
+        CURRENT_TASK.set(prioritized);
+        thread.setPriority(prioritized.priority == Priority.BACKGROUND ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY);
+        try {
+            task.run();
+        } finally {
+            // A cancelled task may leave the interrupt flag set; don't leak it to the next task.
+            // A task run nested in yieldPoint() hands back the flag as the outer task had it,
+            // or set if the outer task was cancelled while the nested one ran.
+            Thread.interrupted();
+            if (outer != null && (wasInterrupted || outer.isCancelled())) {
+                thread.interrupt();
+            }
+            thread.setPriority(previousThreadPriority);
+            CURRENT_PRIORITY.set(previous);
+            CURRENT_TASK.set(outer);
+        }
+    }
+
+    /**
+     * Queue entry ordered by lane, then by submission order within a lane
+     */
+    private static class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+        private final Priority priority;
+        private final long sequence;
+
+        PrioritizedTask(Callable<T> callable, Priority priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
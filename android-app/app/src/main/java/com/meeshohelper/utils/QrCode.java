@@ -0,0 +1,140 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.barcodes.exceptions.WriterException;
+import com.itextpdf.barcodes.qrcode.EncodeHintType;
+import com.itextpdf.barcodes.qrcode.ErrorCorrectionLevel;
+import com.itextpdf.barcodes.qrcode.QRCodeWriter;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An encoded QR code, kept as the rectangles that cover its dark modules. Runs of
+ * modules in a row are merged, and identical runs in the rows below are merged into
+ * the same rectangle, so a code is drawn as a few hundred integer rectangles in one
+ * fill instead of one rectangle per module or an image.
+ */
+public class QrCode {
+
+    // Module value the encoder uses for dark modules
+    private static final byte DARK = 0;
+
+    // Modules per side, including the light margin scanners need around the code
+    private final int modules;
+    // x, y, width, height in modules, y counted up from the bottom like PDF space
+    private final int[] rectangles;
+
+    private QrCode(int modules, int[] rectangles) {
+        this.modules = modules;
+        this.rectangles = rectangles;
+    }
+
+    /**
+     * Encode a payload such as a link
+     *
+     * @throws IllegalArgumentException if the payload is too long for a QR code
+     */
+    public static QrCode encode(String payload) {
+        Map<EncodeHintType, Object> hints = new HashMap<>();
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+        byte[][] matrix;
+        try {
+            // Size 0 asks for one unit per module
+            matrix = new QRCodeWriter().encode(payload, 0, 0, hints).getArray();
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Cannot encode QR code: " + e.getMessage(), e);
+        }
+        int size = matrix.length;
+
+        List<int[]> merged = new ArrayList<>();
+        boolean[][] covered = new boolean[size][size];
+        for (int row = 0; row < size; row++) {
+            int x = 0;
+            while (x < size) {
+                if (matrix[row][x] != DARK || covered[row][x]) {
+                    x++;
+                    continue;
+                }
+                int end = x;
+                while (end < size && matrix[row][end] == DARK && !covered[row][end]) {
+                    end++;
+                }
+                // Grow the run downwards while the next row has exactly the same run
+                int rows = 1;
+                while (row + rows < size && isSameRun(matrix[row + rows], covered[row + rows], x, end)) {
+                    rows++;
+                }
+                for (int r = row; r < row + rows; r++) {
+                    for (int c = x; c < end; c++) {
+                        covered[r][c] = true;
+                    }
+                }
+                merged.add(new int[]{x, size - row - rows, end - x, rows});
+                x = end;
+            }
+        }
+
+        int[] rectangles = new int[merged.size() * 4];
+        for (int i = 0; i < merged.size(); i++) {
+            System.arraycopy(merged.get(i), 0, rectangles, i * 4, 4);
+        }
+        return new QrCode(size, rectangles);
+    }
+
+    private static boolean isSameRun(byte[] row, boolean[] covered, int start, int end) {
+        if ((start > 0 && row[start - 1] == DARK && !covered[start - 1])
+                || (end < row.length && row[end] == DARK && !covered[end])) {
+            return false;
+        }
+        for (int c = start; c < end; c++) {
+            if (row[c] != DARK || covered[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Width and height in modules, quiet zone included
+     */
+    public int getModules() {
+        return modules;
+    }
+
+    /**
+     * Draw the code as vector paths filling a square box with the current fill color
+     */
+    public void draw(PdfCanvas canvas, Rectangle square) {
+        float scale = Math.min(square.getWidth(), square.getHeight()) / modules;
+        canvas.saveState();
+        canvas.concatMatrix(scale, 0, 0, scale, square.getX(), square.getY());
+        addPath(canvas);
+        canvas.fill();
+        canvas.restoreState();
+    }
+
+    /**
+     * The code as a form XObject one unit per module, for codes shown many times in a document
+     */
+    public PdfFormXObject toFormXObject(PdfDocument document) {
+        PdfFormXObject form = new PdfFormXObject(new Rectangle(modules, modules));
+        PdfCanvas canvas = new PdfCanvas(form, document);
+        addPath(canvas);
+        canvas.fill();
+        canvas.release();
+        return form;
+    }
+
+    private void addPath(PdfCanvas canvas) {
+        for (int i = 0; i < rectangles.length; i += 4) {
+            canvas.rectangle(rectangles[i], rectangles[i + 1], rectangles[i + 2], rectangles[i + 3]);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.meeshohelper.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Progress journal of a checkpointed rendering job. Lives in the job's checkpoint
+ * directory together with the completed output chunks, so an interrupted job can
+ * be resumed from the last committed chunk instead of page 1.
+ */
+public class RenderJournal {
+
+    private static final String JOURNAL_FILE = "journal.properties";
+    private static final String CHUNK_PREFIX = "chunk_";
+
+    private final String inputHash;
+    private final String options;
+    private int lastCompletedPage;
+    private int chunkCount;
+
+    public RenderJournal(String inputHash, String options) {
+        this.inputHash = inputHash;
+        this.options = options;
+    }
+
+    /**
+     * Load the journal from a checkpoint directory, or null if there is none
+     */
+    public static RenderJournal load(File checkpointDir) {
+        File journalFile = new File(checkpointDir, JOURNAL_FILE);
+        if (!journalFile.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(journalFile)) {
+            properties.load(in);
+            RenderJournal journal = new RenderJournal(
+                    properties.getProperty("inputHash"), properties.getProperty("options"));
+            journal.lastCompletedPage = Integer.parseInt(properties.getProperty("lastCompletedPage", "0"));
+            journal.chunkCount = Integer.parseInt(properties.getProperty("chunkCount", "0"));
+            return journal;
+        } catch (IOException | NumberFormatException e) {
+            // A damaged journal is treated like no journal: the job starts over
+            return null;
+        }
+    }
+
+    /**
+     * Persist the journal atomically, so a crash never leaves it half written
+     */
+    public void save(File checkpointDir) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("inputHash", inputHash);
+        properties.setProperty("options", options);
+        properties.setProperty("lastCompletedPage", String.valueOf(lastCompletedPage));
+        properties.setProperty("chunkCount", String.valueOf(chunkCount));
+
+        File tempFile = new File(checkpointDir, JOURNAL_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        if (!tempFile.renameTo(new File(checkpointDir, JOURNAL_FILE))) {
+            throw new IOException("Cannot write render journal");
+        }
+    }
+
+    /**
+     * Whether this journal belongs to the same input file and options
+     */
+    public boolean matches(String inputHash, String options) {
+        return this.inputHash != null && this.inputHash.equals(inputHash)
+                && this.options != null && this.options.equals(options);
+    }
+
+    /**
+     * Record a committed chunk that ends at the given input page
+     */
+    public void commitChunk(int lastPage) {
+        lastCompletedPage = lastPage;
+        chunkCount++;
+    }
+
+    public int getLastCompletedPage() {
+        return lastCompletedPage;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * File of the n-th (zero based) output chunk
+     */
+    public static File chunkFile(File checkpointDir, int index) {
+        return new File(checkpointDir, String.format(Locale.US, "%s%05d.pdf", CHUNK_PREFIX, index));
+    }
+
+    /**
+     * Remove the journal and every chunk from a checkpoint directory
+     */
+    public static void clear(File checkpointDir) {
+        File[] files = checkpointDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    file.delete();
+                }
+            }
+        }
+    }
+}
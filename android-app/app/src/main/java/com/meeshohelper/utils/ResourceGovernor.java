@@ -0,0 +1,164 @@
+package com.meeshohelper.utils;
+
+import java.util.Locale;
+
+/**
+ * Chooses worker count, page window and I/O buffer sizes from the device's cores
+ * and heap, so a run neither crawls on a large machine nor runs out of memory on
+ * a 2 GB phone. Each run gets a {@link Budget}; when the heap runs low or the
+ * system asks the app to trim memory, running budgets shrink their window and
+ * flush output pages more often.
+ */
+public class ResourceGovernor {
+
+    // Heap a worker may need for one document in flight
+    private static final long HEAP_PER_WORKER = 48L * 1024 * 1024;
+
+    // A budget shrinks when less than this share of the maximum heap is left
+    private static final double LOW_HEAP_FRACTION = 0.25;
+
+    // Smallest page window; a multiple of 4 so a window always holds whole sheets
+    private static final int MIN_WINDOW_PAGES = 20;
+
+    private static final ResourceGovernor INSTANCE = new ResourceGovernor();
+
+    // Bumped on every trim request, so each running budget reacts to it once
+    private volatile int pressureGeneration;
+
+    public static ResourceGovernor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Worker count for the shared scheduler: one per core as far as the heap allows
+     * a document per worker, and fewer on low-RAM or throttled devices
+     */
+    public static int recommendedWorkers(int cores, long maxMemory, boolean lowRam, boolean throttled) {
+        int workers = ProcessingScheduler.recommendedParallelism(cores, lowRam, throttled);
+        return (int) Math.max(1, Math.min(workers, maxMemory / HEAP_PER_WORKER));
+    }
+
+    /**
+     * Called when the host runs low on memory; running budgets shrink their page windows
+     */
+    public void onMemoryPressure() {
+        pressureGeneration++;
+    }
+
+    /**
+     * Budget for a new run on this device
+     */
+    public Budget newBudget() {
+        return new Budget(this, ProcessingScheduler.getInstance().getParallelism(), Runtime.getRuntime().maxMemory());
+    }
+
+    /**
+     * Resource parameters of one run. Not thread-safe; a run uses its budget from one thread.
+     */
+    public static class Budget {
+        private final ResourceGovernor governor;
+        private final int workers;
+        private final long maxMemory;
+        private final int bufferSize;
+        private int windowPages;
+        private int flushIntervalSheets;
+        private int seenPressureGeneration;
+        private int sheetsSinceFlush;
+        private int pagesUntilHeapCheck;
+        private int shrinkCount;
+
+        Budget(ResourceGovernor governor, int workers, long maxMemory) {
+            this.governor = governor;
+            this.workers = workers;
+            this.maxMemory = maxMemory;
+            this.seenPressureGeneration = governor.pressureGeneration;
+
+            // Sized from the heap limit rather than the current headroom, so the page flushes and
+            // chunk boundaries, and with them deterministic output, only change when a run shrinks.
+            // The first checkHeap() call shrinks a budget that starts with little headroom.
+            if (maxMemory >= 512L * 1024 * 1024) {
+                windowPages = 400;
+                flushIntervalSheets = 32;
+                bufferSize = 1 << 20;
+            } else if (maxMemory >= 192L * 1024 * 1024) {
+                windowPages = 200;
+                flushIntervalSheets = 8;
+                bufferSize = 256 * 1024;
+            } else {
+                windowPages = 40;
+                flushIntervalSheets = 1;
+                bufferSize = 64 * 1024;
+            }
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * Input pages to keep in flight before committing, e.g. per hybrid checkpoint chunk;
+         * always a multiple of 4
+         */
+        public int getWindowPages() {
+            return windowPages;
+        }
+
+        /**
+         * Buffer size for output files
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public int getShrinkCount() {
+            return shrinkCount;
+        }
+
+        /**
+         * Page-boundary check: shrinks the window and flushes every sheet when the heap is
+         * low or memory was trimmed since the last check
+         */
+        public void checkHeap() {
+            int generation = governor.pressureGeneration;
+            boolean trimmed = generation != seenPressureGeneration;
+            seenPressureGeneration = generation;
+            // After a shrink, give the collector a window's worth of pages before judging the heap again
+            if (!trimmed && --pagesUntilHeapCheck > 0) {
+                return;
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            long headroom = maxMemory - (runtime.totalMemory() - runtime.freeMemory());
+
+            if ((trimmed || headroom < maxMemory * LOW_HEAP_FRACTION)
+                    && (windowPages > MIN_WINDOW_PAGES || flushIntervalSheets > 1)) {
+                windowPages = Math.max(MIN_WINDOW_PAGES, windowPages / 2 / 4 * 4);
+                flushIntervalSheets = 1;
+                sheetsSinceFlush = flushIntervalSheets;
+                pagesUntilHeapCheck = windowPages;
+                shrinkCount++;
+            }
+        }
+
+        /**
+         * Count a finished output sheet
+         *
+         * @return true when the finished sheets should be flushed to the writer now
+         */
+        public boolean sheetCompleted() {
+            if (++sheetsSinceFlush >= flushIntervalSheets) {
+                sheetsSinceFlush = 0;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Parameters chosen for the run, for the run statistics
+         */
+        public String describe() {
+            return String.format(Locale.US, "workers=%d;window=%d;buffer=%d;flush=%d;shrinks=%d;maxHeapMb=%d",
+                    workers, windowPages, bufferSize, flushIntervalSheets, shrinkCount, maxMemory / (1024 * 1024));
+        }
+    }
+}
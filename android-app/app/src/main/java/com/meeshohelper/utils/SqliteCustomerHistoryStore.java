@@ -0,0 +1,115 @@
+package com.meeshohelper.utils;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.meeshohelper.models.CustomerData;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Customer history in an on-device SQLite database, indexed on normalized name and
+ * pincode, and on order id
+ */
+public class SqliteCustomerHistoryStore extends CustomerHistoryStore {
+
+    private static final String DATABASE_NAME = "customer_history.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private final SQLiteOpenHelper helper;
+    private SQLiteStatement firstOrderQuery;
+
+    public SqliteCustomerHistoryStore(Context context) {
+        helper = new SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                db.execSQL("CREATE TABLE orders ("
+                        + "id INTEGER PRIMARY KEY, "
+                        + "order_id TEXT NOT NULL, "
+                        + "name_key TEXT NOT NULL, "
+                        + "pincode TEXT NOT NULL, "
+                        + "name TEXT, "
+                        + "address TEXT, "
+                        + "seen_at INTEGER NOT NULL)");
+                // A known id is stored only once
+                db.execSQL("CREATE UNIQUE INDEX idx_orders_order_id ON orders(order_id) WHERE order_id <> ''");
+                createCustomerIndexes(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+                if (oldVersion < 2) {
+                    db.execSQL("DROP INDEX IF EXISTS idx_orders_name_key");
+                    db.execSQL("DROP INDEX IF EXISTS idx_orders_pincode");
+                    // Reruns stored their orders without an id again; keep the first of each
+                    db.execSQL("DELETE FROM orders WHERE order_id = '' AND id NOT IN ("
+                            + "SELECT MIN(id) FROM orders WHERE order_id = '' GROUP BY name_key, pincode, address)");
+                    createCustomerIndexes(db);
+                }
+            }
+        };
+        setOrderCount((int) DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "orders"));
+    }
+
+    private static void createCustomerIndexes(SQLiteDatabase db) {
+        // Repeat checks look customers up by name and pincode; the row id orders their orders
+        db.execSQL("CREATE INDEX idx_orders_customer ON orders(name_key, pincode)");
+        // An order without an id is stored once per customer and address, so reruns add nothing
+        db.execSQL("CREATE UNIQUE INDEX idx_orders_without_id ON orders(name_key, pincode, address) "
+                + "WHERE order_id = ''");
+    }
+
+    @Override
+    protected String findFirstOrder(String nameKey, String pincode) {
+        if (firstOrderQuery == null) {
+            firstOrderQuery = helper.getReadableDatabase().compileStatement(
+                    "SELECT order_id FROM orders WHERE name_key = ? AND pincode = ? ORDER BY id LIMIT 1");
+        }
+        firstOrderQuery.bindString(1, nameKey);
+        firstOrderQuery.bindString(2, pincode);
+        try {
+            return firstOrderQuery.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void insertBatch(List<CustomerData> customers) throws IOException {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO orders "
+                + "(order_id, name_key, pincode, name, address, seen_at) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (CustomerData customer : customers) {
+                insert.bindString(1, customer.getOrderInfo() != null ? customer.getOrderInfo() : "");
+                insert.bindString(2, nameKey(customer));
+                insert.bindString(3, pincode(customer));
+                insert.bindString(4, customer.getName() != null ? customer.getName() : "");
+                insert.bindString(5, customer.getAddress() != null ? customer.getAddress() : "");
+                insert.bindLong(6, now);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            throw new IOException("Could not record customer history", e);
+        } finally {
+            db.endTransaction();
+        }
+        setOrderCount((int) DatabaseUtils.queryNumEntries(db, "orders"));
+    }
+
+    @Override
+    public void close() {
+        if (firstOrderQuery != null) {
+            firstOrderQuery.close();
+        }
+        helper.close();
+    }
+}
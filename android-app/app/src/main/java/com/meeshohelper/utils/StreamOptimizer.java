@@ -0,0 +1,181 @@
+package com.meeshohelper.utils;
+
+import com.itextpdf.kernel.geom.Matrix;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Shrinks the streams of an output document before it is written. Streams copied
+ * from input PDFs keep the compression of the tool that made them, so they are
+ * deflated again at the highest level. JPEG images drawn at more than the target
+ * resolution are decoded at a reduced size and re-encoded by the host's
+ * {@link JpegResampler}; without one they are kept as they are.
+ */
+public class StreamOptimizer {
+
+    private static final int JPEG_QUALITY = 80;
+
+    private static volatile JpegResampler jpegResampler;
+
+    /**
+     * Set the image codec used to downsample JPEGs, or null to keep them as they are
+     */
+    public static void setJpegResampler(JpegResampler resampler) {
+        jpegResampler = resampler;
+    }
+
+    /**
+     * Deflate every Flate stream of a document that is still open for writing at the
+     * best level, including 1-bit images such as barcodes
+     */
+    public static void recompressStreams(PdfDocument document) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for (int i = 1; i < document.getNumberOfPdfObjects(); i++) {
+                PdfObject object = document.getPdfObject(i);
+                if (object instanceof PdfStream && !object.isFlushed()) {
+                    recompress((PdfStream) object, deflater);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reduce JPEG images drawn on the pages of a document that is still open for
+     * writing to the target resolution
+     */
+    public static void downsampleImages(PdfDocument document, float targetDpi) {
+        Map<PdfStream, float[]> displaySizes = measureDisplaySizes(document);
+        for (Map.Entry<PdfStream, float[]> entry : displaySizes.entrySet()) {
+            PdfStream image = entry.getKey();
+            if (PdfName.DCTDecode.equals(image.get(PdfName.Filter))) {
+                float[] size = entry.getValue();
+                downsampleJpeg(image, Math.round(size[0] / 72f * targetDpi), Math.round(size[1] / 72f * targetDpi));
+            }
+        }
+    }
+
+    /**
+     * Largest width and height, in points, at which each image is drawn on any page
+     */
+    private static Map<PdfStream, float[]> measureDisplaySizes(PdfDocument document) {
+        Map<PdfStream, float[]> sizes = new IdentityHashMap<>();
+        IEventListener listener = new IEventListener() {
+            @Override
+            public void eventOccurred(IEventData data, EventType type) {
+                ImageRenderInfo info = (ImageRenderInfo) data;
+                if (info.isInline()) {
+                    return;
+                }
+                Matrix ctm = info.getImageCtm();
+                float width = (float) Math.hypot(ctm.get(Matrix.I11), ctm.get(Matrix.I12));
+                float height = (float) Math.hypot(ctm.get(Matrix.I21), ctm.get(Matrix.I22));
+                float[] size = sizes.get(info.getImage().getPdfObject());
+                if (size == null) {
+                    sizes.put(info.getImage().getPdfObject(), new float[]{width, height});
+                } else {
+                    size[0] = Math.max(size[0], width);
+                    size[1] = Math.max(size[1], height);
+                }
+            }
+
+            @Override
+            public Set<EventType> getSupportedEvents() {
+                return Collections.singleton(EventType.RENDER_IMAGE);
+            }
+        };
+
+        for (int i = 1; i <= document.getNumberOfPages(); i++) {
+            // Pages flushed early under memory pressure are already written and keep their images
+            PdfPage page = document.getPage(i);
+            if (!page.isFlushed()) {
+                new PdfCanvasProcessor(listener).processPageContent(page);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Re-deflate a stream that uses Flate without a predictor; kept only if it gets
+     * smaller. Streams with other filters are already in their own codec.
+     */
+    private static void recompress(PdfStream stream, Deflater deflater) {
+        if (!PdfName.FlateDecode.equals(stream.get(PdfName.Filter)) || stream.containsKey(PdfName.DecodeParms)) {
+            return;
+        }
+
+        byte[] encoded = stream.getBytes(false);
+        byte[] decoded = stream.getBytes(true);
+        deflater.reset();
+        deflater.setInput(decoded);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        if (out.size() < encoded.length) {
+            stream.setData(out.toByteArray());
+        }
+    }
+
+    /**
+     * Decode a JPEG at the largest power-of-two reduction that still covers the
+     * target size and re-encode it; kept only if it gets smaller
+     */
+    private static void downsampleJpeg(PdfStream image, int targetWidth, int targetHeight) {
+        PdfNumber width = image.getAsNumber(PdfName.Width);
+        PdfNumber height = image.getAsNumber(PdfName.Height);
+        if (width == null || height == null || image.containsKey(PdfName.Decode)) {
+            return;
+        }
+
+        int sampleSize = 1;
+        while (width.intValue() / (sampleSize * 2) >= targetWidth
+                && height.intValue() / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        if (sampleSize == 1) {
+            return;
+        }
+
+        JpegResampler resampler = jpegResampler;
+        if (resampler == null) {
+            return;
+        }
+        byte[] jpeg = image.getBytes(false);
+        JpegResampler.Result sampled = resampler.resample(jpeg, sampleSize, JPEG_QUALITY);
+        if (sampled == null) {
+            // CMYK and other JPEGs the codec cannot decode stay as they are
+            return;
+        }
+
+        if (sampled.getJpeg().length < jpeg.length) {
+            image.setData(sampled.getJpeg());
+            image.put(PdfName.Width, new PdfNumber(sampled.getWidth()));
+            image.put(PdfName.Height, new PdfNumber(sampled.getHeight()));
+            image.put(PdfName.ColorSpace, PdfName.DeviceRGB);
+            image.put(PdfName.BitsPerComponent, new PdfNumber(8));
+            image.remove(PdfName.DecodeParms);
+        }
+    }
+}
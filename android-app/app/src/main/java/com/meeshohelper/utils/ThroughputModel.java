@@ -0,0 +1,127 @@
+package com.meeshohelper.utils;
+
+import com.meeshohelper.models.RunStats;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Per-operation processing speed of this device, learned from previous runs.
+ * Keeps an exponentially weighted average of milliseconds per page.
+ */
+public class ThroughputModel {
+
+    private static final String MODEL_FILE = "throughput.properties";
+    private static final double SMOOTHING = 0.3;
+
+    // Starting points before this device has any history (mid-range phone)
+    private static final double DEFAULT_MS_PER_PAGE = 60;
+    private static final double DEFAULT_FIXED_MS = 500;
+
+    // A model is opened per run, so runs finishing together update the file one at a time
+    private static final Object FILE_LOCK = new Object();
+
+    private final File modelFile;
+    private final Properties model = new Properties();
+
+    public ThroughputModel(File directory) {
+        this.modelFile = new File(directory, MODEL_FILE);
+        synchronized (FILE_LOCK) {
+            load();
+        }
+    }
+
+    /**
+     * Estimated duration of an operation on a file with the given page count
+     */
+    public synchronized long estimateMillis(String operation, int pages) {
+        double msPerPage = getDouble(operation + ".msPerPage", DEFAULT_MS_PER_PAGE);
+        return Math.round(DEFAULT_FIXED_MS + msPerPage * pages);
+    }
+
+    /**
+     * Fold a finished run into the model and persist it
+     */
+    public void record(RunStats stats) throws IOException {
+        if (stats.getPages() <= 0) {
+            return;
+        }
+        synchronized (FILE_LOCK) {
+            synchronized (this) {
+                // Start from the file, so runs saved since this model was opened are kept
+                load();
+                update(stats);
+                save();
+            }
+        }
+    }
+
+    private void update(RunStats stats) {
+        String key = stats.getOperation() + ".msPerPage";
+        double observed = Math.max(0, stats.getElapsedMillis() - DEFAULT_FIXED_MS) / stats.getPages();
+        double updated = model.containsKey(key)
+                ? SMOOTHING * observed + (1 - SMOOTHING) * getDouble(key, observed)
+                : observed;
+        model.setProperty(key, String.format(Locale.US, "%.3f", updated));
+        // Kept next to the speed so tuning decisions can be checked against it
+        model.setProperty(stats.getOperation() + ".lastRun", stats.toString());
+    }
+
+    private void load() {
+        if (!modelFile.exists()) {
+            return;
+        }
+        Properties loaded = new Properties();
+        try (InputStream in = new FileInputStream(modelFile)) {
+            loaded.load(in);
+        } catch (IOException e) {
+            // An unreadable model only costs the calibration; this model's values are kept
+            return;
+        }
+        model.clear();
+        model.putAll(loaded);
+    }
+
+    /**
+     * Write the model to a temporary file and rename it over the old one, so a crash
+     * never leaves a truncated model behind
+     */
+    private void save() throws IOException {
+        File tempFile = File.createTempFile(MODEL_FILE, ".tmp", modelFile.getParentFile());
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            model.store(out, null);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        if (!tempFile.renameTo(modelFile)) {
+            tempFile.delete();
+            throw new IOException("Cannot write throughput model");
+        }
+    }
+
+    /**
+     * Format an estimate for display, e.g. "about 40 s" or "about 3 min"
+     */
+    public static String formatEstimate(long millis) {
+        long seconds = Math.max(1, Math.round(millis / 1000.0));
+        if (seconds < 90) {
+            return "about " + seconds + " s";
+        }
+        return "about " + Math.round(seconds / 60.0) + " min";
+    }
+
+    private double getDouble(String key, double fallback) {
+        try {
+            return Double.parseDouble(model.getProperty(key, String.valueOf(fallback)));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
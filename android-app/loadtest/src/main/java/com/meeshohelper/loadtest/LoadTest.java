@@ -0,0 +1,364 @@
+package com.meeshohelper.loadtest;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Paragraph;
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.server.ImageIoJpegResampler;
+import com.meeshohelper.utils.ImpositionManifest;
+import com.meeshohelper.utils.LeafletGenerator;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PDFProcessor;
+import com.meeshohelper.utils.StreamOptimizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Soak test of the whole flow: label extraction, 4-up imposition and leaflet
+ * writing, run back to back on a generated corpus at a fixed concurrency.
+ * Reports job latency percentiles and throughput, and samples GC time, heap
+ * and open file descriptors over the run, so leaks and slowdowns that only
+ * show after hundreds of jobs become visible. Failed jobs are counted by
+ * exception type and the first few are reported with their stack traces.
+ * <pre>
+ *   loadtest [--dir DIR] [--concurrency N] [--seconds S] [--files F]
+ * </pre>
+ */
+public class LoadTest {
+
+    /**
+     * Shape of a load test run
+     */
+    public static class Config {
+        int concurrency = 2;
+        long durationSeconds = 300;
+        int corpusFiles = 20;
+        int maxPagesPerFile = 120;
+        long sampleIntervalSeconds = 10;
+        long seed = 42;
+
+        public Config concurrency(int concurrency) {
+            this.concurrency = Math.max(1, concurrency);
+            return this;
+        }
+
+        public Config durationSeconds(long durationSeconds) {
+            this.durationSeconds = durationSeconds;
+            return this;
+        }
+
+        public Config corpusFiles(int corpusFiles) {
+            this.corpusFiles = Math.max(1, corpusFiles);
+            return this;
+        }
+
+        public Config maxPagesPerFile(int maxPagesPerFile) {
+            this.maxPagesPerFile = Math.max(4, maxPagesPerFile);
+            return this;
+        }
+
+        public Config sampleIntervalSeconds(long sampleIntervalSeconds) {
+            this.sampleIntervalSeconds = Math.max(1, sampleIntervalSeconds);
+            return this;
+        }
+    }
+
+    // Failed jobs whose exception is kept in full for the report
+    private static final int FAILURES_KEPT = 5;
+
+    private static final String[] NAMES = {"Rahul Kumar", "Priya Sharma", "Amit Shah", "Sunita Devi",
+            "Pooja Verma", "Mohammed Irfan", "Kavita Singh", "Arjun Reddy"};
+    private static final String[] CITIES = {"Lucknow, Uttar Pradesh", "Jaipur, Rajasthan",
+            "Pune, Maharashtra", "Patna, Bihar"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File workDir = new File("meesho-helper-loadtest");
+        Config config = new Config();
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--dir":
+                    workDir = new File(value);
+                    break;
+                case "--concurrency":
+                    config.concurrency(parseInt(option, value));
+                    break;
+                case "--seconds":
+                    config.durationSeconds(parseInt(option, value));
+                    break;
+                case "--files":
+                    config.corpusFiles(parseInt(option, value));
+                    break;
+                default:
+                    usage("Unknown option " + option);
+            }
+        }
+
+        // Same resampler as the server, so image recompression runs as it does there
+        StreamOptimizer.setJpegResampler(new ImageIoJpegResampler());
+
+        System.out.println(run(workDir, config));
+    }
+
+    private static int parseInt(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            usage("Not a number for " + option + ": " + value);
+            return 0;
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: loadtest [--dir DIR] [--concurrency N] [--seconds S] [--files F]");
+        System.exit(2);
+    }
+
+    /**
+     * Generate the corpus in workDir (reused if present), run the load and return the report
+     */
+    public static String run(File workDir, Config config) throws IOException, InterruptedException {
+        List<File> corpus = generateCorpus(new File(workDir, "load_corpus"), config);
+        File outputDir = new File(workDir, "load_output");
+        outputDir.mkdirs();
+
+        List<Long> latencies = new ArrayList<>();
+        List<String> samples = new ArrayList<>();
+        AtomicInteger nextFile = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        Failures failures = new Failures();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        Snapshot baseline = Snapshot.take();
+        samples.add(baseline.format(0, 0));
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency);
+        for (int w = 0; w < config.concurrency; w++) {
+            int worker = w;
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    File input = corpus.get(nextFile.getAndIncrement() % corpus.size());
+                    long jobStart = System.nanoTime();
+                    try {
+                        runJob(input, outputDir, worker);
+                        long millis = (System.nanoTime() - jobStart) / 1_000_000;
+                        synchronized (latencies) {
+                            latencies.add(millis);
+                        }
+                        completed.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        failures.add(input, e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+
+        long intervalMillis = TimeUnit.SECONDS.toMillis(config.sampleIntervalSeconds);
+        while (!workers.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS)) {
+            samples.add(Snapshot.take().format((System.nanoTime() - start) / 1_000_000_000, completed.get()));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Snapshot last = Snapshot.take();
+        samples.add(last.format(elapsedMillis / 1000, completed.get()));
+
+        return report(config, corpus, latencies, completed.get(), failures, elapsedMillis, baseline, last, samples);
+    }
+
+    /**
+     * One job of the daily flow: extract customers, impose the labels 4-up and write their leaflets
+     */
+    private static void runJob(File input, File outputDir, int worker) throws IOException {
+        File labels = new File(outputDir, "labels_" + worker + ".pdf");
+        File leaflets = new File(outputDir, "leaflets_" + worker + ".pdf");
+        List<CustomerData> customers = PDFProcessor.extractCustomerNames(input);
+        PDFProcessor.createFourUpLayout(input, labels, OutputOptions.defaults());
+        LeafletGenerator.generateLeafletPDF(customers, leaflets, OutputOptions.defaults());
+        labels.delete();
+        ImpositionManifest.manifestFileFor(labels).delete();
+        leaflets.delete();
+    }
+
+    private static List<File> generateCorpus(File corpusDir, Config config) throws IOException {
+        corpusDir.mkdirs();
+        Random random = new Random(config.seed);
+        List<File> corpus = new ArrayList<>();
+        for (int f = 0; f < config.corpusFiles; f++) {
+            int pages = 4 + random.nextInt(config.maxPagesPerFile - 3);
+            File file = new File(corpusDir, "labels_" + f + "_" + pages + ".pdf");
+            if (!file.exists()) {
+                writeLabels(file, f * 1000, pages, random);
+            }
+            corpus.add(file);
+        }
+        return corpus;
+    }
+
+    /**
+     * Label pages with the same text layout the extractor reads from marketplace labels
+     */
+    private static void writeLabels(File file, int firstOrder, int pages, Random random) throws IOException {
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(file.getAbsolutePath()));
+             Document document = new Document(pdfDoc)) {
+            for (int i = 0; i < pages; i++) {
+                if (i > 0) {
+                    document.add(new AreaBreak());
+                }
+                int order = firstOrder + i;
+                document.add(new Paragraph("Customer Address"));
+                document.add(new Paragraph("BILL TO / SHIP TO"));
+                document.add(new Paragraph(NAMES[random.nextInt(NAMES.length)]));
+                document.add(new Paragraph("House " + (1 + random.nextInt(500)) + ", MG Road"));
+                document.add(new Paragraph(CITIES[random.nextInt(CITIES.length)] + ", "
+                        + (226001 + random.nextInt(9000))));
+                document.add(new Paragraph("SKU Size Qty Color Order No."));
+                document.add(new Paragraph("Order No. " + (100000000 + order) + "_1"));
+            }
+        }
+    }
+
+    private static String report(Config config, List<File> corpus, List<Long> latencies, int completed,
+                                 Failures failures, long elapsedMillis, Snapshot first, Snapshot last,
+                                 List<String> samples) {
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Load test: %d workers, %d s, %d corpus files\n",
+                config.concurrency, config.durationSeconds, corpus.size()));
+        report.append(String.format(Locale.US, "Jobs: %d completed, %d failed, %.2f jobs/min\n",
+                completed, failures.count(), completed * 60_000.0 / Math.max(1, elapsedMillis)));
+        failures.appendTo(report);
+        report.append(String.format(Locale.US, "Latency ms: p50 %d  p95 %d  p99 %d  max %d\n",
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+        report.append(String.format(Locale.US, "GC: %d collections, %d ms total\n",
+                last.gcCount - first.gcCount, last.gcMillis - first.gcMillis));
+        report.append(String.format(Locale.US, "Heap growth: %+d KB, open files growth: %+d\n",
+                (last.heapBytes - first.heapBytes) / 1024, last.openFiles - first.openFiles));
+
+        // Latency of the first and last tenth of jobs shows slowdowns that build up over the run
+        int tenth = sorted.length / 10;
+        if (tenth > 0) {
+            report.append(String.format(Locale.US, "Mean latency ms: first 10%% of jobs %d, last 10%% %d\n",
+                    mean(latencies.subList(0, tenth)), mean(latencies.subList(latencies.size() - tenth, latencies.size()))));
+        }
+
+        report.append(String.format(Locale.US, "\n%6s %6s %10s %7s %8s %6s\n",
+                "time s", "jobs", "heap KB", "GCs", "GC ms", "fds"));
+        for (String sample : samples) {
+            report.append(sample).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Exceptions of failed jobs: a count per exception type, and the first few in full
+     */
+    private static class Failures {
+        private final Map<String, Integer> countsByType = new TreeMap<>();
+        private final List<String> first = new ArrayList<>();
+        private int count;
+
+        synchronized void add(File input, Exception e) {
+            count++;
+            String type = e.getClass().getName();
+            Integer typeCount = countsByType.get(type);
+            countsByType.put(type, typeCount == null ? 1 : typeCount + 1);
+            if (first.size() < FAILURES_KEPT) {
+                StringWriter trace = new StringWriter();
+                e.printStackTrace(new PrintWriter(trace));
+                first.add(input.getName() + ": " + trace);
+            }
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized void appendTo(StringBuilder report) {
+            for (Map.Entry<String, Integer> entry : countsByType.entrySet()) {
+                report.append(String.format(Locale.US, "  %dx %s\n", entry.getValue(), entry.getKey()));
+            }
+            for (String failure : first) {
+                report.append("  Failed ").append(failure);
+            }
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values
+     */
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long mean(List<Long> values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return values.isEmpty() ? 0 : sum / values.size();
+    }
+
+    /**
+     * Process resource counters at one moment. GC figures are summed over the JVM's collectors.
+     */
+    private static class Snapshot {
+        long heapBytes;
+        long gcCount;
+        long gcMillis;
+        int openFiles;
+
+        static Snapshot take() {
+            Runtime runtime = Runtime.getRuntime();
+            Snapshot snapshot = new Snapshot();
+            snapshot.heapBytes = runtime.totalMemory() - runtime.freeMemory();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                // -1 when a collector does not report a figure
+                snapshot.gcCount += Math.max(0, collector.getCollectionCount());
+                snapshot.gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            String[] descriptors = new File("/proc/self/fd").list();
+            snapshot.openFiles = descriptors != null ? descriptors.length : -1;
+            return snapshot;
+        }
+
+        String format(long seconds, int jobs) {
+            return String.format(Locale.US, "%6d %6d %10d %7d %8d %6d",
+                    seconds, jobs, heapBytes / 1024, gcCount, gcMillis, openFiles);
+        }
+    }
+}
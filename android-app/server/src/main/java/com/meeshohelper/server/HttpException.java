@@ -0,0 +1,20 @@
+package com.meeshohelper.server;
+
+import java.io.IOException;
+
+/**
+ * A request that cannot be served, answered with the given HTTP status
+ */
+class HttpException extends IOException {
+
+    private final int status;
+
+    HttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,273 @@
+package com.meeshohelper.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 request: request line, headers and a body stream that is read
+ * from the socket as the handler consumes it, so uploads are never held in memory
+ */
+class HttpRequest {
+
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final String method;
+    private final String path;
+    private final Map<String, String> query = new HashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private final InputStream body;
+
+    private HttpRequest(String method, String target, InputStream in) throws IOException {
+        this.method = method;
+        int queryStart = target.indexOf('?');
+        this.path = queryStart < 0 ? target : target.substring(0, queryStart);
+        if (queryStart >= 0) {
+            for (String pair : target.substring(queryStart + 1).split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                }
+            }
+        }
+        readHeaders(in);
+        this.body = openBody(in);
+    }
+
+    /**
+     * Read a request from a connection
+     *
+     * @throws HttpException if the request is malformed
+     */
+    static HttpRequest read(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            throw new EOFException("Connection closed before a request");
+        }
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            throw new HttpException(400, "Malformed request line");
+        }
+        return new HttpRequest(parts[0], parts[1], in);
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getQueryParameter(String name) {
+        return query.get(name);
+    }
+
+    /**
+     * Header value by case-insensitive name, or null
+     */
+    String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.US));
+    }
+
+    /**
+     * The request body; empty when the request has none
+     */
+    InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * The uploaded document: the pdf_file part of a form upload, as sent by the web
+     * form, or otherwise the raw body
+     */
+    InputStream openUpload() throws IOException {
+        String contentType = getHeader("Content-Type");
+        if (contentType != null && contentType.toLowerCase(Locale.US).startsWith("multipart/form-data")) {
+            String boundary = parameter(contentType, "boundary");
+            if (boundary == null) {
+                throw new HttpException(400, "Multipart upload without a boundary");
+            }
+            return new MultipartUpload(body, boundary, "pdf_file");
+        }
+        return body;
+    }
+
+    private void readHeaders(InputStream in) throws IOException {
+        int headerBytes = 0;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw new HttpException(431, "Request headers too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private InputStream openBody(InputStream in) throws IOException {
+        String transferEncoding = getHeader("Transfer-Encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.US).contains("chunked")) {
+            return new ChunkedInputStream(in);
+        }
+        String contentLength = getHeader("Content-Length");
+        if (contentLength == null) {
+            return new BoundedInputStream(in, 0);
+        }
+        try {
+            return new BoundedInputStream(in, Long.parseLong(contentLength));
+        } catch (NumberFormatException e) {
+            throw new HttpException(400, "Invalid Content-Length");
+        }
+    }
+
+    /**
+     * A parameter of a header value such as {@code multipart/form-data; boundary=xyz}
+     */
+    static String parameter(String headerValue, String name) {
+        for (String part : headerValue.split(";")) {
+            String trimmed = part.trim();
+            if (trimmed.toLowerCase(Locale.US).startsWith(name + "=")) {
+                String value = trimmed.substring(name.length() + 1);
+                return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                        ? value.substring(1, value.length() - 1)
+                        : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a CRLF-terminated ISO-8859-1 line, or null at end of stream
+     */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            if (line.size() >= MAX_HEADER_BYTES) {
+                throw new HttpException(431, "Request line too long");
+            }
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString("ISO-8859-1") : null;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (IOException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    /**
+     * Body with a Content-Length; reading stops at the end of the body, not the connection
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Upload ended early");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The connection outlives the body
+        }
+    }
+
+    /**
+     * Body sent with Transfer-Encoding: chunked
+     */
+    private static class ChunkedInputStream extends FilterInputStream {
+        private long chunkRemaining;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                String sizeLine = readLine(in);
+                if (sizeLine == null) {
+                    throw new EOFException("Upload ended early");
+                }
+                int extension = sizeLine.indexOf(';');
+                try {
+                    chunkRemaining = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new HttpException(400, "Invalid chunk size");
+                }
+                if (chunkRemaining == 0) {
+                    // Skip trailers up to the final empty line
+                    String trailer;
+                    while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                        // ignored
+                    }
+                    finished = true;
+                    return -1;
+                }
+            }
+            int read = in.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (read == -1) {
+                throw new EOFException("Upload ended early");
+            }
+            chunkRemaining -= read;
+            if (chunkRemaining == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The connection outlives the body
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.meeshohelper.server;
+
+import com.meeshohelper.utils.JpegResampler;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Resamples JPEGs with the JDK's image codecs, for the server running on a PC
+ */
+public class ImageIoJpegResampler implements JpegResampler {
+
+    @Override
+    public Result resample(byte[] jpeg, int sampleSize, int quality) {
+        try {
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+            if (decoded == null) {
+                return null;
+            }
+
+            // Drawn into RGB, like Android's decoder, so the image's color space is DeviceRGB
+            int width = Math.max(1, decoded.getWidth() / sampleSize);
+            int height = Math.max(1, decoded.getHeight() / sampleSize);
+            BufferedImage sampled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = sampled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(decoded, 0, 0, width, height, null);
+            graphics.dispose();
+
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+            if (!writers.hasNext()) {
+                return null;
+            }
+            ImageWriter writer = writers.next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length / sampleSize);
+            try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(sampled, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return new Result(out.toByteArray(), width, height);
+        } catch (IOException e) {
+            // CMYK and other JPEGs ImageIO cannot decode stay as they are
+            return null;
+        }
+    }
+}
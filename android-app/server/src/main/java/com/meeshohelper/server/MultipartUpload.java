@@ -0,0 +1,163 @@
+package com.meeshohelper.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Content of one file field of a multipart/form-data body, streamed as it
+ * arrives. Other fields are skipped; nothing is buffered beyond one window.
+ */
+class MultipartUpload extends InputStream {
+
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final String fieldName;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int start;
+    private int end;
+    private boolean endOfInput;
+    private boolean partEnded;
+    private boolean opened;
+
+    MultipartUpload(InputStream in, String boundary, String fieldName) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.fieldName = fieldName;
+        // The first boundary has no line break before it; supply one so every boundary matches
+        window[0] = '\r';
+        window[1] = '\n';
+        end = 2;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (!opened) {
+            openField();
+            opened = true;
+        }
+        return readPart(b, off, len);
+    }
+
+    /**
+     * Skip the preamble and other fields up to the data of the wanted field
+     */
+    private void openField() throws IOException {
+        byte[] scratch = new byte[WINDOW_SIZE];
+        // Preamble before the first boundary
+        while (readPart(scratch, 0, scratch.length) != -1) {
+            // skipped
+        }
+        while (true) {
+            String afterBoundary = readLine();
+            if (afterBoundary == null || afterBoundary.startsWith("--")) {
+                throw new HttpException(400, "Upload has no " + fieldName + " field");
+            }
+
+            String disposition = null;
+            String header;
+            while ((header = readLine()) != null && !header.isEmpty()) {
+                if (header.toLowerCase(Locale.US).startsWith("content-disposition:")) {
+                    disposition = header;
+                }
+            }
+            partEnded = false;
+            if (disposition != null && fieldName.equals(HttpRequest.parameter(disposition, "name"))) {
+                return;
+            }
+            while (readPart(scratch, 0, scratch.length) != -1) {
+                // another field
+            }
+        }
+    }
+
+    /**
+     * Read data of the current part, stopping at the next boundary
+     */
+    private int readPart(byte[] b, int off, int len) throws IOException {
+        if (partEnded) {
+            return -1;
+        }
+        while (true) {
+            int found = indexOfDelimiter();
+            if (found == start) {
+                start += delimiter.length;
+                partEnded = true;
+                return -1;
+            }
+            // Bytes before a possible boundary are safe to hand out
+            int safe = found >= 0 ? found - start : end - start - (delimiter.length - 1);
+            if (safe > 0) {
+                int count = Math.min(len, safe);
+                System.arraycopy(window, start, b, off, count);
+                start += count;
+                return count;
+            }
+            if (endOfInput) {
+                throw new EOFException("Upload ended early");
+            }
+            fill();
+        }
+    }
+
+    private int indexOfDelimiter() {
+        outer:
+        for (int i = start; i <= end - delimiter.length; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (window[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(window, start, window, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        int read = in.read(window, end, window.length - end);
+        if (read == -1) {
+            endOfInput = true;
+        } else {
+            end += read;
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        while (true) {
+            if (start == end) {
+                if (endOfInput) {
+                    return line.size() > 0 ? line.toString("ISO-8859-1") : null;
+                }
+                fill();
+                continue;
+            }
+            byte b = window[start++];
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            if (line.size() > WINDOW_SIZE) {
+                throw new HttpException(400, "Malformed multipart header");
+            }
+            line.write(b);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.meeshohelper.server;
+
+import com.meeshohelper.models.CustomerData;
+import com.meeshohelper.utils.DigestingOutputStream;
+import com.meeshohelper.utils.LeafletGenerator;
+import com.meeshohelper.utils.LeafletTemplate;
+import com.meeshohelper.utils.OutputMemoStore;
+import com.meeshohelper.utils.OutputOptions;
+import com.meeshohelper.utils.PDFProcessor;
+import com.meeshohelper.utils.RenderJournal;
+import com.meeshohelper.utils.ResourceGovernor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP service running the PDF engine for other devices, e.g. on a shop PC
+ * that packing phones offload big label files to. It serves the same operations
+ * as the web app:
+ * <ul>
+ *   <li>POST /process_leaflets</li>
+ *   <li>POST /process_combined_bills</li>
+ *   <li>POST /process_hybrid_bills</li>
+ * </ul>
+ * The label PDF is sent as the raw body or as the pdf_file field of a form upload,
+ * and the result PDF streams back as it is rendered. An optional profile query
+ * parameter picks the {@link OutputOptions.Profile}; SHARE downsamples photos with
+ * the {@link ImageIoJpegResampler} that {@link ServerMain} installs.
+ * <p>
+ * Connections are handled by a fixed pool with a bounded queue; when the queue is
+ * full new requests get 503 with Retry-After. Results go to the output memo, so a
+ * repeated upload is answered from disk. Binds to localhost unless given another
+ * address.
+ */
+public class ProcessingServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final int SOCKET_TIMEOUT_MILLIS = 60_000;
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_UPLOAD_BYTES = 1L << 30;
+
+    private final File workDir;
+    private final File uploadDir;
+    private final File outputDir;
+    private final OutputMemoStore memoStore;
+    private final ServerSocket serverSocket;
+    private final ThreadPoolExecutor handlers;
+    private final AtomicLong requestIds = new AtomicLong();
+    private Thread acceptThread;
+
+    /**
+     * Bind the server; call {@link #start()} to accept connections
+     *
+     * @param bindAddress address to listen on; null for localhost only
+     * @param port        port, or 0 for any free port
+     * @param queueSize   requests that may wait for a handler before new ones are refused
+     */
+    public ProcessingServer(File workDir, InetAddress bindAddress, int port, int queueSize) throws IOException {
+        this.workDir = workDir;
+        this.uploadDir = new File(workDir, "uploads");
+        this.outputDir = new File(workDir, "outputs");
+        File memoDir = new File(workDir, "memo");
+        uploadDir.mkdirs();
+        outputDir.mkdirs();
+        memoDir.mkdirs();
+        this.memoStore = new OutputMemoStore(memoDir);
+
+        int workers = ResourceGovernor.recommendedWorkers(Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory(), false, false);
+        this.handlers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+        this.serverSocket = new ServerSocket(port, 50,
+                bindAddress != null ? bindAddress : InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Start accepting connections on a background thread
+     */
+    public synchronized void start() {
+        if (acceptThread != null) {
+            return;
+        }
+        acceptThread = new Thread(this::acceptLoop, "http-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        handlers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                e.printStackTrace();
+                continue;
+            }
+            try {
+                handlers.execute(() -> handle(socket));
+            } catch (RejectedExecutionException e) {
+                refuse(socket);
+            }
+        }
+    }
+
+    private void refuse(Socket socket) {
+        try (Socket connection = socket) {
+            writeError(connection.getOutputStream(), 503, "Server busy, try again shortly", "Retry-After: 5\r\n");
+        } catch (IOException e) {
+            // The client went away; nothing to tell it
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            InputStream in = new BufferedInputStream(connection.getInputStream(), RESPONSE_BUFFER_SIZE);
+            OutputStream out = connection.getOutputStream();
+            try {
+                route(HttpRequest.read(in), out);
+            } catch (HttpException e) {
+                writeError(out, e.getStatus(), e.getMessage(), "");
+            } catch (ResponseStartedException e) {
+                // Headers are out; closing without the final chunk tells the client it failed
+                e.getCause().printStackTrace();
+            } catch (IOException | RuntimeException e) {
+                if (!(e instanceof SocketException)) {
+                    e.printStackTrace();
+                    writeError(out, 500, "Processing failed: " + e.getMessage(), "");
+                }
+            }
+        } catch (IOException e) {
+            // Connection already broken
+        }
+    }
+
+    private void route(HttpRequest request, OutputStream out) throws IOException {
+        String path = request.getPath();
+        if ("GET".equals(request.getMethod()) && ("/".equals(path) || "/health".equals(path))) {
+            byte[] body = "Meesho Helper processing server\n".getBytes(StandardCharsets.UTF_8);
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: "
+                    + body.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.write(body);
+            out.flush();
+            return;
+        }
+
+        String operation;
+        switch (path) {
+            case "/process_leaflets":
+                operation = "leaflets";
+                break;
+            case "/process_combined_bills":
+                operation = "cropped_bills_4up";
+                break;
+            case "/process_hybrid_bills":
+                operation = "hybrid_bills";
+                break;
+            default:
+                throw new HttpException(404, "Unknown path " + path);
+        }
+        if (!"POST".equals(request.getMethod())) {
+            throw new HttpException(405, "Use POST");
+        }
+
+        OutputOptions.Profile profile = parseProfile(request.getQueryParameter("profile"));
+        long requestId = requestIds.incrementAndGet();
+        File upload = new File(uploadDir, "upload_" + requestId + ".pdf");
+        try {
+            String uploadHash = receiveUpload(request, upload);
+            process(operation, profile, upload, uploadHash, requestId, out);
+        } finally {
+            upload.delete();
+        }
+    }
+
+    private static OutputOptions.Profile parseProfile(String value) throws HttpException {
+        if (value == null) {
+            return OutputOptions.Profile.STANDARD;
+        }
+        try {
+            return OutputOptions.Profile.valueOf(value.toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            throw new HttpException(400, "Unknown profile " + value);
+        }
+    }
+
+    /**
+     * Stream the upload to disk, hashing it on the way
+     */
+    private String receiveUpload(HttpRequest request, File upload) throws IOException {
+        long total = 0;
+        DigestingOutputStream output = new DigestingOutputStream(new FileOutputStream(upload));
+        try (InputStream in = request.openUpload(); OutputStream fileOut = output) {
+            byte[] buffer = new byte[RESPONSE_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_UPLOAD_BYTES) {
+                    throw new HttpException(413, "Upload larger than " + (MAX_UPLOAD_BYTES >> 20) + " MB");
+                }
+                fileOut.write(buffer, 0, read);
+            }
+        }
+        if (total == 0) {
+            throw new HttpException(400, "Empty upload");
+        }
+        return output.getHash();
+    }
+
+    private void process(String operation, OutputOptions.Profile profile, File upload, String uploadHash,
+                         long requestId, OutputStream out) throws IOException {
+        String memoKey = OutputMemoStore.key(uploadHash, operation,
+                OutputOptions.deterministic("").withProfile(profile).describe());
+        File memoized = memoStore.lookup(memoKey);
+        if (memoized != null) {
+            try (InputStream in = new FileInputStream(memoized)) {
+                writeResult(out, operation, memoized.length(), in);
+            }
+            return;
+        }
+
+        OutputOptions options = OutputOptions.deterministic(memoKey).withProfile(profile);
+        List<CustomerData> customers = null;
+        if (!"cropped_bills_4up".equals(operation)) {
+            // Fail before the response starts when there is nobody to write to
+            customers = PDFProcessor.extractCustomerNames(upload);
+            if (customers.isEmpty()) {
+                throw new HttpException(422, "No customer names found in the PDF");
+            }
+        }
+
+        // Each request renders to its own file, so identical concurrent uploads don't collide
+        File output = new File(outputDir, memoKey + ".pdf");
+        File partial = new File(outputDir, memoKey + "." + requestId + ".part");
+        File checkpointDir = new File(workDir, "jobs/" + memoKey + "_" + requestId);
+        boolean complete = false;
+
+        out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/pdf\r\nContent-Disposition: attachment; filename=\""
+                + operation + ".pdf\"\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        try (OutputStream file = new FileOutputStream(partial)) {
+            ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+            OutputStream body = new BufferedOutputStream(new TeeOutputStream(chunked, file), RESPONSE_BUFFER_SIZE);
+            switch (operation) {
+                case "leaflets":
+                    LeafletGenerator.generateLeafletPDF(customers, body, options, null, LeafletTemplate.defaults());
+                    break;
+                case "cropped_bills_4up":
+                    PDFProcessor.createFourUpLayout(upload, body, options);
+                    break;
+                default:
+                    checkpointDir.mkdirs();
+                    // The server keeps no customer history, so no leaflet gets a review code
+                    PDFProcessor.generateHybridBill(upload, body, customers, checkpointDir, options,
+                            LeafletTemplate.defaults(), null);
+                    break;
+            }
+            body.flush();
+            chunked.close();
+            complete = true;
+        } catch (IOException | RuntimeException e) {
+            throw new ResponseStartedException(e);
+        } finally {
+            if (!complete) {
+                partial.delete();
+            }
+            // A failed hybrid render is not resumed by a later request, so its chunks go too
+            RenderJournal.clear(checkpointDir);
+            checkpointDir.delete();
+        }
+
+        if (partial.renameTo(output)) {
+            memoStore.record(memoKey, output);
+        } else {
+            partial.delete();
+        }
+    }
+
+    private static void writeResult(OutputStream out, String operation, long length, InputStream in) throws IOException {
+        out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/pdf\r\nContent-Disposition: attachment; filename=\""
+                + operation + ".pdf\"\r\nContent-Length: " + length + "\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        byte[] buffer = new byte[RESPONSE_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+
+    private static void writeError(OutputStream out, int status, String message, String extraHeaders) {
+        try {
+            byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(("HTTP/1.1 " + status + " " + reason(status) + "\r\nContent-Type: text/plain; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n" + extraHeaders + "Connection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.write(body);
+            out.flush();
+        } catch (IOException e) {
+            // The client went away
+        }
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 422: return "Unprocessable Entity";
+            case 431: return "Request Header Fields Too Large";
+            case 503: return "Service Unavailable";
+            default: return "Internal Server Error";
+        }
+    }
+
+    /**
+     * A failure after the 200 status line was sent, when no error response is possible anymore
+     */
+    private static class ResponseStartedException extends IOException {
+        ResponseStartedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Writes to the client and to the memo file at once
+     */
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
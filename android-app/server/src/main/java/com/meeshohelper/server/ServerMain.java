@@ -0,0 +1,82 @@
+package com.meeshohelper.server;
+
+import com.meeshohelper.utils.StreamOptimizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Command line entry point of the processing server:
+ * <pre>
+ *   server [--dir DIR] [--port PORT] [--bind ADDRESS] [--queue SIZE]
+ * </pre>
+ * Runs until the process is stopped. Binds to localhost unless given an address,
+ * e.g. 0.0.0.0 to serve the phones on the shop network.
+ */
+public class ServerMain {
+
+    private static final int DEFAULT_QUEUE_SIZE = 16;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File workDir = new File("meesho-helper-server");
+        int port = ProcessingServer.DEFAULT_PORT;
+        InetAddress bindAddress = null;
+        int queueSize = DEFAULT_QUEUE_SIZE;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--dir":
+                    workDir = new File(value);
+                    break;
+                case "--port":
+                    port = parseInt(option, value);
+                    break;
+                case "--bind":
+                    bindAddress = InetAddress.getByName(value);
+                    break;
+                case "--queue":
+                    queueSize = parseInt(option, value);
+                    break;
+                default:
+                    usage("Unknown option " + option);
+            }
+        }
+
+        StreamOptimizer.setJpegResampler(new ImageIoJpegResampler());
+
+        ProcessingServer server = new ProcessingServer(workDir, bindAddress, port, queueSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "http-shutdown"));
+        server.start();
+        System.out.println("Serving " + workDir.getAbsolutePath() + " on port " + server.getPort());
+
+        // The accept thread is a daemon, so the main thread keeps the process alive
+        Thread.currentThread().join();
+    }
+
+    private static int parseInt(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            usage("Not a number for " + option + ": " + value);
+            return 0;
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: server [--dir DIR] [--port PORT] [--bind ADDRESS] [--queue SIZE]");
+        System.exit(2);
+    }
+}